@@ -28,6 +28,7 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Util;
+import hudson.console.LineTransformationOutputStream;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Run;
@@ -42,8 +43,6 @@ import jenkins.scm.cvs.QuietPeriodCompleted;
 import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.netbeans.lib.cvsclient.CVSRoot;
 import org.netbeans.lib.cvsclient.Client;
-import org.netbeans.lib.cvsclient.admin.AdminHandler;
-import org.netbeans.lib.cvsclient.admin.Entry;
 import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
 import org.netbeans.lib.cvsclient.command.Command;
 import org.netbeans.lib.cvsclient.command.CommandAbortedException;
@@ -69,6 +68,7 @@ import java.io.Reader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -77,6 +77,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -90,6 +91,18 @@ public abstract class AbstractCvs extends SCM implements ICvs {
 
     protected static final DateFormat DATE_FORMATTER = new SimpleDateFormat("dd MMM yyyy HH:mm:ss Z", Locale.UK);
 
+    /**
+     * Lists every branch's revisions and every file's symbolic names when looking for changes, leaving all the
+     * filtering to {@link CvsLog}, as was done before rlog was asked to only list the location's revisions.
+     */
+    private static final boolean UNFILTERED_RLOG = Boolean.getBoolean(AbstractCvs.class.getName() + ".unfilteredRlog");
+
+    /**
+     * Polls tag locations by listing the changes made in a date range, as was done before polling compared the
+     * tagged revisions with the ones the last build checked out.
+     */
+    private static final boolean DATED_TAG_POLLING = Boolean.getBoolean(AbstractCvs.class.getName() + ".datedTagPolling");
+
     @Override
     public AbstractCvsDescriptor getDescriptor() {
         return (AbstractCvsDescriptor) super.getDescriptor();
@@ -104,6 +117,7 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                                boolean cleanOnFailedUpdate, TaskListener listener) throws IOException, InterruptedException {
 
         final EnvVars envVars = build.getEnvironment(listener);
+        final CvsBuildTimings timings = CvsBuildTimings.forBuild(build);
 
         for (CvsRepository repository : repositories) {
 
@@ -144,34 +158,16 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                     // we're doing an update
                     if (update) {
                         // we're doing a CVS update
-                        UpdateCommand updateCommand = new UpdateCommand();
-
-                        // force it to recurse into directories
-                        updateCommand.setBuildDirectories(true);
-                        updateCommand.setRecursive(true);
+                        final UpdateCommand updateCommand = createUpdateCommand(repositoryLocation,
+                                expandedLocationName, dateStamp, pruneEmptyDirectories);
 
-                        // set directory pruning
-                        updateCommand.setPruneDirectories(pruneEmptyDirectories);
+                        final String[] changedFiles = TargetedUpdate.ENABLED ? getTargetedUpdateFiles(build,
+                                workspace, module, repository, item, cvsModule, envVars, listener) : null;
 
-                        // set overwrite policy
-                        updateCommand.setCleanCopy(isForceCleanCopy());
-
-                        // point to head, branch or tag
-                        if (locationType == CvsRepositoryLocationType.BRANCH) {
-                            updateCommand.setUpdateByRevision(expandedLocationName);
-                            if (repositoryLocation.isUseHeadIfNotFound()) {
-                                updateCommand.setUseHeadIfNotFound(true);
-                                updateCommand.setUpdateByDate(dateStamp);
-                            }
-                        } else if (locationType == CvsRepositoryLocationType.TAG) {
-                            updateCommand.setUpdateByRevision(expandedLocationName);
-                            updateCommand.setUseHeadIfNotFound(repositoryLocation.isUseHeadIfNotFound());
-                        } else {
-                            updateCommand.setUpdateByRevision(CvsRepositoryLocationType.HEAD.getName().toUpperCase());
-                            updateCommand.setUpdateByDate(dateStamp);
-                        }
-
-                        if (!perform(updateCommand, targetWorkspace, listener, repository, moduleName, envVars, pruneEmptyDirectories)) {
+                        if (changedFiles != null && changedFiles.length == 0) {
+                            listener.getLogger().println("No changes to " + moduleName + " since the last build, skipping update");
+                        } else if (!perform(updateCommand, targetWorkspace, listener, repository, moduleName, envVars,
+                                changedFiles, timings)) {
                             if (cleanOnFailedUpdate) {
                                 updateFailed = true;
                             } else {
@@ -190,40 +186,44 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                             workspace.deleteContents();
                         }
 
-                        // we're doing a CVS checkout
-                        CheckoutCommand checkoutCommand = new CheckoutCommand();
-
-                        // point to branch or tag if specified
-                        if (locationType == CvsRepositoryLocationType.BRANCH) {
-                            checkoutCommand.setCheckoutByRevision(expandedLocationName);
-                            if (repositoryLocation.isUseHeadIfNotFound()) {
-                                checkoutCommand.setUseHeadIfNotFound(true);
-                                checkoutCommand.setCheckoutByDate(dateStamp);
+                        final ReferenceWorkspaceCache referenceCache = ReferenceWorkspaceCache.ENABLED && !flatten
+                                ? ReferenceWorkspaceCache.forWorkspace(workspace) : null;
+                        final String referenceKey = referenceCache == null ? null
+                                : ReferenceWorkspaceCache.getKey(envVars.expand(repository.getCvsRoot()),
+                                envVars.expand(cvsModule.getRemoteName()), locationType, expandedLocationName);
+
+                        // seed the module from the copy on this node and bring it up to date, rather than
+                        // fetching every file. Not after a failed update though, since the copy could be the cause
+                        boolean seeded = false;
+                        if (referenceCache != null && !updateFailed && referenceCache.seed(module, referenceKey)) {
+                            listener.getLogger().println("Seeded " + moduleName + " from the reference workspace");
+                            seeded = perform(createUpdateCommand(repositoryLocation, expandedLocationName, dateStamp,
+                                    pruneEmptyDirectories), targetWorkspace, listener, repository, moduleName, envVars, null,
+                                    timings);
+                            if (!seeded) {
+                                listener.getLogger().println("Update of the seeded module failed. Performing full checkout");
+                                module.deleteRecursive();
                             }
-                        } else if (locationType == CvsRepositoryLocationType.TAG) {
-                            checkoutCommand.setCheckoutByRevision(expandedLocationName);
-                            if (repositoryLocation.isUseHeadIfNotFound()) {
-                                checkoutCommand.setUseHeadIfNotFound(true);
-                            }
-                        } else if (locationType == CvsRepositoryLocationType.HEAD) {
-                            checkoutCommand.setCheckoutByDate(dateStamp);
                         }
 
-                        // set directory pruning
-                        checkoutCommand.setPruneDirectories(pruneEmptyDirectories);
-
-                        // set where we're checking out to
-                        if (cvsModule.isAlternativeCheckoutName() || flatten) {
-                            checkoutCommand.setCheckoutDirectory(moduleName);
+                        if (!seeded && !updateFailed && !flatten && RevisionBlobCache.ENABLED) {
+                            seeded = seedFromRevisionCache(build, module, targetWorkspace, repository, item,
+                                    cvsModule, moduleName, expandedLocationName, dateStamp, pruneEmptyDirectories,
+                                    envVars, listener);
                         }
 
-                        // and specify which module to load
-                        checkoutCommand.setModule(envVars.expand(cvsModule.getRemoteName()));
-
-                        if (!perform(checkoutCommand, targetWorkspace, listener, repository, moduleName, envVars, pruneEmptyDirectories)) {
+                        // we're doing a CVS checkout
+                        if (!seeded && !perform(createCheckoutCommand(repositoryLocation, expandedLocationName,
+                                dateStamp, pruneEmptyDirectories, cvsModule.isAlternativeCheckoutName() || flatten
+                                        ? moduleName : null, envVars.expand(cvsModule.getRemoteName())),
+                                targetWorkspace, listener, repository, moduleName, envVars, null, timings)) {
                             return false;
                         }
 
+                        if (referenceCache != null) {
+                            referenceCache.store(module, referenceKey, listener);
+                        }
+
                     }
 
                 }
@@ -234,6 +234,146 @@ public abstract class AbstractCvs extends SCM implements ICvs {
         return true;
     }
 
+    /**
+     * Fills a module that's about to be checked out with the revisions the checkout would fetch that are already
+     * held in the node's {@link RevisionBlobCache}, then updates it so only the remaining files are fetched.
+     * @return true if the module was checked out this way, false if a normal checkout is still needed
+     */
+    private boolean seedFromRevisionCache(final Run<?, ?> build, final FilePath module, final FilePath targetWorkspace,
+                                          final CvsRepository repository, final CvsRepositoryItem item,
+                                          final CvsModule cvsModule, final String moduleName,
+                                          final String expandedLocationName, final String dateStamp,
+                                          final boolean pruneEmptyDirectories, final EnvVars envVars,
+                                          final TaskListener listener) throws IOException, InterruptedException {
+        final CvsRepositoryLocation location = item.getLocation();
+        final CvsRepositoryLocationType locationType = location.getLocationType();
+        if (locationType == CvsRepositoryLocationType.TAG || location.isUseHeadIfNotFound()) {
+            return false;
+        }
+        final FilePath cacheRoot = RevisionBlobCache.getRoot(module);
+        if (cacheRoot == null) {
+            return false;
+        }
+        final String cvsRoot = envVars.expand(repository.getCvsRoot());
+        final String namespace = RevisionBlobCache.getNamespace(cvsRoot, locationType, expandedLocationName);
+        if (!cacheRoot.child(RevisionBlobCache.getNamespaceMarker(namespace)).exists()) {
+            // nothing from this location has been cached on the node, so listing the files would be wasted
+            return false;
+        }
+
+        final List<CvsFile> remoteFiles;
+        try {
+            remoteFiles = getRemoteFilesAtDate(repository, item, cvsModule, getCheckoutDate(build), envVars, listener);
+        } catch (RuntimeException ex) {
+            listener.getLogger().println("Could not list the files to check out, not using the revision cache: "
+                    + ex.getMessage());
+            return false;
+        }
+
+        final String remoteName = envVars.expand(cvsModule.getRemoteName());
+        final Map<String, String> files = new HashMap<String, String>();
+        for (CvsFile file : remoteFiles) {
+            if (!file.isDead() && file.getName().startsWith(remoteName + "/")) {
+                files.put(file.getName().substring(remoteName.length() + 1), file.getRevision());
+            }
+        }
+
+        final int restored;
+        try {
+            restored = module.act(new RevisionBlobCache.Materialize(cacheRoot.getRemote(), namespace, cvsRoot,
+                    remoteName, locationType == CvsRepositoryLocationType.BRANCH ? "T" + expandedLocationName : "",
+                    files));
+        } catch (IOException ex) {
+            listener.getLogger().println("Could not use the revision cache: " + ex.getMessage());
+            module.deleteRecursive();
+            return false;
+        }
+        if (restored == 0) {
+            return false;
+        }
+
+        listener.getLogger().println("Restored " + restored + " of " + files.size() + " files in " + moduleName
+                + " from the revision cache");
+        if (perform(createUpdateCommand(location, expandedLocationName, dateStamp, pruneEmptyDirectories),
+                targetWorkspace, listener, repository, moduleName, envVars, null, CvsBuildTimings.forBuild(build))) {
+            return true;
+        }
+        listener.getLogger().println("Update of the restored module failed. Performing full checkout");
+        module.deleteRecursive();
+        return false;
+    }
+
+    private CheckoutCommand createCheckoutCommand(final CvsRepositoryLocation repositoryLocation,
+                                                  final String expandedLocationName, final String dateStamp,
+                                                  final boolean pruneEmptyDirectories, final String checkoutDirectory,
+                                                  final String remoteName) {
+        final CvsRepositoryLocationType locationType = repositoryLocation.getLocationType();
+        final CheckoutCommand checkoutCommand = new CheckoutCommand();
+
+        // point to branch or tag if specified
+        if (locationType == CvsRepositoryLocationType.BRANCH) {
+            checkoutCommand.setCheckoutByRevision(expandedLocationName);
+            if (repositoryLocation.isUseHeadIfNotFound()) {
+                checkoutCommand.setUseHeadIfNotFound(true);
+                checkoutCommand.setCheckoutByDate(dateStamp);
+            }
+        } else if (locationType == CvsRepositoryLocationType.TAG) {
+            checkoutCommand.setCheckoutByRevision(expandedLocationName);
+            if (repositoryLocation.isUseHeadIfNotFound()) {
+                checkoutCommand.setUseHeadIfNotFound(true);
+            }
+        } else if (locationType == CvsRepositoryLocationType.HEAD) {
+            checkoutCommand.setCheckoutByDate(dateStamp);
+        }
+
+        // set directory pruning
+        checkoutCommand.setPruneDirectories(pruneEmptyDirectories);
+
+        // set where we're checking out to
+        if (checkoutDirectory != null) {
+            checkoutCommand.setCheckoutDirectory(checkoutDirectory);
+        }
+
+        // and specify which module to load
+        checkoutCommand.setModule(remoteName);
+
+        return checkoutCommand;
+    }
+
+    private UpdateCommand createUpdateCommand(final CvsRepositoryLocation repositoryLocation,
+                                              final String expandedLocationName, final String dateStamp,
+                                              final boolean pruneEmptyDirectories) {
+        final CvsRepositoryLocationType locationType = repositoryLocation.getLocationType();
+        final UpdateCommand updateCommand = new UpdateCommand();
+
+        // force it to recurse into directories
+        updateCommand.setBuildDirectories(true);
+        updateCommand.setRecursive(true);
+
+        // set directory pruning
+        updateCommand.setPruneDirectories(pruneEmptyDirectories);
+
+        // set overwrite policy
+        updateCommand.setCleanCopy(isForceCleanCopy());
+
+        // point to head, branch or tag
+        if (locationType == CvsRepositoryLocationType.BRANCH) {
+            updateCommand.setUpdateByRevision(expandedLocationName);
+            if (repositoryLocation.isUseHeadIfNotFound()) {
+                updateCommand.setUseHeadIfNotFound(true);
+                updateCommand.setUpdateByDate(dateStamp);
+            }
+        } else if (locationType == CvsRepositoryLocationType.TAG) {
+            updateCommand.setUpdateByRevision(expandedLocationName);
+            updateCommand.setUseHeadIfNotFound(repositoryLocation.isUseHeadIfNotFound());
+        } else {
+            updateCommand.setUpdateByRevision(CvsRepositoryLocationType.HEAD.getName().toUpperCase());
+            updateCommand.setUpdateByDate(dateStamp);
+        }
+
+        return updateCommand;
+    }
+
     /**
      * Runs a cvs command in the given workspace.
      * @param cvsCommand the command to run (checkout, update etc)
@@ -242,72 +382,97 @@ public abstract class AbstractCvs extends SCM implements ICvs {
      * @param repository the repository to connect to
      * @param moduleName the name of the directory within the workspace that will have work performed on it
      * @param envVars the environmental variables to expand
+     * @param files the paths within the module to update, or null to update the whole module
+     * @param timings where to record how long connecting and running the command took
      * @return true if the action succeeds, false otherwise
      * @throws IOException on failure handling files or server actions
      * @throws InterruptedException if the user cancels the action
      */
     private boolean perform(final Command cvsCommand, final FilePath workspace, final TaskListener listener,
-                            final CvsRepository repository, final String moduleName, final EnvVars envVars, final boolean pruneEmptyDirectories)
+                            final CvsRepository repository, final String moduleName, final EnvVars envVars,
+                            final String[] files, final CvsBuildTimings timings)
             throws IOException, InterruptedException {
 
         final Client cvsClient = getCvsClient(repository, envVars, listener);
         final GlobalOptions globalOptions = getGlobalOptions(repository, envVars);
 
+        final String cvsRoot = envVars.expand(repository.getCvsRoot());
+        final String operation = cvsCommand instanceof UpdateCommand ? "update"
+                : cvsCommand instanceof CheckoutCommand ? "checkout" : cvsCommand.getClass().getSimpleName();
+        final CvsMetrics.Sample sample = CvsMetrics.start(cvsRoot, operation);
+        final CvsEvents.Command event = new CvsEvents.Command(cvsRoot, operation, moduleName, CvsEvents.getJob(envVars));
+        event.begin();
+        final long start = System.nanoTime();
 
-        if (!workspace.act(new MasterToSlaveFileCallable<Boolean>() {
+        CvsMetrics.Transfer transfer = null;
+        try {
+            transfer = workspace.act(new MasterToSlaveFileCallable<CvsMetrics.Transfer>() {
 
-            private static final long serialVersionUID = -7517978923721181408L;
+                private static final long serialVersionUID = -7517978923721181408L;
 
-            @Override
-            public Boolean invoke(final File workspace, final VirtualChannel channel) throws RuntimeException {
+                @Override
+                public CvsMetrics.Transfer invoke(final File workspace, final VirtualChannel channel) throws RuntimeException {
 
 
-                if (cvsCommand instanceof UpdateCommand) {
-                    ((UpdateCommand) cvsCommand).setFiles(new File[]{new File(workspace, moduleName)});
-                }
+                    if (cvsCommand instanceof UpdateCommand) {
+                        final File moduleDirectory = new File(workspace, moduleName);
+                        if (files == null) {
+                            ((UpdateCommand) cvsCommand).setFiles(new File[]{moduleDirectory});
+                        } else {
+                            final File[] updateFiles = new File[files.length];
+                            for (int i = 0; i < files.length; i++) {
+                                updateFiles[i] = new File(moduleDirectory, files[i]);
+                            }
+                            ((UpdateCommand) cvsCommand).setFiles(updateFiles);
+                        }
+                    }
 
-                listener.getLogger().println("cvs " + cvsCommand.getCVSCommand());
+                    listener.getLogger().println("cvs " + cvsCommand.getCVSCommand());
 
 
-                cvsClient.setLocalPath(workspace.getAbsolutePath());
-                final BasicListener basicListener = new BasicListener(listener.getLogger(), listener.getLogger());
-                cvsClient.getEventManager().addCVSListener(basicListener);
+                    cvsClient.setLocalPath(workspace.getAbsolutePath());
+                    final BasicListener basicListener = new BasicListener(listener.getLogger(), listener.getLogger());
+                    cvsClient.getEventManager().addCVSListener(basicListener);
+                    final CvsMetrics.Transfer result = new CvsMetrics.Transfer();
+                    cvsClient.getEventManager().addCVSListener(result);
 
-                try {
-                    if (!cvsClient.executeCommand(cvsCommand, globalOptions)) {
-                        return false;
-                    }
-                    if (pruneEmptyDirectories && !isDisableCvsQuiet()) {
+                    try {
+                        result.connected(CvsEvents.connect(cvsClient, cvsRoot));
+                        return result.succeeded(cvsClient.executeCommand(cvsCommand, globalOptions));
+                    } catch (CommandAbortedException e) {
+                        e.printStackTrace(listener.error("CVS Command aborted: " + e.getMessage()));
+                        return result.succeeded(false);
+                    } catch (CommandException e) {
+                        e.printStackTrace(listener.error("CVS Command failed: " + e.getMessage()));
+                        return result.succeeded(false);
+                    } catch (AuthenticationException e) {
+                        e.printStackTrace(listener.error("CVS Authentication failed: " + e.getMessage()));
+                        return result.succeeded(false).connectionFailed();
+                    }  finally {
                         try {
-                            File moduleDir = new File(workspace, moduleName);
-                            if (moduleDir.isDirectory()) {
-                                pruneEmptyDirectories(moduleDir,listener);
-                            }
-                        } catch (IOException e) {
-                            e.printStackTrace(listener.error("CVS empty directory cleanup failed: " + e.getMessage()));
-                            return false;
+                            cvsClient.getConnection().close();
+                        } catch(IOException ex) {
+                            listener.error("Could not close client connection: " + ex.getMessage());
                         }
                     }
-                    return true;
-                } catch (CommandAbortedException e) {
-                    e.printStackTrace(listener.error("CVS Command aborted: " + e.getMessage()));
-                    return false;
-                } catch (CommandException e) {
-                    e.printStackTrace(listener.error("CVS Command failed: " + e.getMessage()));
-                    return false;
-                } catch (AuthenticationException e) {
-                    e.printStackTrace(listener.error("CVS Authentication failed: " + e.getMessage()));
-                    return false;
-                }  finally {
-                    try {
-                        cvsClient.getConnection().close();
-                    } catch(IOException ex) {
-                        listener.error("Could not close client connection: " + ex.getMessage());
-                    }
                 }
+
+            });
+        } finally {
+            sample.stop(transfer != null && transfer.isSucceeded());
+            if (transfer != null) {
+                event.files = transfer.getFiles();
+                event.bytes = transfer.getBytes();
+                event.succeeded = transfer.isSucceeded();
             }
+            event.commit();
+        }
+        transfer.record(cvsRoot);
+        timings.record(cvsRoot, moduleName, CvsBuildTimings.PHASE_CONNECT, transfer.getConnectTime(), 0, 0);
+        timings.record(cvsRoot, moduleName, operation, System.nanoTime() - start - transfer.getConnectTime(),
+                transfer.getFiles(), transfer.getBytes());
 
-        })) {
+        if (!transfer.isSucceeded()) {
             listener.error("Cvs task failed");
             return false;
         }
@@ -316,37 +481,64 @@ public abstract class AbstractCvs extends SCM implements ICvs {
     }
 
     /**
-     * JENKINS-18390: work around buggy client.
-     * Cannot copy similarly-named method from {@link UpdateCommand} due to license mismatch.
-     * Cannot easily call the method reflectively on the {@link Command} since {@link CheckoutCommand} has a different signature for it.
-     * Pending a fix in the client library, do it ourselves when necessary.
+     * Works out which files in a module need updating, based on the changes rlog shows between the previous
+     * build's checkout and this one. The previous build must have checked out into this same workspace, otherwise
+     * the workspace could be in any state and only a full update can be trusted.
+     * @return the paths within the module to update, or null if a full update is needed
      */
-    private static void pruneEmptyDirectories(File d, final TaskListener listener) throws IOException {
-        File[] kids = d.listFiles();
-        if (kids == null) {
-            throw new IOException("could not examine " + d);
-        }
-        for (File kid : kids) {
-            if (!kid.isDirectory()) {
-                continue;
-            }
-            if (!new File(kid, "CVS").isDirectory()) {
-                // not CVS-controlled, ignore
-                continue;
-            }
+    private String[] getTargetedUpdateFiles(final Run<?, ?> build, final FilePath workspace, final FilePath module,
+                                            final CvsRepository repository, final CvsRepositoryItem item,
+                                            final CvsModule cvsModule, final EnvVars envVars,
+                                            final TaskListener listener) throws IOException, InterruptedException {
+        final CvsRepositoryLocation location = item.getLocation();
+        if (isForceCleanCopy() || location.getLocationType() == CvsRepositoryLocationType.TAG
+                || location.isUseHeadIfNotFound()) {
+            return null;
+        }
 
-            if (isSymLink(kid,listener)) {
-                listener.getLogger().println("pruneEmptyDirectories. prevent potential infinate loop, ignoring symlink:" + kid);
-                continue;
-            }
+        if (build.getNumber() % TargetedUpdate.FULL_UPDATE_INTERVAL == 0) {
+            listener.getLogger().println("Running a full update, as is done every "
+                    + TargetedUpdate.FULL_UPDATE_INTERVAL + " builds");
+            return null;
+        }
 
-            pruneEmptyDirectories(kid,listener);
-            File[] subkids = kid.listFiles();
-            if (subkids != null && subkids.length == 1) {
-                // Just CVS.
-                Util.deleteRecursive(kid);
-            }
+        final Run<?, ?> previousBuild = build.getPreviousBuiltBuild();
+        final FilePath previousWorkspace = previousBuild instanceof AbstractBuild
+                ? ((AbstractBuild<?, ?>) previousBuild).getWorkspace() : null;
+        if (previousWorkspace == null || !previousWorkspace.equals(workspace)) {
+            listener.getLogger().println("Previous build didn't use this workspace, running a full update");
+            return null;
+        }
+
+        final CvsRevisionState previousState = previousBuild.getAction(CvsRevisionState.class);
+        if (previousState == null || previousState.getModuleState(repository) == null) {
+            listener.getLogger().println("Repository not found in previous build's state, running a full update");
+            return null;
+        }
+
+        final List<CvsFile> changes;
+        try {
+            changes = getRemoteLogForModule(repository, item, cvsModule, getCheckoutDate(previousBuild),
+                    getCheckoutDate(build), envVars, listener, workspace).getFiles();
+        } catch (RuntimeException ex) {
+            listener.getLogger().println("Could not list changes since the previous build, running a full update: "
+                    + ex.getMessage());
+            return null;
+        }
+
+        final String rootName = CVSRoot.parse(envVars.expand(repository.getCvsRoot())).getRepository();
+        final String[] files = TargetedUpdate.getModuleFiles(changes, rootName, envVars.expand(cvsModule.getRemoteName()));
+        if (files == null) {
+            listener.getLogger().println("Changes found outside the module directory, running a full update");
+            return null;
         }
+        if (!module.act(new TargetedUpdate.DirectoriesPresent(files))) {
+            listener.getLogger().println("Changes found in directories not yet checked out, running a full update");
+            return null;
+        }
+
+        listener.getLogger().println("Updating " + files.length + " changed files");
+        return files;
     }
 
     /**
@@ -523,6 +715,16 @@ public abstract class AbstractCvs extends SCM implements ICvs {
         final Map<CvsRepository, List<CvsFile>> remoteState = new HashMap<CvsRepository, List<CvsFile>>(
                 ((CvsRevisionState) baseline).getModuleFiles());
 
+        // carry on from where the last poll got to rather than going back to the build
+        final PollingWatermark watermark = PollingWatermark.load(project, build);
+        final Date startTime = watermark == null ? build.getTime() : watermark.getStartTime();
+        final PollingWatermark nextWatermark = new PollingWatermark(build.getNumber(), currentPollDate);
+
+        if (ChangeDetector.ENABLED && watermark != null && watermark.isChangesPending()) {
+            listener.getLogger().println("Changes found by an earlier poll have not been built yet, scheduling build");
+            return new PollingResult(baseline, baseline, PollingResult.Change.SIGNIFICANT);
+        }
+
         // Loops through every module and check if it has changed
         for (CvsRepository repository : repositories) {
 
@@ -536,36 +738,15 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                         PollingResult.Change.INCOMPARABLE);
             }
 
-            // get the list of current changed files in this repository
-            final List<CvsFile> changes = calculateRepositoryState(build.getTime(),
-                    currentPollDate, repository, listener, envVars, workspace);
-
             final List<CvsFile> remoteFiles = remoteState.get(repository);
+            final String watermarkKey = PollingWatermark.getKey(repository, envVars);
 
-            // update the remote state with the changes we've just retrieved
-            for (CvsFile changedFile : changes) {
-                boolean changed = false;
-                for (ListIterator<CvsFile> itr = remoteFiles.listIterator(); itr.hasNext();) {
-                    CvsFile existingFile = itr.next();
-                    if (!changedFile.getName().equals(existingFile.getName())) {
-                        continue;
-                    }
-
-                    itr.remove();
-                    if (!changedFile.isDead()) {
-                        itr.add(changedFile);
-                    }
-                    changed = true;
-                }
-                if (!changed) {
-                    // file was not in old remote state, add it in
-                    remoteFiles.add(changedFile);
-                }
+            if (watermark != null) {
+                // the baseline may be the build's own state after a restart, so bring it up to date with the
+                // earlier polls
+                watermark.restore(watermarkKey, remoteFiles);
             }
 
-            // set the updated files list back into the remote state
-            remoteState.put(repository, remoteFiles);
-
             // convert the excluded regions into patterns so we can use them as
             // regular expressions
             final List<Pattern> excludePatterns = new ArrayList<Pattern>();
@@ -579,31 +760,221 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                 }
             }
 
-            // create a list of changes we can use to filter out excluded
-            // regions
-            final List<CvsFile> filteredChanges = new ArrayList<CvsFile>(changes);
+            // get the list of current changed files in this repository
+            List<CvsFile> changes = null;
+            if (!DATED_TAG_POLLING && isFixedTag(repository)) {
+                // a tag only changes when it's moved, so rather than listing changes compare where it points now
+                // with what the build checked out
+                changes = getMovedTagFiles(repository, envVars, listener, remoteFiles);
+                if (changes == null) {
+                    listener.getLogger().println("Tagged files can't be matched to the checked out files, "
+                            + "polling for changes by date instead");
+                }
+            }
 
-            // filter out all changes in the exclude regions
-            for (final Pattern excludePattern : excludePatterns) {
-                for (Iterator<CvsFile> itr = filteredChanges.iterator(); itr.hasNext(); ) {
-                    CvsFile change = itr.next();
-                    if (excludePattern.matcher(change.getName()).matches()) {
-                        listener.getLogger().println("Skipping file '" + change.getName() + "' since it matches exclude pattern " + excludePattern.pattern());
-                        itr.remove();
-                    }
+            if (changes == null && ChangeDetector.ENABLED) {
+                final List<CvsFile> knownRevisions = new ArrayList<CvsFile>();
+                if (watermark != null) {
+                    knownRevisions.addAll(remoteFiles);
+                    knownRevisions.addAll(watermark.getChanges(watermarkKey));
+                }
+                final ChangeDetector detector = new ChangeDetector(excludePatterns, knownRevisions);
+                changes = calculateRepositoryState(startTime, currentPollDate, repository, listener, envVars,
+                        workspace, detector);
+
+                // the build works out the full state when it checks out, so there's no need to list the rest
+                final CvsFile significantChange = detector.findSignificant(changes);
+                if (significantChange != null) {
+                    listener.getLogger().println("Found a change to " + significantChange.getName()
+                            + ", scheduling build");
+                    return new PollingResult(baseline, baseline, PollingResult.Change.SIGNIFICANT);
                 }
+            } else if (changes == null) {
+                changes = calculateRepositoryState(startTime, currentPollDate, repository, listener, envVars,
+                        workspace);
             }
 
+            if (watermark != null) {
+                // ignore anything the earlier polls have already seen
+                changes = watermark.removeKnownChanges(watermarkKey, changes, remoteFiles);
+                nextWatermark.addChanges(watermarkKey, watermark.getChanges(watermarkKey));
+            }
+            nextWatermark.addChanges(watermarkKey, changes);
+
+            // update the remote state with the changes we've just retrieved
+            mergeRemoteState(remoteFiles, changes);
+
+            // set the updated files list back into the remote state
+            remoteState.put(repository, remoteFiles);
+
+            // filter out all changes in the exclude regions
+            final List<CvsFile> filteredChanges = filterExcludedChanges(changes, excludePatterns, listener);
+
             // if our list of changes isn't empty then we want to note this as
             // we need a build
             changesPresent = changesPresent || !filteredChanges.isEmpty();
         }
 
+        // keep asking for a build until one happens, even if this poll found nothing new
+        changesPresent = changesPresent || watermark != null && watermark.isChangesPending();
+        nextWatermark.setChangesPending(changesPresent);
+        nextWatermark.save(project);
+
         // Return the new repository state and whether we require a new build
         return new PollingResult(baseline, new CvsRevisionState(remoteState),
                 changesPresent ? PollingResult.Change.SIGNIFICANT : PollingResult.Change.NONE);
     }
 
+    /**
+     * Applies the changes retrieved by polling to the files from the previous
+     * state: a changed file replaces any existing entry with the same name, or
+     * removes it if the file is now dead, and files not seen before are added.
+     * @param remoteFiles the files from the previous state, updated in place
+     * @param changes the files that have changed since the previous state
+     */
+    static void mergeRemoteState(final List<CvsFile> remoteFiles, final List<CvsFile> changes) {
+        for (CvsFile changedFile : changes) {
+            boolean changed = false;
+            for (ListIterator<CvsFile> itr = remoteFiles.listIterator(); itr.hasNext();) {
+                CvsFile existingFile = itr.next();
+                if (!changedFile.getName().equals(existingFile.getName())) {
+                    continue;
+                }
+
+                itr.remove();
+                if (!changedFile.isDead()) {
+                    itr.add(changedFile);
+                }
+                changed = true;
+            }
+            if (!changed) {
+                // file was not in old remote state, add it in
+                remoteFiles.add(changedFile);
+            }
+        }
+    }
+
+    /**
+     * Removes any changes whose file name matches one of the excluded regions.
+     * @param changes the changed files retrieved by polling
+     * @param excludePatterns the compiled excluded regions
+     * @param listener where to log each skipped file
+     * @return a new list of the changes that aren't excluded
+     */
+    static List<CvsFile> filterExcludedChanges(final List<CvsFile> changes, final List<Pattern> excludePatterns,
+                                               final TaskListener listener) {
+        final List<CvsFile> filteredChanges = new ArrayList<CvsFile>(changes);
+
+        for (final Pattern excludePattern : excludePatterns) {
+            for (Iterator<CvsFile> itr = filteredChanges.iterator(); itr.hasNext(); ) {
+                CvsFile change = itr.next();
+                if (excludePattern.matcher(change.getName()).matches()) {
+                    listener.getLogger().println("Skipping file '" + change.getName() + "' since it matches exclude pattern " + excludePattern.pattern());
+                    itr.remove();
+                }
+            }
+        }
+        return filteredChanges;
+    }
+
+    /**
+     * @return true if every item in the repository is a tag that doesn't fall back to head, so what's checked out
+     *         can only change if a tag is moved
+     */
+    private static boolean isFixedTag(final CvsRepository repository) {
+        for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+            final CvsRepositoryLocation location = item.getLocation();
+            if (!(location instanceof CvsRepositoryLocation.TagRepositoryLocation) || location.isUseHeadIfNotFound()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the revisions the repository's tag is on with the files the build checked out, module by module.
+     * @return the files the tag has moved onto or off, or null if the tagged files of any module can't be matched
+     *         to the checked out files
+     */
+    private List<CvsFile> getMovedTagFiles(final CvsRepository repository, final EnvVars envVars,
+                                           final TaskListener listener, final List<CvsFile> checkedOutFiles)
+            throws IOException {
+        final List<CvsFile> changes = new ArrayList<CvsFile>();
+        for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+            for (CvsModule module : item.getModules()) {
+                final List<CvsFile> moduleChanges = compareTagRevisions(envVars.expand(module.getRemoteName()),
+                        getRemoteTagFiles(repository, item, module, envVars, listener), checkedOutFiles);
+                if (moduleChanges == null) {
+                    return null;
+                }
+                changes.addAll(moduleChanges);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Compares the revisions a tag is on in a module with the files a build checked out from it. The two are
+     * compared by digest first, since the tag usually hasn't moved.
+     * <p>
+     * The tagged files are named by their path in the repository, which only matches the names of the checked out
+     * files when the module is a directory checked out under its own path. An alias module or a single file
+     * module can't be compared this way, so null is returned and the caller has to poll by date instead.
+     * @param moduleName the name of the module, which starts the name of each file checked out from it
+     * @param tagFiles the revisions carrying the tag, from {@link #getRemoteTagFiles}
+     * @param checkedOutFiles the files checked out from all of the repository's modules
+     * @return the files the tag has moved onto, and those it's been removed from or moved onto a dead revision
+     *         of marked as dead, or null if the tagged files can't be matched to the checked out files
+     */
+    static List<CvsFile> compareTagRevisions(final String moduleName, final List<CvsFile> tagFiles,
+                                             final List<CvsFile> checkedOutFiles) {
+        final String modulePrefix = moduleName + "/";
+        final Map<String, CvsFile> tagged = new HashMap<String, CvsFile>();
+        for (CvsFile file : tagFiles) {
+            if (!file.getName().startsWith(modulePrefix)) {
+                return null;
+            }
+            if (!file.isDead()) {
+                tagged.put(file.getName(), file);
+            }
+        }
+        final Map<String, CvsFile> checkedOut = new HashMap<String, CvsFile>();
+        for (CvsFile file : checkedOutFiles) {
+            if (file.getName().startsWith(modulePrefix)) {
+                checkedOut.put(file.getName(), file);
+            }
+        }
+        if (!tagged.isEmpty() && checkedOut.isEmpty()) {
+            // nothing was recorded under the module's own path, so the build's files can't be told apart
+            return null;
+        }
+
+        final List<CvsFile> changes = new ArrayList<CvsFile>();
+        if (getRevisionDigest(tagged).equals(getRevisionDigest(checkedOut))) {
+            return changes;
+        }
+        for (CvsFile file : tagged.values()) {
+            final CvsFile checkedOutFile = checkedOut.get(file.getName());
+            if (checkedOutFile == null || !checkedOutFile.getRevision().equals(file.getRevision())) {
+                changes.add(file);
+            }
+        }
+        for (CvsFile file : checkedOut.values()) {
+            if (!tagged.containsKey(file.getName())) {
+                changes.add(CvsFile.make(file.getName(), file.getRevision(), true));
+            }
+        }
+        return changes;
+    }
+
+    private static String getRevisionDigest(final Map<String, CvsFile> files) {
+        final StringBuilder revisions = new StringBuilder();
+        for (String name : new TreeSet<String>(files.keySet())) {
+            revisions.append(name).append(' ').append(files.get(name).getRevision()).append('\n');
+        }
+        return Util.getDigestOf(revisions.toString());
+    }
+
     /**
      * Builds a list of files that have changed in the given repository between
      * any 2 time-stamps. This does not require the workspace to be checked out
@@ -629,11 +1000,27 @@ public abstract class AbstractCvs extends SCM implements ICvs {
     protected List<CvsFile> calculateRepositoryState(final Date startTime, final Date endTime,
                                                      final CvsRepository repository, final TaskListener listener,
                                                      final EnvVars envVars, final FilePath workspace) throws IOException, InterruptedException {
+        return calculateRepositoryState(startTime, endTime, repository, listener, envVars, workspace, null);
+    }
+
+    /**
+     * Lists the changed files as {@link #calculateRepositoryState(Date, Date, CvsRepository, TaskListener, EnvVars, FilePath)}
+     * does, but if there's a detector the list stops at the first change that calls for a build.
+     */
+    private List<CvsFile> calculateRepositoryState(final Date startTime, final Date endTime,
+                                                   final CvsRepository repository, final TaskListener listener,
+                                                   final EnvVars envVars, final FilePath workspace,
+                                                   final ChangeDetector detector) throws IOException, InterruptedException {
         final List<CvsFile> files = new ArrayList<CvsFile>();
 
         for (final CvsRepositoryItem item : repository.getRepositoryItems()) {
             for (final CvsModule module : item.getModules()) {
-                files.addAll(getRemoteLogForModule(repository, item, module, startTime, endTime, envVars, listener, workspace).getFiles());
+                final List<CvsFile> moduleFiles = getRemoteLogForModule(repository, item, module, startTime, endTime,
+                        envVars, listener, workspace, detector).getFiles();
+                files.addAll(moduleFiles);
+                if (detector != null && detector.findSignificant(moduleFiles) != null) {
+                    return files;
+                }
             }
         }
         return files;
@@ -659,21 +1046,71 @@ public abstract class AbstractCvs extends SCM implements ICvs {
      */
     private CvsChangeSet getRemoteLogForModule(final CvsRepository repository, final CvsRepositoryItem item, final CvsModule module,
                                          final Date startTime, final Date endTime,
-                                         final EnvVars envVars, final TaskListener listener, FilePath workspace) throws IOException, InterruptedException {
-        final Client cvsClient = getCvsClient(repository, envVars, listener);
+                                         final EnvVars envVars, final TaskListener listener, final FilePath workspace) throws IOException, InterruptedException {
+        return getRemoteLogForModule(repository, item, module, startTime, endTime, envVars, listener, workspace, null);
+    }
 
-        final RlogCommand rlogCommand = new RlogCommand();
+    /**
+     * Gets the changes to a module, stopping at the first one that calls for a build if there's a detector.
+     * Results from the segment cache are always complete, since a partial rlog can't be cached.
+     */
+    private CvsChangeSet getRemoteLogForModule(final CvsRepository repository, final CvsRepositoryItem item, final CvsModule module,
+                                         final Date startTime, final Date endTime, final EnvVars envVars,
+                                         final TaskListener listener, final FilePath workspace,
+                                         final ChangeDetector detector) throws IOException, InterruptedException {
+        // tell CVS which module we're logging
+        final String moduleName = envVars.expand(module.getRemoteName());
 
-        // we have to synchronize since we're dealing with DateFormat.format()
-        synchronized (DATE_FORMATTER) {
-            final String lastBuildDate = DATE_FORMATTER.format(startTime);
-            final String endDate = DATE_FORMATTER.format(endTime);
+        final RlogSegmentCache.Fetcher fetcher = new RlogSegmentCache.Fetcher() {
+            @Override
+            public CvsChangeSet fetch(final Date start, final Date end, final boolean inclusive) throws IOException, InterruptedException {
+                final String dateFilter;
+                // we have to synchronize since we're dealing with DateFormat.format()
+                synchronized (DATE_FORMATTER) {
+                    dateFilter = DATE_FORMATTER.format(start) + (inclusive ? "<=" : "<") + DATE_FORMATTER.format(end);
+                }
+                return fetchRemoteLog(repository, item, moduleName, dateFilter, envVars, listener, workspace,
+                        RlogSegmentCache.ENABLED ? null : detector);
+            }
+        };
 
-            rlogCommand.setDateFilter(lastBuildDate + "<" + endDate);
+        if (!RlogSegmentCache.ENABLED) {
+            return fetcher.fetch(startTime, endTime, false);
         }
 
-        // tell CVS which module we're logging
-        rlogCommand.setModule(envVars.expand(module.getRemoteName()));
+        final CvsRepositoryLocation location = item.getLocation();
+        final String key = RlogSegmentCache.getKey(envVars.expand(repository.getCvsRoot()), moduleName,
+                location.getLocationType(), envVars.expand(location.getLocationName()),
+                getDescriptor().getChangelogEncoding());
+        return RlogSegmentCache.get().getChanges(key, startTime, endTime, repository, fetcher);
+    }
+
+    /**
+     * Runs rlog against a module for the given date filter, on the workspace's node if there is one.
+     * @param detector stops rlog at the first change that calls for a build, or null to list every change
+     */
+    private CvsChangeSet fetchRemoteLog(final CvsRepository repository, final CvsRepositoryItem item,
+                                        final String moduleName, final String dateFilter, final EnvVars envVars,
+                                        final TaskListener listener, final FilePath workspace,
+                                        final ChangeDetector detector)
+            throws IOException, InterruptedException {
+        final Client cvsClient = getCvsClient(repository, envVars, listener);
+
+        final RlogCommand rlogCommand = new RlogCommand();
+        rlogCommand.setDateFilter(dateFilter);
+        rlogCommand.setModule(moduleName);
+
+        // only list the revisions on the location's branch. The symbolic names are the bulk of the output on a
+        // heavily tagged repository, but are still needed to map branch revisions back to the branch name
+        final CvsRepositoryLocation location = item.getLocation();
+        if (!UNFILTERED_RLOG) {
+            if (location instanceof CvsRepositoryLocation.HeadRepositoryLocation) {
+                rlogCommand.setDefaultBranch(true);
+                rlogCommand.setNoTags(true);
+            } else if (location instanceof CvsRepositoryLocation.BranchRepositoryLocation) {
+                rlogCommand.setRevisionFilter(envVars.expand(location.getLocationName()));
+            }
+        }
 
         // ignore headers for files that aren't in the current change-set
         rlogCommand.setSuppressHeader(true);
@@ -681,29 +1118,202 @@ public abstract class AbstractCvs extends SCM implements ICvs {
         final String encoding = getDescriptor().getChangelogEncoding();
         final GlobalOptions globalOptions = getGlobalOptions(repository, envVars);
 
-        if (workspace == null) {
-            return executeRlog(cvsClient, rlogCommand, listener, encoding, globalOptions, repository, envVars, item.getLocation());
+        final String cvsRoot = envVars.expand(repository.getCvsRoot());
+        final CvsMetrics.Sample sample = CvsMetrics.start(cvsRoot, "rlog");
+        CvsChangeSet changeSet = null;
+        try {
+            if (workspace == null) {
+                changeSet = executeRlog(cvsClient, rlogCommand, listener, encoding, globalOptions, repository, envVars,
+                        location, moduleName, detector);
+            }
+            else {
+                changeSet = workspace.act(new MasterToSlaveFileCallable<CvsChangeSet>() {
+                    @Override
+                    public CvsChangeSet invoke(File file, VirtualChannel virtualChannel) throws IOException, InterruptedException {
+                        return executeRlog(cvsClient, rlogCommand, listener, encoding, globalOptions, repository,
+                                envVars, location, moduleName, detector);
+                    }
+                });
+            }
+            return changeSet;
+        } finally {
+            recordRlog(cvsRoot, sample, changeSet);
         }
-        else {
-            return workspace.act(new MasterToSlaveFileCallable<CvsChangeSet>() {
-                @Override
-                public CvsChangeSet invoke(File file, VirtualChannel virtualChannel) throws IOException, InterruptedException {
-                    return executeRlog(cvsClient, rlogCommand, listener, encoding, globalOptions, repository, envVars, item.getLocation());
-                }
-            });
+    }
+
+    /**
+     * Gets the revision of each file in a module that the repository item's location selects at the given
+     * date. A single date (rather than a date range) is passed to <tt>rlog</tt> so at most one revision is
+     * listed for each file. File names are relative to the repository root with any <tt>Attic</tt>
+     * directory removed, so they can be compared against the names held in a {@link CvsRevisionState}.
+     * Only head and branch locations are supported since a tag doesn't depend on the date.
+     *
+     * @param repository the repository to run rlog against
+     * @param item the repository item holding the module and the location to check
+     * @param module the module to list the files for
+     * @param date the date to get file revisions at
+     * @param envVars variables to use for macro expansion
+     * @param listener where to log any messages to
+     * @return the revision of each live or dead file at the requested date
+     * @throws IOException on failure buffering the rlog output
+     */
+    public List<CvsFile> getRemoteFilesAtDate(final CvsRepository repository, final CvsRepositoryItem item,
+                                              final CvsModule module, final Date date, final EnvVars envVars,
+                                              final TaskListener listener) throws IOException {
+        final CvsRepositoryLocation location = item.getLocation();
+        final RlogCommand rlogCommand = new RlogCommand();
+
+        synchronized (DATE_FORMATTER) {
+            rlogCommand.setDateFilter(DATE_FORMATTER.format(date));
+        }
+
+        if (location instanceof CvsRepositoryLocation.BranchRepositoryLocation) {
+            rlogCommand.setRevisionFilter(envVars.expand(location.getLocationName()));
+        } else if (location instanceof CvsRepositoryLocation.HeadRepositoryLocation) {
+            rlogCommand.setDefaultBranch(true);
+        } else {
+            throw new IllegalArgumentException("Files can only be listed by date for head or branch locations");
         }
 
+        rlogCommand.setModule(envVars.expand(module.getRemoteName()));
+        rlogCommand.setSuppressHeader(true);
+
+        final CvsMetrics.Sample sample = CvsMetrics.start(envVars.expand(repository.getCvsRoot()), "rlog");
+        CvsChangeSet changeSet = null;
+        try {
+            changeSet = executeRlog(getCvsClient(repository, envVars, listener, false), rlogCommand,
+                    listener, getDescriptor().getChangelogEncoding(), getGlobalOptions(repository, envVars), repository,
+                    envVars, location, envVars.expand(module.getRemoteName()), null);
+        } finally {
+            recordRlog(envVars.expand(repository.getCvsRoot()), sample, changeSet);
+        }
 
+        return toRepositoryNames(repository, envVars, changeSet);
     }
 
-    private CvsChangeSet executeRlog(Client cvsClient, RlogCommand rlogCommand,
+    /**
+     * Gets the revision of each file in a module that carries the repository item's tag. Only the tagged
+     * revisions are listed, without any symbolic names, so this stays cheap however much history or how many
+     * tags the module has. File names are relative to the repository root with any <tt>Attic</tt> directory
+     * removed, as with {@link #getRemoteFilesAtDate}.
+     *
+     * @param repository the repository to run rlog against
+     * @param item the repository item holding the module and the tag
+     * @param module the module to list the files for
+     * @param envVars variables to use for macro expansion
+     * @param listener where to log any messages to
+     * @return the tagged revision of each file that carries the tag, which may be dead
+     * @throws IOException on failure buffering the rlog output
+     */
+    public List<CvsFile> getRemoteTagFiles(final CvsRepository repository, final CvsRepositoryItem item,
+                                           final CvsModule module, final EnvVars envVars,
+                                           final TaskListener listener) throws IOException {
+        final CvsRepositoryLocation location = item.getLocation();
+        if (!(location instanceof CvsRepositoryLocation.TagRepositoryLocation)) {
+            throw new IllegalArgumentException("Tagged files can only be listed for tag locations");
+        }
+
+        final RlogCommand rlogCommand = new RlogCommand();
+        rlogCommand.setRevisionFilter(envVars.expand(location.getLocationName()));
+        rlogCommand.setNoTags(true);
+        rlogCommand.setModule(envVars.expand(module.getRemoteName()));
+        rlogCommand.setSuppressHeader(true);
+
+        final CvsMetrics.Sample sample = CvsMetrics.start(envVars.expand(repository.getCvsRoot()), "rlog");
+        CvsChangeSet changeSet = null;
+        try {
+            // without the symbolic names every revision listed is taken to be on head, which is all of them
+            changeSet = executeRlog(getCvsClient(repository, envVars, listener, false), rlogCommand,
+                    listener, getDescriptor().getChangelogEncoding(), getGlobalOptions(repository, envVars), repository,
+                    envVars, new CvsRepositoryLocation.HeadRepositoryLocation(), envVars.expand(module.getRemoteName()),
+                    null);
+        } finally {
+            recordRlog(envVars.expand(repository.getCvsRoot()), sample, changeSet);
+        }
+
+        return toRepositoryNames(repository, envVars, changeSet);
+    }
+
+    /**
+     * Converts the files listed by rlog to the names used in a {@link CvsRevisionState}.
+     */
+    private static List<CvsFile> toRepositoryNames(final CvsRepository repository, final EnvVars envVars,
+                                                   final CvsChangeSet changeSet) {
+        final String rootName = CVSRoot.parse(envVars.expand(repository.getCvsRoot())).getRepository();
+        final List<CvsFile> files = new ArrayList<CvsFile>();
+        for (CvsFile file : changeSet.getFiles()) {
+            String name = file.getName().substring(rootName.length() + 1);
+            final int atticIndex = name.lastIndexOf("/Attic/");
+            if (atticIndex != -1 && name.indexOf('/', atticIndex + 7) == -1) {
+                name = name.substring(0, atticIndex) + name.substring(atticIndex + 6);
+            }
+            files.add(CvsFile.make(name, file.getRevision(), file.isDead()));
+        }
+        return files;
+    }
+
+    /**
+     * Records an rlog run against the repository, which failed if there's no change set.
+     */
+    private static void recordRlog(final String cvsRoot, final CvsMetrics.Sample sample, final CvsChangeSet changeSet) {
+        sample.stop(changeSet != null);
+        CvsMetrics.count(cvsRoot, CvsMetrics.COUNTER_CONNECTIONS, 1);
+        if (changeSet != null) {
+            CvsMetrics.count(cvsRoot, CvsMetrics.COUNTER_RLOG_LINES, changeSet.getLineCount());
+        }
+    }
+
+    private CvsChangeSet executeRlog(final Client cvsClient, RlogCommand rlogCommand,
                              TaskListener listener, final String encoding, GlobalOptions globalOptions,
-                             CvsRepository repository, EnvVars envVars, CvsRepositoryLocation location) throws IOException {
+                             CvsRepository repository, EnvVars envVars, CvsRepositoryLocation location,
+                             String module, final ChangeDetector detector) throws IOException {
         // create an output stream to send the output from CVS command to - we
         // can then parse it from here
         final File tmpRlogSpill = File.createTempFile("cvs","rlog");
         final DeferredFileOutputStream outputStream = new DeferredFileOutputStream(100*1024,tmpRlogSpill);
-        final PrintStream logStream = new PrintStream(outputStream, true, encoding);
+
+        // return the contents of the stream as the output of the command
+        CvsLog log = new CvsLog() {
+            @Override
+            public Reader read() throws IOException {
+                // note that master and slave can have different platform encoding
+                if (outputStream.isInMemory())
+                    return new InputStreamReader(new ByteArrayInputStream(outputStream.getData()), encoding);
+                else
+                    return new InputStreamReader(new FileInputStream(outputStream.getFile()), encoding);
+            }
+
+            @Override
+            public void dispose() {
+                if (!tmpRlogSpill.delete()) {
+                    tmpRlogSpill.deleteOnExit();
+                }
+            }
+        };
+
+        final String cvsRoot = envVars.expand(repository.getCvsRoot());
+
+        // if we're only looking for a change that needs a build then parse the output as it arrives, and stop
+        // rlog as soon as one turns up
+        final CvsLog.Parser parser = detector == null ? null
+                : log.newParser(cvsRoot, location, repository, envVars, detector);
+        final PrintStream logStream;
+        if (parser == null) {
+            logStream = new PrintStream(outputStream, true, encoding);
+        } else {
+            logStream = new PrintStream(new LineTransformationOutputStream() {
+                @Override
+                protected void eol(final byte[] bytes, final int length) throws IOException {
+                    if (parser.isStopped()) {
+                        return;
+                    }
+                    parser.parseLine(trimEOL(new String(bytes, 0, length, encoding)));
+                    if (parser.isStopped()) {
+                        cvsClient.abort();
+                    }
+                }
+            }, true, encoding);
+        }
 
         // set a listener with our output stream that we parse the log from
         final CVSListener basicListener = new BasicListener(logStream, listener.getLogger());
@@ -713,17 +1323,28 @@ public abstract class AbstractCvs extends SCM implements ICvs {
         listener.getLogger().println("cvs " + rlogCommand.getCVSCommand());
 
 
+        final CvsEvents.Command event = new CvsEvents.Command(cvsRoot, "rlog", module, CvsEvents.getJob(envVars));
+        event.begin();
+        long connectTime = 0;
         try {
-            if (!cvsClient.executeCommand(rlogCommand, globalOptions)) {
+            connectTime = CvsEvents.connect(cvsClient, cvsRoot);
+            if (!cvsClient.executeCommand(rlogCommand, globalOptions) && !isStopped(parser)) {
                 cleanupLog(logStream, tmpRlogSpill);
                 throw new RuntimeException("Error while trying to run CVS rlog");
             }
+            event.succeeded = true;
         } catch (CommandAbortedException e) {
-            cleanupLog(logStream, tmpRlogSpill);
-            throw new RuntimeException("CVS rlog command aborted", e);
+            if (!isStopped(parser)) {
+                cleanupLog(logStream, tmpRlogSpill);
+                throw new RuntimeException("CVS rlog command aborted", e);
+            }
+            event.succeeded = true;
         } catch (CommandException e) {
-            cleanupLog(logStream, tmpRlogSpill);
-            throw new RuntimeException("CVS rlog command failed", e);
+            if (!isStopped(parser)) {
+                cleanupLog(logStream, tmpRlogSpill);
+                throw new RuntimeException("CVS rlog command failed", e);
+            }
+            event.succeeded = true;
         } catch (AuthenticationException e) {
             cleanupLog(logStream, tmpRlogSpill);
             throw new RuntimeException("CVS authentication failure while running rlog command", e);
@@ -731,35 +1352,39 @@ public abstract class AbstractCvs extends SCM implements ICvs {
             try {
                 cvsClient.getConnection().close();
             } catch (IOException ex) {
-                listener.error("Could not close CVS connection");
-                ex.printStackTrace(listener.getLogger());
+                // stopping rlog early may already have closed it
+                if (!isStopped(parser)) {
+                    listener.error("Could not close CVS connection");
+                    ex.printStackTrace(listener.getLogger());
+                }
             }
             // flush the output so we have it all available for parsing
             logStream.close();
+            event.commit();
         }
 
+        final CvsEvents.RlogParse parseEvent = new CvsEvents.RlogParse();
+        parseEvent.begin();
+        final CvsChangeSet changeSet;
+        if (parser == null) {
+            changeSet = log.mapCvsLog(cvsRoot, location, repository, envVars);
+        } else {
+            changeSet = parser.finish();
+            log.dispose();
+        }
+        if (parseEvent.shouldCommit()) {
+            parseEvent.cvsRoot = CvsMetrics.sanitise(cvsRoot);
+            parseEvent.lines = changeSet.getLineCount();
+            parseEvent.files = changeSet.getFiles().size();
+            parseEvent.changes = changeSet.getChanges().size();
+            parseEvent.commit();
+        }
+        changeSet.setConnectTime(connectTime);
+        return changeSet;
+    }
 
-
-        // return the contents of the stream as the output of the command
-        CvsLog log = new CvsLog() {
-            @Override
-            public Reader read() throws IOException {
-                // note that master and slave can have different platform encoding
-                if (outputStream.isInMemory())
-                    return new InputStreamReader(new ByteArrayInputStream(outputStream.getData()), encoding);
-                else
-                    return new InputStreamReader(new FileInputStream(outputStream.getFile()), encoding);
-            }
-
-            @Override
-            public void dispose() {
-                if (!tmpRlogSpill.delete()) {
-                    tmpRlogSpill.deleteOnExit();
-                }
-            }
-        };
-
-        return log.mapCvsLog(envVars.expand(repository.getCvsRoot()), location, repository, envVars);
+    private static boolean isStopped(final CvsLog.Parser parser) {
+        return parser != null && parser.isStopped();
     }
 
     private void cleanupLog(PrintStream logStream, File tmpRlogSpill)
@@ -799,12 +1424,36 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                                                                     final CvsRepository repository,
                                                                     final TaskListener listener, final EnvVars envVars, FilePath workspace)
             throws IOException, InterruptedException {
+        return calculateChangeLog(startTime, endTime, repository, listener, envVars, workspace, null);
+    }
+
+    /**
+     * As {@link #calculateChangeLog(Date, Date, CvsRepository, TaskListener, EnvVars, FilePath)}, recording how
+     * long each module took.
+     * @param timings where to record the time taken for each module, or null to not record it
+     */
+    private List<CVSChangeLogSet.CVSChangeLog> calculateChangeLog(final Date startTime, final Date endTime,
+                                                                  final CvsRepository repository,
+                                                                  final TaskListener listener, final EnvVars envVars,
+                                                                  final FilePath workspace,
+                                                                  final CvsBuildTimings timings)
+            throws IOException, InterruptedException {
 
         final List<CVSChangeLogSet.CVSChangeLog> changes = new ArrayList<CVSChangeLogSet.CVSChangeLog>();
 
         for (final CvsRepositoryItem item : repository.getRepositoryItems()) {
             for (final CvsModule module : item.getModules()) {
-                changes.addAll(getRemoteLogForModule(repository, item, module, startTime, endTime, envVars, listener, workspace).getChanges());
+                final long start = System.nanoTime();
+                final CvsChangeSet changeSet = getRemoteLogForModule(repository, item, module, startTime, endTime,
+                        envVars, listener, workspace);
+                if (timings != null) {
+                    final String cvsRoot = envVars.expand(repository.getCvsRoot());
+                    final String moduleName = envVars.expand(module.getRemoteName());
+                    timings.record(cvsRoot, moduleName, CvsBuildTimings.PHASE_CONNECT, changeSet.getConnectTime(), 0, 0);
+                    timings.record(cvsRoot, moduleName, CvsBuildTimings.PHASE_CHANGELOG,
+                            System.nanoTime() - start - changeSet.getConnectTime(), changeSet.getFiles().size(), 0);
+                }
+                changes.addAll(changeSet.getChanges());
             }
         }
         return changes;
@@ -815,6 +1464,7 @@ public abstract class AbstractCvs extends SCM implements ICvs {
             throws IOException, InterruptedException {
         // build change log
         final Run<?, ?> lastCompleteBuild = build.getPreviousBuiltBuild();
+        final CvsBuildTimings timings = CvsBuildTimings.forBuild(build);
 
         if( null != changelogFile )
         {
@@ -825,74 +1475,50 @@ public abstract class AbstractCvs extends SCM implements ICvs {
                 final List<CVSChangeLogSet.CVSChangeLog> changes = new ArrayList<CVSChangeLogSet.CVSChangeLog>();
                 for (CvsRepository location : repositories) {
                     changes.addAll(calculateChangeLog(lastCompleteTimestamp, checkoutDate, location,
-                            listener, build.getEnvironment(listener), workspace));
+                            listener, build.getEnvironment(listener), workspace, timings));
                 }
+                final CvsEvents.ChangeLog event = new CvsEvents.ChangeLog();
+                event.begin();
                 new CVSChangeLogSet(build, getBrowser(), changes).toFile(changelogFile);
+                if (event.shouldCommit()) {
+                    event.operation = "write";
+                    event.job = build.getFullDisplayName();
+                    event.entries = changes.size();
+                    event.bytes = changelogFile.length();
+                    event.commit();
+                }
             } else {
                 createEmptyChangeLog(changelogFile, listener, "changelog");
             }
         }
 
-        // add the current workspace state as an action
-        build.getActions().add(new CvsRevisionState(calculateWorkspaceState(workspace, repositories, flatten, envVars, listener)));
-
-        // add the tag action to the build
-        build.getActions().add(new CvsTagAction(build, this));
-
-        // remove sticky date tags
-        for (final CvsRepository repository : getRepositories()) {
-            for (final CvsRepositoryItem repositoryItem : repository.getRepositoryItems()) {
-                for (final CvsModule module : repositoryItem.getModules()) {
-                    FilePath target = (flatten ? workspace : workspace.child(module.getCheckoutName()));
-                    target.act(new MasterToSlaveFileCallable<Void>() {
-                        @Override
-                        public Void invoke(File module, VirtualChannel virtualChannel) throws IOException, InterruptedException {
-                            final AdminHandler adminHandler = new StandardAdminHandler();
-
-                            cleanup(module, adminHandler);
-
-                            return null;
-                        }
-
-                        private void cleanup(File directory, AdminHandler adminHandler) throws IOException {
-                            for (File file : adminHandler.getAllFiles(directory)) {
-                                Entry entry = adminHandler.getEntry(file);
-                                entry.setTag(entry.getTag()); // re-setting the tag removes the date without altering tag info
-                                adminHandler.setEntry(file, entry);
-                            }
-
-                            // we need to remove CVS/Tag as it contains a sticky reference for HEAD modules
-                            if (repositoryItem.getLocation().getLocationType() == CvsRepositoryLocationType.HEAD) {
-                                final File tagFile = new File(directory, "CVS/Tag");
-
-                                if (tagFile.exists()) {
-                                    if (!tagFile.delete()) {
-                                        listener.getLogger().println("Could not delete the sticky tag file, workspace may be in an inconsistent state");
-                                    }
-                                }
-                            }
-
-                            File[] innerFiles = directory.listFiles();
-                            if (null != innerFiles) {
-
-                                for (File innerFile : innerFiles) {
-                                    if (isSymLink(innerFile,listener)) {
-                                        listener.getLogger().println("cleanup. prevent potential infinate loop, ignoring symlink:" + innerFile);
-                                        continue;
-                                    }
-                                    if (innerFile.isDirectory() && !innerFile.getName().equals("CVS")) {
-                                        cleanup(innerFile, adminHandler);
-                                    }
-                                }
-                            }
-                        }
-                    });
+        // tidy up the workspace and add its current state as an action
+        final CvsMetrics.Sample sample = CvsMetrics.start(CvsMetrics.ALL_REPOSITORIES, "workspaceWalk");
+        final CvsEvents.WorkspaceWalk event = new CvsEvents.WorkspaceWalk();
+        event.begin();
+        Map<CvsRepository, List<CvsFile>> workspaceState = null;
+        try {
+            workspaceState = walkWorkspace(workspace, repositories, flatten, envVars, listener, timings);
+        } finally {
+            sample.stop(workspaceState != null);
+            if (event.shouldCommit()) {
+                event.job = build.getFullDisplayName();
+                if (workspaceState != null) {
+                    event.modules = workspaceState.size();
+                    for (List<CvsFile> files : workspaceState.values()) {
+                        event.files += files.size();
+                    }
                 }
+                event.commit();
             }
         }
+        build.getActions().add(new CvsRevisionState(workspaceState));
+
+        // add the tag action to the build
+        build.getActions().add(new CvsTagAction(build, this));
     }
 
-    protected Date getCheckoutDate(Run<?, ?> build) {
+    public Date getCheckoutDate(Run<?, ?> build) {
         QuietPeriodCompleted quietPeriodCompleted;
         Date checkoutDate;
         quietPeriodCompleted = build.getAction(QuietPeriodCompleted.class);
@@ -904,23 +1530,70 @@ public abstract class AbstractCvs extends SCM implements ICvs {
         return checkoutDate;
     }
 
-    private Map<CvsRepository, List<CvsFile>> calculateWorkspaceState(final FilePath workspace,
-                                                                      final CvsRepository[] repositories,
-                                                                      final boolean flatten, final EnvVars envVars,
-                                                                      final TaskListener listener)
+    /**
+     * Walks every module once on the agent to remove empty directories, remove sticky dates and tags, and
+     * collect the workspace state.
+     * @param timings where to record how long tidying up and reading each module took
+     * @return the files checked out for each repository
+     */
+    private Map<CvsRepository, List<CvsFile>> walkWorkspace(final FilePath workspace,
+                                                            final CvsRepository[] repositories,
+                                                            final boolean flatten, final EnvVars envVars,
+                                                            final TaskListener listener,
+                                                            final CvsBuildTimings timings)
             throws IOException, InterruptedException {
-        Map<CvsRepository, List<CvsFile>> workspaceState = new HashMap<CvsRepository, List<CvsFile>>();
+        // JENKINS-18390: the client doesn't prune directories when running quietly, so we do it ourselves
+        final boolean prune = isPruneEmptyDirectories() && !isDisableCvsQuiet();
+        // sticky references are only removed from the configured repositories, not any discovered from them
+        final List<CvsRepository> configuredRepositories = Arrays.asList(getRepositories());
 
+        final FilePath revisionCacheRoot = RevisionBlobCache.ENABLED ? RevisionBlobCache.getRoot(workspace) : null;
+
+        final List<PostCheckoutWalker.ModuleWalk> walks = new ArrayList<PostCheckoutWalker.ModuleWalk>();
+        final List<CvsRepository> walkRepositories = new ArrayList<CvsRepository>();
+        final List<String> walkModules = new ArrayList<String>();
         for (CvsRepository repository : repositories) {
-            List<CvsFile> cvsFiles = new ArrayList<CvsFile>();
+            final boolean configured = configuredRepositories.contains(repository);
             for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+                final CvsRepositoryLocationType locationType = item.getLocation().getLocationType();
+                final boolean head = locationType == CvsRepositoryLocationType.HEAD;
+                // only head and branch checkouts can be restored from the cache, so there's no point filling it from tags
+                final RevisionBlobCache.Target revisionCache = revisionCacheRoot == null
+                        || locationType == CvsRepositoryLocationType.TAG || item.getLocation().isUseHeadIfNotFound() ? null
+                        : new RevisionBlobCache.Target(revisionCacheRoot.getRemote(), RevisionBlobCache.getNamespace(
+                        envVars.expand(repository.getCvsRoot()), locationType,
+                        envVars.expand(item.getLocation().getLocationName())), RevisionBlobCache.MAX_SIZE);
                 for (CvsModule module : item.getModules()) {
-                    cvsFiles.addAll(getCvsFiles(workspace, module, flatten, envVars, listener));
+                    /*
+                     * we use the remote name because we're actually wanting the
+                     * workspace represented as it would be in CVS. This then allows
+                     * us to do a comparison against the file list returned by the
+                     * rlog command (which wouldn't be possible if we use the local
+                     * module name on a module that had been checked out as an alias
+                     */
+                    walks.add(new PostCheckoutWalker.ModuleWalk(flatten ? "" : envVars.expand(module.getCheckoutName()),
+                            envVars.expand(module.getRemoteName()), prune, configured, configured && head,
+                            revisionCache));
+                    walkRepositories.add(repository);
+                    walkModules.add(envVars.expand(module.getRemoteName()));
                 }
             }
-            workspaceState.put(repository, cvsFiles);
         }
 
+        final List<PostCheckoutWalker.ModuleResult> results = workspace.act(new PostCheckoutWalker(walks, listener));
+
+        final Map<CvsRepository, List<CvsFile>> workspaceState = new HashMap<CvsRepository, List<CvsFile>>();
+        for (CvsRepository repository : repositories) {
+            workspaceState.put(repository, new ArrayList<CvsFile>());
+        }
+        for (int i = 0; i < results.size(); i++) {
+            final PostCheckoutWalker.ModuleResult result = results.get(i);
+            final String cvsRoot = envVars.expand(walkRepositories.get(i).getCvsRoot());
+            workspaceState.get(walkRepositories.get(i)).addAll(result.getFiles());
+            timings.record(cvsRoot, walkModules.get(i), CvsBuildTimings.PHASE_CLEANUP, result.getCleanupTime(), 0, 0);
+            timings.record(cvsRoot, walkModules.get(i), CvsBuildTimings.PHASE_SCAN, result.getScanTime(),
+                    result.getFiles().size(), 0);
+        }
         return workspaceState;
     }
 
@@ -950,75 +1623,6 @@ public abstract class AbstractCvs extends SCM implements ICvs {
     }
 
 
-    private List<CvsFile> getCvsFiles(final FilePath workspace, final CvsModule module, final boolean flatten,
-                                      final EnvVars envVars, final TaskListener listener)
-            throws IOException, InterruptedException {
-        FilePath targetWorkspace;
-        if (flatten) {
-            targetWorkspace = workspace;
-        } else {
-            targetWorkspace = workspace.child(envVars.expand(module.getCheckoutName()));
-        }
-
-        return targetWorkspace.act(new MasterToSlaveFileCallable<List<CvsFile>>() {
-
-            private static final long serialVersionUID = 8158155902777163137L;
-
-            @Override
-            public List<CvsFile> invoke(final File moduleLocation, final VirtualChannel channel) throws IOException {
-                /*
-                 * we use the remote name because we're actually wanting the
-                 * workspace represented as it would be in CVS. This then allows
-                 * us to do a comparison against the file list returned by the
-                 * rlog command (which wouldn't be possible if we use the local
-                 * module name on a module that had been checked out as an alias
-                 */
-                return buildFileList(moduleLocation, envVars.expand(module.getRemoteName()));
-            }
-
-            public List<CvsFile> buildFileList(final File moduleLocation, final String prefix) throws IOException {
-                AdminHandler adminHandler = new StandardAdminHandler();
-                List<CvsFile> fileList = new ArrayList<CvsFile>();
-
-                if (moduleLocation.isFile()) {
-                    Entry entry = adminHandler.getEntry(moduleLocation);
-                    if (entry != null) {
-                        fileList.add(CvsFile.make(entry.getName(), entry.getRevision()));
-                    }
-                } else {
-                    for (File file : adminHandler.getAllFiles(moduleLocation)) {
-
-
-                        if (file.isFile()) {
-                            Entry entry = adminHandler.getEntry(file);
-                            CvsFile currentFile = CvsFile.make(prefix + "/" + entry.getName(), entry.getRevision());
-                            fileList.add(currentFile);
-                        }
-                    }
-
-                    // JENKINS-12807: we get a NPE here which shouldn't be possible given we know
-                    // the file we're getting children of is a directory, but we'll do a null check
-                    // for safety
-                    File[] directoryFiles = moduleLocation.listFiles();
-                    if (directoryFiles != null) {
-                        for (File file : directoryFiles) {
-                            if (file.isDirectory()) {
-                                if (!isSymLink(file,listener)) {
-                                    fileList.addAll(buildFileList(file, prefix + "/" + file.getName()));
-                                } else {
-                                    listener.getLogger().println("buildFileList. prevent potential infinate loop, ignoring symlink:" + file);
-                                }
-                            }
-                        }
-                    }
-                }
-
-                return fileList;
-            }
-
-        });
-    }
-
     @Override
     public ChangeLogParser createChangeLogParser() {
         return new CVSChangeLogParser();
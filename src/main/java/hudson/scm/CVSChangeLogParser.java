@@ -42,11 +42,30 @@ public class CVSChangeLogParser extends ChangeLogParser {
     public CVSChangeLogSet parse(
                     @SuppressWarnings("rawtypes") final AbstractBuild build,
                     final File changelogFile) throws IOException, SAXException {
-        return CVSChangeLogSet.parse(build, changelogFile);
+        final CvsEvents.ChangeLog event = new CvsEvents.ChangeLog();
+        event.begin();
+        final CVSChangeLogSet changeLogSet = CVSChangeLogSet.parse(build, changelogFile);
+        record(event, build, changelogFile, changeLogSet);
+        return changeLogSet;
     }
     
     @Override
     public ChangeLogSet<? extends Entry> parse(Run build, RepositoryBrowser<?> browser, File changelogFile) throws IOException, SAXException {
-        return CVSChangeLogSet.parse(build, browser, changelogFile);
+        final CvsEvents.ChangeLog event = new CvsEvents.ChangeLog();
+        event.begin();
+        final CVSChangeLogSet changeLogSet = CVSChangeLogSet.parse(build, browser, changelogFile);
+        record(event, build, changelogFile, changeLogSet);
+        return changeLogSet;
+    }
+
+    private static void record(final CvsEvents.ChangeLog event, final Run<?, ?> build, final File changelogFile,
+                               final CVSChangeLogSet changeLogSet) {
+        if (event.shouldCommit()) {
+            event.operation = "parse";
+            event.job = build == null ? null : build.getFullDisplayName();
+            event.entries = changeLogSet.getLogs().size();
+            event.bytes = changelogFile.length();
+            event.commit();
+        }
     }
 }
@@ -329,6 +329,10 @@ public final class CVSChangeLogSet extends ChangeLogSet<CVSChangeLog> {
             this.user = author;
         }
 
+        String getUser() {
+            return user;
+        }
+
         @Override
         @Exported
         public String getMsg() {
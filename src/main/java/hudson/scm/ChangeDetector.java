@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a change found by polling calls for a build: any revision that isn't in one of the repository's
+ * excluded regions and hasn't already been seen by an earlier poll. Polling only needs one of these to schedule a
+ * build, so when <tt>hudson.scm.ChangeDetector.enabled</tt> is set rlog output is checked as it arrives and
+ * polling stops at the first one, leaving the full list of changes to be worked out by the build's checkout.
+ */
+final class ChangeDetector implements Serializable {
+
+    private static final long serialVersionUID = 5385467254185917003L;
+
+    static final boolean ENABLED = Boolean.getBoolean(ChangeDetector.class.getName() + ".enabled");
+
+    private final List<String> excludedRegions;
+    private final Set<CvsFile> knownRevisions;
+    private transient List<Pattern> excludePatterns;
+
+    /**
+     * @param excludedRegions the patterns for file names whose changes don't call for a build
+     * @param knownRevisions revisions that have already been seen, and so aren't changes
+     */
+    ChangeDetector(final List<Pattern> excludedRegions, final Collection<CvsFile> knownRevisions) {
+        this.excludedRegions = new ArrayList<String>();
+        for (Pattern excludedRegion : excludedRegions) {
+            this.excludedRegions.add(excludedRegion.pattern());
+        }
+        this.knownRevisions = new HashSet<CvsFile>(knownRevisions);
+        this.excludePatterns = new ArrayList<Pattern>(excludedRegions);
+    }
+
+    boolean isSignificant(final CvsFile change) {
+        if (knownRevisions.contains(change)) {
+            return false;
+        }
+        if (excludePatterns == null) {
+            // the patterns were checked before this was sent to the node running rlog
+            final List<Pattern> patterns = new ArrayList<Pattern>();
+            for (String excludedRegion : excludedRegions) {
+                patterns.add(Pattern.compile(excludedRegion));
+            }
+            excludePatterns = patterns;
+        }
+        for (Pattern excludePattern : excludePatterns) {
+            if (excludePattern.matcher(change.getName()).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the first of the changes that calls for a build, or null if none of them do
+     */
+    CvsFile findSignificant(final List<CvsFile> changes) {
+        for (CvsFile change : changes) {
+            if (isSignificant(change)) {
+                return change;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.model.Run;
+import hudson.scm.cvs.Messages;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time went in a build's checkout: how long each phase took for each module, and how much each phase
+ * got through. Shown as a table from the build's side panel, and available through the remote API (e.g.
+ * <tt>/job/name/api/json?tree=builds[number,actions[timings[*]]]</tt>) to compare modules and servers across
+ * builds.
+ */
+@ExportedBean
+public class CvsBuildTimings implements RunAction2 {
+
+    public static final String PHASE_CONNECT = "connect";
+    public static final String PHASE_CHECKOUT = "checkout";
+    public static final String PHASE_UPDATE = "update";
+    public static final String PHASE_CHANGELOG = "changelog";
+    public static final String PHASE_CLEANUP = "cleanup";
+    public static final String PHASE_SCAN = "scan";
+
+    private final List<Timing> timings = new ArrayList<Timing>();
+    private transient Run<?, ?> build;
+
+    /**
+     * @return the timings already attached to the build, or a new set attached to it if there are none yet
+     */
+    public static CvsBuildTimings forBuild(final Run<?, ?> build) {
+        synchronized (build) {
+            CvsBuildTimings timings = build.getAction(CvsBuildTimings.class);
+            if (timings == null) {
+                timings = new CvsBuildTimings();
+                build.addAction(timings);
+            }
+            return timings;
+        }
+    }
+
+    /**
+     * @param cvsRoot the repository the work was done against, which is recorded without its password
+     * @param module the module the work was done on
+     * @param phase which part of the checkout this was, one of the <tt>PHASE_</tt> constants
+     * @param time how long it took, in nanoseconds
+     * @param files how many files were written, listed or scanned
+     * @param bytes how much was written to the workspace
+     */
+    public synchronized void record(final String cvsRoot, final String module, final String phase, final long time,
+                                    final long files, final long bytes) {
+        timings.add(new Timing(CvsMetrics.sanitise(cvsRoot), module, phase, TimeUnit.NANOSECONDS.toMillis(time),
+                files, bytes));
+    }
+
+    @Exported(inline = true)
+    public synchronized List<Timing> getTimings() {
+        return new ArrayList<Timing>(timings);
+    }
+
+    /**
+     * @return the total time spent in each phase, in milliseconds, in the order the phases were first seen
+     */
+    public synchronized Map<String, Long> getPhaseTotals() {
+        final Map<String, Long> totals = new LinkedHashMap<String, Long>();
+        for (Timing timing : timings) {
+            final Long total = totals.get(timing.getPhase());
+            totals.put(timing.getPhase(), (total == null ? 0 : total) + timing.getMillis());
+        }
+        return totals;
+    }
+
+    public Run<?, ?> getBuild() {
+        return build;
+    }
+
+    @Override
+    public void onAttached(final Run<?, ?> r) {
+        build = r;
+    }
+
+    @Override
+    public void onLoad(final Run<?, ?> r) {
+        build = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-time-outline plugin-ionicons-api";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.CVSSCM_TimingsDisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "cvs-timings";
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Timing {
+
+        private final String repository;
+        private final String module;
+        private final String phase;
+        private final long millis;
+        private final long files;
+        private final long bytes;
+
+        private Timing(final String repository, final String module, final String phase, final long millis,
+                       final long files, final long bytes) {
+            this.repository = repository;
+            this.module = module;
+            this.phase = phase;
+            this.millis = millis;
+            this.files = files;
+            this.bytes = bytes;
+        }
+
+        @Exported
+        public String getRepository() {
+            return repository;
+        }
+
+        @Exported
+        public String getModule() {
+            return module;
+        }
+
+        @Exported
+        public String getPhase() {
+            return phase;
+        }
+
+        @Exported
+        public long getMillis() {
+            return millis;
+        }
+
+        @Exported
+        public long getFiles() {
+            return files;
+        }
+
+        @Exported
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+}
@@ -42,6 +42,8 @@ public class CvsChangeSet implements Serializable {
     private final List<CvsFile> files;
     private transient Set<String> tagNames = new HashSet<String>();
     private transient Set<String> branchNames = new HashSet<String>();
+    private int lineCount;
+    private long connectTime;
 
 
     public CvsChangeSet(final List<CvsFile> files,
@@ -57,6 +59,15 @@ public class CvsChangeSet implements Serializable {
         this.tagNames = tagNames;
     }
 
+    /**
+     * @param lineCount the number of lines of rlog output the change set was parsed from
+     */
+    public CvsChangeSet(final List<CvsFile> files, final List<CVSChangeLog> changes, final Set<String> branchNames,
+                        final Set<String> tagNames, final int lineCount) {
+        this(files, changes, branchNames, tagNames);
+        this.lineCount = lineCount;
+    }
+
     public List<CVSChangeLog> getChanges() {
         return changes;
     }
@@ -73,6 +84,21 @@ public class CvsChangeSet implements Serializable {
         return branchNames;
     }
 
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return how long it took to connect to the server before running rlog, in nanoseconds
+     */
+    long getConnectTime() {
+        return connectTime;
+    }
+
+    void setConnectTime(final long connectTime) {
+        this.connectTime = connectTime;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Removes sticky dates from a directory's <tt>CVS/Entries</tt> file, reading and writing the file once for the
+ * whole directory rather than once for every entry in it as happens when going through
+ * {@link org.netbeans.lib.cvsclient.admin.AdminHandler#setEntry}. The file is only rewritten if an entry
+ * actually carries a date, and is replaced atomically so an interrupted build never leaves a truncated file.
+ */
+final class CvsEntriesRewriter {
+
+    private CvsEntriesRewriter() {
+    }
+
+    /**
+     * Removes the sticky date from every file entry in the directory's <tt>CVS/Entries</tt>. Sticky tags are
+     * left as they are.
+     * @param directory a directory under CVS control
+     * @return false if the directory has changes pending in <tt>CVS/Entries.Log</tt> that only the client
+     *          library knows how to merge, in which case nothing is changed; true otherwise
+     * @throws IOException if the entries could not be read or replaced
+     */
+    static boolean removeStickyDates(final File directory) throws IOException {
+        final File adminDirectory = new File(directory, "CVS");
+        if (new File(adminDirectory, "Entries.Log").exists()) {
+            return false;
+        }
+        final Path entriesFile = new File(adminDirectory, "Entries").toPath();
+        if (!Files.isRegularFile(entriesFile)) {
+            return true;
+        }
+
+        // ISO-8859-1 maps every byte to a char, so anything we don't touch is written back exactly as it was
+        final String original = new String(Files.readAllBytes(entriesFile), StandardCharsets.ISO_8859_1);
+        final String updated = removeStickyDates(original);
+        if (updated.equals(original)) {
+            return true;
+        }
+
+        final Path temporaryFile = Files.createTempFile(adminDirectory.toPath(), "Entries", ".tmp");
+        try {
+            Files.write(temporaryFile, updated.getBytes(StandardCharsets.ISO_8859_1));
+            try {
+                Files.move(temporaryFile, entriesFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporaryFile, entriesFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the sticky date from each file entry in the contents of an Entries file, keeping line endings
+     * and all other lines unchanged.
+     */
+    static String removeStickyDates(final String entries) {
+        final StringBuilder result = new StringBuilder(entries.length());
+        int lineStart = 0;
+        while (lineStart < entries.length()) {
+            int lineEnd = entries.indexOf('\n', lineStart);
+            lineEnd = lineEnd == -1 ? entries.length() : lineEnd + 1;
+
+            int contentEnd = lineEnd;
+            while (contentEnd > lineStart && (entries.charAt(contentEnd - 1) == '\n'
+                    || entries.charAt(contentEnd - 1) == '\r')) {
+                contentEnd--;
+            }
+
+            result.append(removeStickyDate(entries.substring(lineStart, contentEnd)));
+            result.append(entries, contentEnd, lineEnd);
+            lineStart = lineEnd;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Removes the sticky date from a single entry, which takes the form
+     * <tt>/name/revision/timestamp/options/sticky</tt> where the final field is either empty, <tt>T</tt>
+     * followed by a tag or branch name, or <tt>D</tt> followed by a date. Directory entries (those starting
+     * with <tt>D/</tt>) never carry a date and are returned unchanged.
+     */
+    static String removeStickyDate(final String entry) {
+        if (!entry.startsWith("/")) {
+            return entry;
+        }
+        final int stickyStart = entry.lastIndexOf('/') + 1;
+        if (stickyStart < entry.length() && entry.charAt(stickyStart) == 'D' && countSeparators(entry) == 5) {
+            return entry.substring(0, stickyStart);
+        }
+        return entry;
+    }
+
+    private static int countSeparators(final String entry) {
+        int count = 0;
+        for (int i = 0; i < entry.length(); i++) {
+            if (entry.charAt(i) == '/') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.EnvVars;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.netbeans.lib.cvsclient.Client;
+import org.netbeans.lib.cvsclient.command.CommandException;
+import org.netbeans.lib.cvsclient.connection.AuthenticationException;
+
+/**
+ * Java Flight Recorder events for the work the plugin does, so a recording shows which job and which phase of
+ * a checkout, poll or tag the time went on. Events are recorded in the JVM that does the work, which for a
+ * checkout or a poll that uses the workspace can be an agent, so recordings may be needed there too. Checkouts
+ * and updates are the exception: they're recorded on the controller, timed from when they're sent to the node.
+ * CVSROOTs are recorded without their password.
+ */
+public final class CvsEvents {
+
+    private CvsEvents() {
+    }
+
+    /**
+     * Opens a client's connection, which includes authenticating with the server, as its own event rather than
+     * leaving it to the first command.
+     * @return how long connecting took, in nanoseconds
+     */
+    public static long connect(final Client cvsClient, final String cvsRoot)
+            throws AuthenticationException, CommandException {
+        final Connection event = new Connection();
+        final long start = System.nanoTime();
+        event.begin();
+        try {
+            cvsClient.ensureConnection();
+            event.succeeded = true;
+            return System.nanoTime() - start;
+        } finally {
+            if (event.shouldCommit()) {
+                event.cvsRoot = CvsMetrics.sanitise(cvsRoot);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @return the job and build number the variables were taken from, or null if they're not from a build
+     */
+    public static String getJob(final EnvVars envVars) {
+        final String job = envVars.get("JOB_NAME");
+        if (job == null) {
+            return null;
+        }
+        final String number = envVars.get("BUILD_NUMBER");
+        return number == null ? job : job + " #" + number;
+    }
+
+    @Name("hudson.scm.cvs.Connection")
+    @Label("CVS Connection")
+    @Category({"Jenkins", "CVS"})
+    @Description("Opening and authenticating a connection to a CVS server")
+    public static final class Connection extends Event {
+
+        @Label("CVSROOT")
+        public String cvsRoot;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("hudson.scm.cvs.Command")
+    @Label("CVS Command")
+    @Category({"Jenkins", "CVS"})
+    @Description("A command run against a CVS server, from sending the request to handling the last response")
+    public static final class Command extends Event {
+
+        @Label("CVSROOT")
+        public String cvsRoot;
+
+        @Label("Command")
+        public String command;
+
+        @Label("Module")
+        public String module;
+
+        @Label("Job")
+        public String job;
+
+        @Label("Files")
+        @Description("The number of files written to the workspace")
+        public long files;
+
+        @Label("Bytes")
+        @Description("The size of the files written to the workspace")
+        @DataAmount
+        public long bytes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+
+        public Command(final String cvsRoot, final String command, final String module, final String job) {
+            this.cvsRoot = CvsMetrics.sanitise(cvsRoot);
+            this.command = command;
+            this.module = module;
+            this.job = job;
+        }
+    }
+
+    @Name("hudson.scm.cvs.RlogParse")
+    @Label("CVS Rlog Parse")
+    @Category({"Jenkins", "CVS"})
+    @Description("Parsing the output of a CVS rlog command into a change set")
+    public static final class RlogParse extends Event {
+
+        @Label("CVSROOT")
+        public String cvsRoot;
+
+        @Label("Lines")
+        public long lines;
+
+        @Label("Files")
+        public long files;
+
+        @Label("Changes")
+        public long changes;
+    }
+
+    @Name("hudson.scm.cvs.ChangeLog")
+    @Label("CVS Changelog")
+    @Category({"Jenkins", "CVS"})
+    @Description("Writing a build's changelog file or parsing it back in")
+    public static final class ChangeLog extends Event {
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Job")
+        public String job;
+
+        @Label("Entries")
+        public long entries;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("hudson.scm.cvs.WorkspaceWalk")
+    @Label("CVS Workspace Walk")
+    @Category({"Jenkins", "CVS"})
+    @Description("Reading the workspace state after a checkout and tidying up its CVS metadata")
+    public static final class WorkspaceWalk extends Event {
+
+        @Label("Job")
+        public String job;
+
+        @Label("Modules")
+        public long modules;
+
+        @Label("Files")
+        public long files;
+    }
+
+    @Name("hudson.scm.cvs.RtagBatch")
+    @Label("CVS Rtag Batch")
+    @Category({"Jenkins", "CVS"})
+    @Description("One rtag command, tagging a batch of files or modules")
+    public static final class RtagBatch extends Event {
+
+        @Label("CVSROOT")
+        public String cvsRoot;
+
+        @Label("Tag")
+        public String tag;
+
+        @Label("Modules")
+        @Description("The number of files or modules in the batch")
+        public long modules;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+}
@@ -52,19 +52,65 @@ public abstract class CvsLog {
 
     public CvsChangeSet mapCvsLog(final String cvsRoot, final CvsRepositoryLocation location,
                                   final CvsRepository repository, final EnvVars envVars) throws IOException {
-        final List<CVSChangeLog> changes = new ArrayList<CVSChangeLog>();
-        final Map<String, CvsFile> files = new HashMap<String, CvsFile>();
-        CVSChangeLogSet.File file = null;
-        CVSChangeLog change = null;
-        final Map<String,String> branches = new HashMap<String,String>();
-        final Set<String> tagNames = new TreeSet<String>();
-        final Set<String> branchNames = new TreeSet<String>();
+        final Parser parser = newParser(cvsRoot, location, repository, envVars, null);
         final BufferedReader reader = new BufferedReader(read());
-        Status status = Status.FILE_NAME;
         String line;
-        String previousLine = null;
-        String prePreviousLine = null;
         while ((line = reader.readLine()) != null) {
+            parser.parseLine(line);
+        }
+        reader.close();
+        dispose();
+        return parser.finish();
+    }
+
+    /**
+     * Creates a parser that's given the rlog output a line at a time, rather than reading it all through
+     * {@link #read()}, so it can be parsed as it arrives.
+     * @param detector stops parsing at the first significant change it finds, or null to parse everything
+     */
+    Parser newParser(final String cvsRoot, final CvsRepositoryLocation location, final CvsRepository repository,
+                     final EnvVars envVars, final ChangeDetector detector) {
+        return new Parser(cvsRoot, location, repository, envVars, detector);
+    }
+
+    /**
+     * The state of a parse through rlog output.
+     */
+    final class Parser {
+
+        private final String cvsRoot;
+        private final CvsRepositoryLocation location;
+        private final CvsRepository repository;
+        private final EnvVars envVars;
+        private final ChangeDetector detector;
+        private final List<CVSChangeLog> changes = new ArrayList<CVSChangeLog>();
+        private final Map<String, CvsFile> files = new HashMap<String, CvsFile>();
+        private final Map<String,String> branches = new HashMap<String,String>();
+        private final Set<String> tagNames = new TreeSet<String>();
+        private final Set<String> branchNames = new TreeSet<String>();
+        private CVSChangeLogSet.File file = null;
+        private CVSChangeLog change = null;
+        private Status status = Status.FILE_NAME;
+        private String previousLine = null;
+        private String prePreviousLine = null;
+        private int lineCount = 0;
+        private CvsFile significantChange;
+
+        private Parser(final String cvsRoot, final CvsRepositoryLocation location, final CvsRepository repository,
+                       final EnvVars envVars, final ChangeDetector detector) {
+            this.cvsRoot = cvsRoot;
+            this.location = location;
+            this.repository = repository;
+            this.envVars = envVars;
+            this.detector = detector;
+        }
+
+        void parseLine(final String line) {
+            if (significantChange != null) {
+                return;
+            }
+            final int fileCount = files.size();
+            lineCount++;
             switch (status) {
                 case FILE_NAME:
                     branches.clear();
@@ -98,23 +144,37 @@ public abstract class CvsLog {
             }
             prePreviousLine = previousLine;
             previousLine = line;
-        }
 
-        // if we've reached the end of the RLOG output then we may still have comment lines to parse (the last 2 lines)
-        // given the way the comments are parsed (initially skip what looks like a divider line, then re-parse it if it
-        // the following lines don't aren't empty and contain 'RCS file:' (or are null) respectively
-        if (status == Status.CHANGE_COMMENT) {
-            status = processComment(null, file, change, Status.CHANGE_COMMENT, branches, line, changes, files, location, previousLine, envVars);
+            // the only file that can have been added is the one being parsed
+            if (detector != null && files.size() > fileCount
+                    && detector.isSignificant(files.get(file.getFullName()))) {
+                significantChange = files.get(file.getFullName());
+            }
         }
 
-        if (status == Status.CHANGE_COMMENT) {
-            //we don't care about the return status now - so don't save it
-            processComment(null, file, change, Status.CHANGE_COMMENT, branches, null, changes, files, location, line, envVars);
+        /**
+         * @return true once a significant change has been found, after which any further output is ignored
+         */
+        boolean isStopped() {
+            return significantChange != null;
         }
-        reader.close();
-        dispose();
-        return new CvsChangeSet(new ArrayList<CvsFile>(files.values()), changes, branchNames, tagNames);
 
+        CvsChangeSet finish() {
+            if (significantChange == null) {
+                // if we've reached the end of the RLOG output then we may still have comment lines to parse (the last 2 lines)
+                // given the way the comments are parsed (initially skip what looks like a divider line, then re-parse it if it
+                // the following lines don't aren't empty and contain 'RCS file:' (or are null) respectively
+                if (status == Status.CHANGE_COMMENT) {
+                    status = processComment(null, file, change, Status.CHANGE_COMMENT, branches, null, changes, files, location, previousLine, envVars);
+                }
+
+                if (status == Status.CHANGE_COMMENT) {
+                    //we don't care about the return status now - so don't save it
+                    processComment(null, file, change, Status.CHANGE_COMMENT, branches, null, changes, files, location, null, envVars);
+                }
+            }
+            return new CvsChangeSet(new ArrayList<CvsFile>(files.values()), changes, branchNames, tagNames, lineCount);
+        }
     }
 
     /**
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+import jenkins.metrics.api.Metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes {@link CvsMetrics} on to the Metrics plugin when it's installed, as a timer per CVSROOT and operation
+ * (<tt>cvs.&lt;operation&gt;[&lt;CVSROOT&gt;]</tt>, with failures also counted under
+ * <tt>cvs.&lt;operation&gt;.failures[&lt;CVSROOT&gt;]</tt>) and a counter per CVSROOT and counter name
+ * (<tt>cvs.&lt;counter&gt;[&lt;CVSROOT&gt;]</tt>). The metrics are registered as they're first recorded, since
+ * the repositories in use aren't known up front.
+ */
+@Extension(optional = true)
+public class CvsMetricProvider extends MetricProvider {
+
+    public CvsMetricProvider() {
+        CvsMetrics.setSink(new CvsMetrics.Sink() {
+            @Override
+            public void time(final String cvsRoot, final String operation, final long nanos, final boolean succeeded) {
+                final MetricRegistry registry = Metrics.metricRegistry();
+                registry.timer("cvs." + operation + "[" + cvsRoot + "]").update(nanos, TimeUnit.NANOSECONDS);
+                if (!succeeded) {
+                    registry.counter("cvs." + operation + ".failures[" + cvsRoot + "]").inc();
+                }
+            }
+
+            @Override
+            public void count(final String cvsRoot, final String counter, final long amount) {
+                Metrics.metricRegistry().counter("cvs." + counter + "[" + cvsRoot + "]").inc(amount);
+            }
+        });
+    }
+
+    @Override
+    public MetricSet getMetricSet() {
+        return new MetricSet() {
+            @Override
+            public Map<String, Metric> getMetrics() {
+                return Collections.emptyMap();
+            }
+        };
+    }
+
+}
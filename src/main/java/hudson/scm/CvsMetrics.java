@@ -0,0 +1,324 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.netbeans.lib.cvsclient.event.CVSAdapter;
+import org.netbeans.lib.cvsclient.event.FileAddedEvent;
+import org.netbeans.lib.cvsclient.event.FileUpdatedEvent;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counts of the CVS work the plugin does, per CVSROOT, so a slow or failing server shows up. Held
+ * in memory on the controller since the last restart, served as JSON by {@link CvsMetricsAction} and passed on
+ * to the Metrics plugin when it's installed (see {@link CvsMetricProvider}).
+ * <p>
+ * Operations are timed with {@link #start(String, String)}; counters are the names in the <tt>COUNTER_</tt>
+ * constants.
+ */
+public final class CvsMetrics {
+
+    public static final String COUNTER_BYTES = "bytes";
+    public static final String COUNTER_FILES = "files";
+    public static final String COUNTER_RLOG_LINES = "rlogLines";
+    public static final String COUNTER_CONNECTIONS = "connections";
+    public static final String COUNTER_CONNECTION_FAILURES = "connectionFailures";
+
+    /**
+     * Used for operations that cover more than one repository, such as walking the workspace.
+     */
+    public static final String ALL_REPOSITORIES = "*";
+
+    /**
+     * Upper bounds, in milliseconds, of the latency histogram buckets. Anything slower goes in a final bucket.
+     */
+    static final long[] BUCKETS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000};
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, Timer>> TIMERS =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Timer>>();
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> COUNTERS =
+            new ConcurrentHashMap<String, ConcurrentMap<String, AtomicLong>>();
+
+    private static volatile Sink sink;
+
+    private CvsMetrics() {
+    }
+
+    /**
+     * Somewhere else to send every measurement to as it's taken.
+     */
+    interface Sink {
+        void time(String cvsRoot, String operation, long nanos, boolean succeeded);
+
+        void count(String cvsRoot, String counter, long amount);
+    }
+
+    static void setSink(final Sink newSink) {
+        sink = newSink;
+    }
+
+    /**
+     * Starts timing an operation against a repository.
+     * @param cvsRoot the CVSROOT the operation runs against, or {@link #ALL_REPOSITORIES}
+     * @param operation what's being done, e.g. <tt>checkout</tt> or <tt>rlog</tt>
+     */
+    public static Sample start(final String cvsRoot, final String operation) {
+        return new Sample(sanitise(cvsRoot), operation);
+    }
+
+    public static void count(final String cvsRoot, final String counter, final long amount) {
+        if (amount == 0) {
+            return;
+        }
+        final String root = sanitise(cvsRoot);
+        get(COUNTERS, root).putIfAbsent(counter, new AtomicLong());
+        get(COUNTERS, root).get(counter).addAndGet(amount);
+        final Sink currentSink = sink;
+        if (currentSink != null) {
+            currentSink.count(root, counter, amount);
+        }
+    }
+
+    /**
+     * A timing in progress, recorded when it's stopped.
+     */
+    public static final class Sample {
+
+        private final String cvsRoot;
+        private final String operation;
+        private final long started = System.nanoTime();
+
+        private Sample(final String cvsRoot, final String operation) {
+            this.cvsRoot = cvsRoot;
+            this.operation = operation;
+        }
+
+        public void stop(final boolean succeeded) {
+            final long elapsed = System.nanoTime() - started;
+            final ConcurrentMap<String, Timer> timers = get(TIMERS, cvsRoot);
+            timers.putIfAbsent(operation, new Timer());
+            timers.get(operation).record(elapsed, succeeded);
+            final Sink currentSink = sink;
+            if (currentSink != null) {
+                currentSink.time(cvsRoot, operation, elapsed, succeeded);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a command run on an agent, sent back so it can be recorded on the controller. The size of
+     * the files written stands in for the bytes transferred, since the CVS client doesn't expose its traffic.
+     */
+    static final class Transfer extends CVSAdapter implements Serializable {
+
+        private static final long serialVersionUID = 2836492001658260329L;
+
+        private boolean succeeded;
+        private boolean connectionFailed;
+        private long files;
+        private long bytes;
+        private long connectTime;
+
+        @Override
+        public void fileAdded(final FileAddedEvent e) {
+            written(e.getFilePath());
+        }
+
+        @Override
+        public void fileUpdated(final FileUpdatedEvent e) {
+            written(e.getFilePath());
+        }
+
+        private void written(final String path) {
+            files++;
+            if (path != null) {
+                bytes += new File(path).length();
+            }
+        }
+
+        Transfer succeeded(final boolean commandSucceeded) {
+            this.succeeded = commandSucceeded;
+            return this;
+        }
+
+        Transfer connected(final long time) {
+            this.connectTime = time;
+            return this;
+        }
+
+        Transfer connectionFailed() {
+            this.connectionFailed = true;
+            return this;
+        }
+
+        boolean isSucceeded() {
+            return succeeded;
+        }
+
+        long getFiles() {
+            return files;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return how long it took to connect before the command was run, in nanoseconds
+         */
+        long getConnectTime() {
+            return connectTime;
+        }
+
+        /**
+         * Records the connection and what was written against the repository.
+         */
+        void record(final String cvsRoot) {
+            count(cvsRoot, COUNTER_CONNECTIONS, 1);
+            count(cvsRoot, COUNTER_CONNECTION_FAILURES, connectionFailed ? 1 : 0);
+            count(cvsRoot, COUNTER_FILES, files);
+            count(cvsRoot, COUNTER_BYTES, bytes);
+        }
+    }
+
+    static final class Timer {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+
+        void record(final long nanos, final boolean succeeded) {
+            count.incrementAndGet();
+            if (!succeeded) {
+                failures.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            long max;
+            while ((max = maxNanos.get()) < nanos && !maxNanos.compareAndSet(max, nanos)) {
+                // retry until we've either set it or someone else has set something bigger
+            }
+            final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+        }
+
+        JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            final long total = count.get();
+            json.put("count", total);
+            json.put("failures", failures.get());
+            json.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos.get()));
+            json.put("meanMillis", total == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / total));
+            json.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            final JSONArray histogram = new JSONArray();
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                final JSONObject bucket = new JSONObject();
+                bucket.put("le", i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf");
+                bucket.put("count", buckets.get(i));
+                histogram.add(bucket);
+            }
+            json.put("histogram", histogram);
+            return json;
+        }
+    }
+
+    /**
+     * @return every timer and counter, grouped by CVSROOT
+     */
+    public static JSONObject toJson() {
+        final Map<String, JSONObject> roots = new TreeMap<String, JSONObject>();
+        for (Map.Entry<String, ConcurrentMap<String, Timer>> root : TIMERS.entrySet()) {
+            final JSONObject operations = new JSONObject();
+            for (Map.Entry<String, Timer> timer : new TreeMap<String, Timer>(root.getValue()).entrySet()) {
+                operations.put(timer.getKey(), timer.getValue().toJson());
+            }
+            getRoot(roots, root.getKey()).put("operations", operations);
+        }
+        for (Map.Entry<String, ConcurrentMap<String, AtomicLong>> root : COUNTERS.entrySet()) {
+            final JSONObject counters = new JSONObject();
+            for (Map.Entry<String, AtomicLong> counter : new TreeMap<String, AtomicLong>(root.getValue()).entrySet()) {
+                counters.put(counter.getKey(), counter.getValue().get());
+            }
+            getRoot(roots, root.getKey()).put("counters", counters);
+        }
+
+        final JSONObject json = new JSONObject();
+        json.put("roots", roots);
+        return json;
+    }
+
+    private static JSONObject getRoot(final Map<String, JSONObject> roots, final String cvsRoot) {
+        JSONObject root = roots.get(cvsRoot);
+        if (root == null) {
+            root = new JSONObject();
+            roots.put(cvsRoot, root);
+        }
+        return root;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    static void reset() {
+        TIMERS.clear();
+        COUNTERS.clear();
+    }
+
+    /**
+     * Removes any password from a CVSROOT so it can be used as a label.
+     */
+    public static String sanitise(final String cvsRoot) {
+        if (cvsRoot == null) {
+            return ALL_REPOSITORIES;
+        }
+        return cvsRoot.replaceFirst("^(:[^:]+:[^:@/]*):[^@/]*@", "$1@");
+    }
+
+    private static <T> ConcurrentMap<String, T> get(final ConcurrentMap<String, ConcurrentMap<String, T>> map,
+                                                   final String cvsRoot) {
+        ConcurrentMap<String, T> values = map.get(cvsRoot);
+        if (values == null) {
+            map.putIfAbsent(cvsRoot, new ConcurrentHashMap<String, T>());
+            values = map.get(cvsRoot);
+        }
+        return values;
+    }
+
+}
@@ -24,26 +24,53 @@
 package hudson.scm;
 
 import hudson.AbortException;
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Util;
+import hudson.console.LineTransformationOutputStream;
 import hudson.model.*;
 import hudson.scm.cvs.Messages;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import hudson.util.Secret;
+import hudson.util.StreamTaskListener;
 
+import jenkins.MasterToSlaveFileCallable;
 import jenkins.model.Jenkins;
+import org.netbeans.lib.cvsclient.Client;
+import org.netbeans.lib.cvsclient.command.CommandException;
+import org.netbeans.lib.cvsclient.command.checkout.CheckoutCommand;
+import org.netbeans.lib.cvsclient.commandLine.BasicListener;
+import org.netbeans.lib.cvsclient.connection.AuthenticationException;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.export.Exported;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -51,8 +78,16 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 
 public class CvsProjectset extends AbstractCvs {
 
-    private static final Pattern PSF_PATTERN = Pattern.compile("<project reference=\"[^,]+,((:[a-z]+:)([a-z|A-Z|0-9|\\.\\-]+)" +
-            "(:([0-9]+)?)?([/|a-z|A-Z|_|0-9|\\-]+)),([/|A-Z|a-z|0-9|_|\\.|\\-]+),([A-Z|a-z|0-9|_|\\.|\\-|/]+)(,(.*?)){0,1}\"/>");
+    /**
+     * The maximum number of projectset projects checked out at the same time.
+     */
+    private static final int MAX_PARALLEL_CHECKOUTS = Integer.getInteger(CvsProjectset.class.getName() + ".maxParallelCheckouts", 8);
+
+    /**
+     * The maximum number of projectset projects checked out from any one CVS server at the same time.
+     */
+    static final int MAX_CHECKOUTS_PER_SERVER = Math.max(1,
+            Integer.getInteger(CvsProjectset.class.getName() + ".maxCheckoutsPerServer", 4));
 
     private final CvsRepository[] repositories;
     private final boolean canUseUpdate;
@@ -65,6 +100,11 @@ public class CvsProjectset extends AbstractCvs {
     private final boolean cleanOnFailedUpdate;
     private final boolean forceCleanCopy;
 
+    /**
+     * Projectset files that have already been parsed, keyed by their location in the workspace.
+     */
+    private transient volatile Map<String, ParsedProjectset> projectsetCache;
+
     @DataBoundConstructor
     public CvsProjectset(final CvsRepository[] repositories, final boolean canUseUpdate, final String username, final String password,
                          final CVSRepositoryBrowser browser, final boolean skipChangeLog, final boolean pruneEmptyDirectories,
@@ -108,8 +148,13 @@ public class CvsProjectset extends AbstractCvs {
                                                       FilePath workspace, TaskListener listener,
                                                       SCMRevisionState baseline)
             throws IOException, InterruptedException {
+        final AbstractBuild<?, ?> lastBuild = project.getLastBuild();
+        if (lastBuild == null) {
+            // nothing to compare against, so there's no need to discover the inner projects
+            return super.compareRemoteRevisionWith(project, launcher, workspace, listener, baseline, getRepositories());
+        }
         return super.compareRemoteRevisionWith(project, launcher, workspace,
-                listener, baseline, getAllRepositories(workspace));
+                listener, baseline, getAllRepositories(workspace, lastBuild.getEnvironment(listener), listener));
     }
 
     @Override
@@ -145,75 +190,278 @@ public class CvsProjectset extends AbstractCvs {
             throw new AbortException();
         }
 
-        if (!checkout(getInnerRepositories(workspace), false, workspace, isCanUseUpdate(),
-                build, dateStamp, isPruneEmptyDirectories(), isCleanOnFailedUpdate(), listener)) {
+        final EnvVars envVars = build.getEnvironment(listener);
+
+        if (!checkoutInnerRepositories(getInnerRepositories(workspace, envVars, listener), workspace, build,
+                dateStamp, envVars, listener)) {
             throw new AbortException();
         }
 
-        postCheckout(build, changelogFile, getAllRepositories(workspace), workspace, listener, isFlatten(), build.getEnvironment(listener));
+        postCheckout(build, changelogFile, getAllRepositories(workspace, envVars, listener), workspace, listener, isFlatten(), envVars);
     }
     
-    private CvsRepository[] getInnerRepositories(FilePath workspace) throws IOException, InterruptedException {
+    /**
+     * Checks out the projects referenced from the projectset files. Projects are checked out concurrently, with
+     * no more than {@link #MAX_CHECKOUTS_PER_SERVER} running against any one CVS server. Each project's output
+     * goes straight to the build log a line at a time, with the project's modules in front of each line so
+     * output from different projects can be told apart. A project that fails to update is removed and checked
+     * out again once the others have completed, rather than the whole workspace being cleaned.
+     */
+    private boolean checkoutInnerRepositories(final CvsRepository[] innerRepositories, final FilePath workspace,
+                                              final Run<?, ?> build, final String dateStamp, final EnvVars envVars,
+                                              final TaskListener listener) throws IOException, InterruptedException {
+        if (MAX_PARALLEL_CHECKOUTS <= 1 || innerRepositories.length <= 1) {
+            return checkout(innerRepositories, false, workspace, isCanUseUpdate(),
+                    build, dateStamp, isPruneEmptyDirectories(), isCleanOnFailedUpdate(), listener);
+        }
+
+        final Map<String, Semaphore> serverLimits = new HashMap<String, Semaphore>();
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_CHECKOUTS,
+                innerRepositories.length), new NamingThreadFactory(new DaemonThreadFactory(), "CVS projectset checkout"));
+        try {
+            for (final CvsRepository repository : innerRepositories) {
+                final String server = CvsRepository.getServerName(envVars.expand(repository.getCvsRoot()));
+                Semaphore serverLimit = serverLimits.get(server);
+                if (serverLimit == null) {
+                    serverLimit = new Semaphore(MAX_CHECKOUTS_PER_SERVER, true);
+                    serverLimits.put(server, serverLimit);
+                }
+
+                final Semaphore limit = serverLimit;
+                final ProjectLog log = new ProjectLog(listener.getLogger(), getProjectName(repository, envVars),
+                        build.getCharset());
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException, InterruptedException {
+                        final TaskListener projectListener = new StreamTaskListener(log, build.getCharset());
+                        limit.acquire();
+                        try {
+                            // cleaning the workspace would remove projects other threads are still checking out, so
+                            // failed updates are handled once every project has completed
+                            return checkout(new CvsRepository[]{repository}, false, workspace, isCanUseUpdate(),
+                                    build, dateStamp, isPruneEmptyDirectories(), false, projectListener);
+                        } finally {
+                            limit.release();
+                            projectListener.getLogger().flush();
+                            log.close();
+                        }
+                    }
+                }));
+            }
+
+            final List<CvsRepository> failed = new ArrayList<CvsRepository>();
+            for (int i = 0; i < innerRepositories.length; i++) {
+                boolean success;
+                try {
+                    success = results.get(i).get();
+                } catch (ExecutionException ex) {
+                    success = false;
+                    ex.getCause().printStackTrace(listener.error("Checkout of " + innerRepositories[i].getCvsRoot()
+                            + " failed"));
+                }
+                if (!success) {
+                    failed.add(innerRepositories[i]);
+                }
+            }
+
+            if (failed.isEmpty()) {
+                return true;
+            }
+            if (!isCleanOnFailedUpdate()) {
+                return false;
+            }
+
+            for (CvsRepository repository : failed) {
+                for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+                    for (CvsModule module : item.getModules()) {
+                        final FilePath moduleLocation = workspace.child(envVars.expand(module.getCheckoutName()));
+                        listener.getLogger().println("Update failed. Cleaning " + moduleLocation.getRemote()
+                                + " and performing full checkout");
+                        moduleLocation.deleteRecursive();
+                    }
+                }
+            }
+            return checkout(failed.toArray(new CvsRepository[failed.size()]), false, workspace, isCanUseUpdate(),
+                    build, dateStamp, isPruneEmptyDirectories(), false, listener);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the repositories referenced from the projectset files in the outer modules. The files are read from
+     * the workspace if there is one, otherwise they're fetched straight from the CVS server.
+     */
+    private CvsRepository[] getInnerRepositories(FilePath workspace, EnvVars envVars, TaskListener listener)
+            throws IOException, InterruptedException {
         List<CvsRepository> psfList = new ArrayList<CvsRepository>();
         for (CvsRepository repository : getRepositories()) {
             for (CvsRepositoryItem item : repository.getRepositoryItems()) {
                 for (CvsModule module : item.getModules()) {
-                    FilePath projectsetFile = workspace.child(module.getCheckoutName())
-                            .child(module.getProjectsetFileName());
-                    if (!projectsetFile.exists()) {
-                        throw new Error(Messages.CVSSCM_InvalidProjectset(module.getProjectsetFileName(),
-                                module.getRemoteName()));
+                    ParsedProjectset parsed;
+                    if (workspace == null) {
+                        parsed = readProjectsetFromRepository(repository, item, module, envVars, listener);
+                    } else {
+                        parsed = readProjectsetFromWorkspace(workspace, module);
                     }
-                    String psfContents = projectsetFile.readToString();
+                    // authentication is looked up afresh each time in case the global configuration has changed
+                    psfList.addAll(createRepositories(parsed.references));
+                }
+            }
+        }
+        return psfList.toArray(new CvsRepository[psfList.size()]);
+    }
 
-                    for (Matcher matcher = PSF_PATTERN.matcher(psfContents); matcher.find();) {
-                        CvsModule innerModule = new CvsModule(matcher.group(7), matcher.group(8));
-                        CvsRepositoryLocation innerLocation;
-                        if (matcher.group(10) == null) {
-                            innerLocation = new CvsRepositoryLocation.HeadRepositoryLocation();
-                        }
-                        else {
-                            innerLocation = new CvsRepositoryLocation.BranchRepositoryLocation(matcher.group(10), false);
-                        }
-                        CvsRepositoryItem innerItem = new CvsRepositoryItem(innerLocation,
-                                new CvsModule[]{innerModule});
-
-                        CvsAuthentication authentication = getAuthenticationForCvsRoot(matcher.group(1));
-
-                        StringBuilder root = new StringBuilder();
-                        root.append(matcher.group(2));
-
-                        String password = null;
-                        if (authentication == null) {
-                            if (username != null) {
-                                root.append(getUsername());
-                                root.append("@");
-                            }
-                            
-                            Secret secret = getPassword();
-                            
-                            if (null != secret) {
-                                password = secret.getPlainText();
-                            }
-                        }
-                        // we don't actually do anything with the authentication details if they're available just now
-                        // as they're automatically configured in a later call
+    private ParsedProjectset readProjectsetFromWorkspace(FilePath workspace, CvsModule module)
+            throws IOException, InterruptedException {
+        FilePath projectsetFile = workspace.child(module.getCheckoutName())
+                .child(module.getProjectsetFileName());
+        String cacheKey = module.getCheckoutName() + "/" + module.getProjectsetFileName();
+        ParsedProjectset cached = getProjectsetCache().get(cacheKey);
+
+        // only transfer and re-parse the file if it's changed since we last read it
+        ProjectsetFileContents contents = projectsetFile.act(
+                new ReadProjectsetFile(cached == null ? null : cached.digest));
+        if (contents == null) {
+            throw new Error(Messages.CVSSCM_InvalidProjectset(module.getProjectsetFileName(),
+                    module.getRemoteName()));
+        }
 
-                        root.append(matcher.group(3));
-                        if (matcher.group(5) != null) {
-                            root.append(":").append(matcher.group(5));
-                        }
-                        root.append(matcher.group(6));
+        if (cached == null || contents.contents != null) {
+            cached = new ParsedProjectset(contents.digest, CvsProjectsetParser.parse(contents.contents));
+            getProjectsetCache().put(cacheKey, cached);
+        }
+        return cached;
+    }
 
-                        CvsRepository innerRepository = new CvsRepository(root.toString(), password != null, password,
-                                Arrays.asList(innerItem), new ArrayList<ExcludedRegion>(), 0, null);
+    /**
+     * Reads a projectset file from the CVS server using <tt>cvs checkout -p</tt>, so the file contents are
+     * streamed into memory on the master rather than being written to a workspace.
+     */
+    private ParsedProjectset readProjectsetFromRepository(CvsRepository repository, CvsRepositoryItem item,
+                                                          CvsModule module, EnvVars envVars, TaskListener listener)
+            throws IOException {
+        final CvsRepositoryLocation location = item.getLocation();
+        final String projectsetPath = envVars.expand(module.getRemoteName()) + "/" + module.getProjectsetFileName();
+
+        final CheckoutCommand checkoutCommand = new CheckoutCommand();
+        checkoutCommand.setPipeToOutput(true);
+        checkoutCommand.setModule(projectsetPath);
+        if (location.getLocationType() != CvsRepositoryLocationType.HEAD) {
+            checkoutCommand.setCheckoutByRevision(envVars.expand(location.getLocationName()));
+        }
 
-                        psfList.add(innerRepository);
-                    }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final PrintStream outputStream = new PrintStream(output, true, "UTF-8");
+        final Client cvsClient = getCvsClient(repository, envVars, listener, false);
+        cvsClient.getEventManager().addCVSListener(new BasicListener(outputStream, listener.getLogger()));
+
+        // the client needs a local directory even though nothing is written to it
+        final File localPath = Util.createTempDir();
+        try {
+            cvsClient.setLocalPath(localPath.getAbsolutePath());
+            if (!cvsClient.executeCommand(checkoutCommand, getGlobalOptions(repository, envVars))) {
+                throw new Error(Messages.CVSSCM_InvalidProjectset(module.getProjectsetFileName(),
+                        module.getRemoteName()));
+            }
+        } catch (CommandException e) {
+            throw new IOException("Could not retrieve projectset file " + projectsetPath, e);
+        } catch (AuthenticationException e) {
+            throw new IOException("Could not retrieve projectset file " + projectsetPath, e);
+        } finally {
+            try {
+                cvsClient.getConnection().close();
+            } catch (IOException ex) {
+                listener.getLogger().println("Could not close client connection: " + ex.getMessage());
+            }
+            outputStream.close();
+            Util.deleteRecursive(localPath);
+        }
+
+        final byte[] data = output.toByteArray();
+        final String digest = digest(data);
+        final String cacheKey = envVars.expand(repository.getCvsRoot()) + "/" + projectsetPath + "@"
+                + location.getLocationType() + ":" + envVars.expand(location.getLocationName());
+
+        ParsedProjectset cached = getProjectsetCache().get(cacheKey);
+        if (cached == null || !cached.digest.equals(digest)) {
+            cached = new ParsedProjectset(digest, CvsProjectsetParser.parse(new String(data, StandardCharsets.UTF_8)));
+            getProjectsetCache().put(cacheKey, cached);
+        }
+        return cached;
+    }
+
+    private Map<String, ParsedProjectset> getProjectsetCache() {
+        Map<String, ParsedProjectset> cache = projectsetCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = projectsetCache;
+                if (cache == null) {
+                    cache = new ConcurrentHashMap<String, ParsedProjectset>();
+                    projectsetCache = cache;
                 }
             }
         }
-        return psfList.toArray(new CvsRepository[psfList.size()]);
+        return cache;
+    }
+
+    private List<CvsRepository> createRepositories(final List<CvsProjectsetParser.ProjectReference> references) {
+        List<CvsRepository> innerRepositories = new ArrayList<CvsRepository>();
+        for (CvsProjectsetParser.ProjectReference reference : references) {
+            CvsModule innerModule = new CvsModule(reference.getModule(), reference.getProject());
+            CvsRepositoryLocation innerLocation;
+            if (reference.getBranch() == null) {
+                innerLocation = new CvsRepositoryLocation.HeadRepositoryLocation();
+            }
+            else {
+                innerLocation = new CvsRepositoryLocation.BranchRepositoryLocation(reference.getBranch(), false);
+            }
+            CvsRepositoryItem innerItem = new CvsRepositoryItem(innerLocation,
+                    new CvsModule[]{innerModule});
+
+            CvsAuthentication authentication = getAuthenticationForCvsRoot(reference.getCvsRoot());
+
+            StringBuilder root = new StringBuilder();
+            root.append(reference.getMethod());
+
+            String password = null;
+            if (authentication == null) {
+                if (username != null) {
+                    root.append(getUsername());
+                    root.append("@");
+                }
+
+                Secret secret = getPassword();
+
+                if (null != secret) {
+                    password = secret.getPlainText();
+                }
+            }
+            // we don't actually do anything with the authentication details if they're available just now
+            // as they're automatically configured in a later call
+
+            root.append(reference.getHost());
+            if (reference.getPort() != null) {
+                root.append(":").append(reference.getPort());
+            }
+            root.append(reference.getPath());
+
+            CvsRepository innerRepository = new CvsRepository(root.toString(), password != null, password,
+                    Arrays.asList(innerItem), new ArrayList<ExcludedRegion>(), 0, null);
+
+            innerRepositories.add(innerRepository);
+        }
+        return innerRepositories;
+    }
+
+    static String digest(final byte[] contents) {
+        try {
+            return Util.toHexString(MessageDigest.getInstance("SHA-256").digest(contents));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", ex);
+        }
     }
 
     private CvsAuthentication getAuthenticationForCvsRoot(final String cvsRoot) {
@@ -226,18 +474,19 @@ public class CvsProjectset extends AbstractCvs {
         return null;
     }
 
-    private CvsRepository[] getAllRepositories(FilePath workspace) throws IOException, InterruptedException {
+    private CvsRepository[] getAllRepositories(FilePath workspace, EnvVars envVars, TaskListener listener)
+            throws IOException, InterruptedException {
         List<CvsRepository> returnList = new ArrayList<CvsRepository>();
         returnList.addAll(Arrays.asList(getRepositories()));
-        returnList.addAll(Arrays.asList(getInnerRepositories(workspace)));
+        returnList.addAll(Arrays.asList(getInnerRepositories(workspace, envVars, listener)));
 
         return returnList.toArray(new CvsRepository[returnList.size()]);
     }
 
     @Override
     public boolean requiresWorkspaceForPolling() {
-        //we need to have the project-set files checked out so we can discover the rest of the projects
-        return true;
+        // the project-set files are fetched from the repository when there's no workspace to read them from
+        return false;
     }
 
     @Override
@@ -285,6 +534,103 @@ public class CvsProjectset extends AbstractCvs {
         return (CvsProjectsetDescriptor) super.getDescriptor();
     }
 
+    /**
+     * Names an inner project in the build log by the modules it checks out.
+     */
+    private static String getProjectName(final CvsRepository repository, final EnvVars envVars) {
+        final List<String> modules = new ArrayList<String>();
+        for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+            for (CvsModule module : item.getModules()) {
+                modules.add(envVars.expand(module.getCheckoutName()));
+            }
+        }
+        return Util.join(modules, ", ");
+    }
+
+    /**
+     * Copies an inner project's output to the build log as each line is completed, with the project's name in
+     * front. Whole lines are written while holding the build log's lock, so lines from projects being checked
+     * out at the same time don't get mixed together. Closing this doesn't close the build log.
+     */
+    static final class ProjectLog extends LineTransformationOutputStream {
+
+        private final PrintStream log;
+        private final byte[] prefix;
+
+        ProjectLog(final PrintStream log, final String projectName, final Charset charset) {
+            this.log = log;
+            this.prefix = ("[" + projectName + "] ").getBytes(charset);
+        }
+
+        @Override
+        protected void eol(final byte[] bytes, final int length) {
+            synchronized (log) {
+                log.write(prefix, 0, prefix.length);
+                log.write(bytes, 0, length);
+                if (length == 0 || bytes[length - 1] != '\n') {
+                    // the last line of the project's output, which mustn't run into the next line of the log
+                    log.write('\n');
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            log.flush();
+        }
+    }
+
+    /**
+     * The project references read from a projectset file. Only the references are kept, not the repositories
+     * built from them, since those carry credentials from the global configuration.
+     */
+    private static final class ParsedProjectset {
+        private final String digest;
+        private final List<CvsProjectsetParser.ProjectReference> references;
+
+        private ParsedProjectset(final String digest, final List<CvsProjectsetParser.ProjectReference> references) {
+            this.digest = digest;
+            this.references = references;
+        }
+    }
+
+    /**
+     * The digest of a projectset file and, if it doesn't match the digest the caller already has,
+     * the file contents.
+     */
+    private static final class ProjectsetFileContents implements Serializable {
+        private static final long serialVersionUID = -3319282553093867412L;
+
+        private final String digest;
+        private final String contents;
+
+        private ProjectsetFileContents(final String digest, final String contents) {
+            this.digest = digest;
+            this.contents = contents;
+        }
+    }
+
+    private static final class ReadProjectsetFile extends MasterToSlaveFileCallable<ProjectsetFileContents> {
+        private static final long serialVersionUID = 4906310874120933207L;
+
+        private final String knownDigest;
+
+        private ReadProjectsetFile(final String knownDigest) {
+            this.knownDigest = knownDigest;
+        }
+
+        @Override
+        public ProjectsetFileContents invoke(final File file, final VirtualChannel channel) throws IOException {
+            if (!file.isFile()) {
+                return null;
+            }
+            final byte[] data = Files.readAllBytes(file.toPath());
+            final String digest = digest(data);
+            return new ProjectsetFileContents(digest, digest.equals(knownDigest) ? null
+                    : new String(data, StandardCharsets.UTF_8));
+        }
+    }
+
     @Extension
     public static class CvsProjectsetDescriptor extends AbstractCvsDescriptor<CvsProjectset> {
 
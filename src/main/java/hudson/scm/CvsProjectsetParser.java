@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the CVS project references from an Eclipse projectset (PSF) file. References take the form
+ * <tt>&lt;project reference="1.0,:method:host[:port]/path,module,project[,branch]"/&gt;</tt>. The file
+ * is scanned once for each reference rather than being matched against a backtracking regular expression.
+ */
+final class CvsProjectsetParser {
+
+    private static final String REFERENCE_START = "<project reference=\"";
+
+    private CvsProjectsetParser() {
+    }
+
+    /**
+     * @param contents the text of a PSF file
+     * @return every valid CVS project reference in the file, in the order they appear
+     */
+    static List<ProjectReference> parse(final String contents) {
+        final List<ProjectReference> references = new ArrayList<ProjectReference>();
+
+        int index = 0;
+        while ((index = contents.indexOf(REFERENCE_START, index)) != -1) {
+            final int valueStart = index + REFERENCE_START.length();
+            final int valueEnd = contents.indexOf('"', valueStart);
+            if (valueEnd == -1) {
+                break;
+            }
+            index = valueEnd + 1;
+
+            if (!contents.startsWith("/>", skipWhitespace(contents, valueEnd + 1))) {
+                continue;
+            }
+
+            final ProjectReference reference = parseReference(contents.substring(valueStart, valueEnd));
+            if (reference != null) {
+                references.add(reference);
+            }
+        }
+
+        return Collections.unmodifiableList(references);
+    }
+
+    /**
+     * Splits a reference value into its parts, returning null for anything that isn't a usable CVS reference.
+     */
+    static ProjectReference parseReference(final String value) {
+        final int rootStart = value.indexOf(',');
+        if (rootStart <= 0) {
+            return null;
+        }
+        final int moduleStart = value.indexOf(',', rootStart + 1);
+        if (moduleStart == -1) {
+            return null;
+        }
+        final int projectStart = value.indexOf(',', moduleStart + 1);
+        if (projectStart == -1) {
+            return null;
+        }
+        int projectEnd = value.indexOf(',', projectStart + 1);
+        final String branch;
+        if (projectEnd == -1) {
+            projectEnd = value.length();
+            branch = null;
+        } else {
+            // the branch is everything after the project name, and may itself contain commas
+            final String branchName = value.substring(projectEnd + 1);
+            branch = branchName.isEmpty() ? null : branchName;
+        }
+
+        final String cvsRoot = value.substring(rootStart + 1, moduleStart);
+        final String module = value.substring(moduleStart + 1, projectStart);
+        final String project = value.substring(projectStart + 1, projectEnd);
+        if (!isName(module) || !isName(project)) {
+            return null;
+        }
+
+        // :method:host[:port]/path
+        if (!cvsRoot.startsWith(":")) {
+            return null;
+        }
+        final int methodEnd = cvsRoot.indexOf(':', 1);
+        if (methodEnd <= 1 || !isLowerCase(cvsRoot, 1, methodEnd)) {
+            return null;
+        }
+        final String method = cvsRoot.substring(0, methodEnd + 1);
+
+        int hostEnd = methodEnd + 1;
+        while (hostEnd < cvsRoot.length() && isHostCharacter(cvsRoot.charAt(hostEnd))) {
+            hostEnd++;
+        }
+        if (hostEnd == methodEnd + 1) {
+            return null;
+        }
+        final String host = cvsRoot.substring(methodEnd + 1, hostEnd);
+
+        int pathStart = hostEnd;
+        String port = null;
+        if (pathStart < cvsRoot.length() && cvsRoot.charAt(pathStart) == ':') {
+            pathStart++;
+            final int portStart = pathStart;
+            while (pathStart < cvsRoot.length() && Character.isDigit(cvsRoot.charAt(pathStart))) {
+                pathStart++;
+            }
+            if (pathStart > portStart) {
+                port = cvsRoot.substring(portStart, pathStart);
+            }
+        }
+
+        final String path = cvsRoot.substring(pathStart);
+        if (!path.startsWith("/") || !isName(path)) {
+            return null;
+        }
+
+        return new ProjectReference(cvsRoot, method, host, port, path, module, project, branch);
+    }
+
+    private static int skipWhitespace(final String contents, final int start) {
+        int index = start;
+        while (index < contents.length() && Character.isWhitespace(contents.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isLowerCase(final String value, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char ch = value.charAt(i);
+            if (ch < 'a' || ch > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHostCharacter(final char ch) {
+        return isAlphanumeric(ch) || ch == '.' || ch == '-';
+    }
+
+    private static boolean isName(final String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            if (!isAlphanumeric(ch) && ch != '/' && ch != '_' && ch != '.' && ch != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAlphanumeric(final char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9');
+    }
+
+    /**
+     * A single CVS project referenced from a PSF file.
+     */
+    static final class ProjectReference {
+
+        private final String cvsRoot;
+        private final String method;
+        private final String host;
+        private final String port;
+        private final String path;
+        private final String module;
+        private final String project;
+        private final String branch;
+
+        ProjectReference(final String cvsRoot, final String method, final String host, final String port,
+                         final String path, final String module, final String project, final String branch) {
+            this.cvsRoot = cvsRoot;
+            this.method = method;
+            this.host = host;
+            this.port = port;
+            this.path = path;
+            this.module = module;
+            this.project = project;
+            this.branch = branch;
+        }
+
+        /**
+         * @return the CVSROOT exactly as it appears in the reference
+         */
+        String getCvsRoot() {
+            return cvsRoot;
+        }
+
+        /**
+         * @return the connection method, including the surrounding colons (e.g. <tt>:pserver:</tt>)
+         */
+        String getMethod() {
+            return method;
+        }
+
+        String getHost() {
+            return host;
+        }
+
+        /**
+         * @return the port, or null if the reference uses the default port
+         */
+        String getPort() {
+            return port;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getModule() {
+            return module;
+        }
+
+        String getProject() {
+            return project;
+        }
+
+        /**
+         * @return the branch to check out, or null to check out head
+         */
+        String getBranch() {
+            return branch;
+        }
+    }
+
+}
@@ -136,6 +136,20 @@ public class CvsRepository extends AbstractDescribableImpl<CvsRepository> implem
         return repositoryBrowser;
     }
 
+    /**
+     * @param cvsRoot an expanded CVSROOT
+     * @return the lower-cased host name of the server the CVSROOT points at, <tt>localhost</tt> for a local
+     *         repository, or the CVSROOT itself if it can't be parsed
+     */
+    public static String getServerName(final String cvsRoot) {
+        try {
+            final String hostName = CVSRoot.parse(cvsRoot).getHostName();
+            return hostName == null ? "localhost" : hostName.toLowerCase(Locale.ENGLISH);
+        } catch (IllegalArgumentException ex) {
+            return cvsRoot;
+        }
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A prefix searchable index of the branch and tag names found in a CVS module. Names are held
+ * in a single array sorted case-insensitively so a prefix lookup is a binary search followed by
+ * a scan of the matching range, rather than a walk over every symbolic name in the module.
+ */
+public final class CvsSymbolicNameIndex implements Serializable {
+
+    private static final long serialVersionUID = 2904376629410658307L;
+
+    private final String[] names;
+    private final BitSet branches;
+
+    private CvsSymbolicNameIndex(final String[] names, final BitSet branches) {
+        this.names = names;
+        this.branches = branches;
+    }
+
+    /**
+     * Creates an index from the branch and tag names parsed from CVS rlog output. A name that is
+     * used as a branch in any file is recorded as a branch.
+     * @param branchNames the names of all branches in the module
+     * @param tagNames the names of all (non-branch) tags in the module
+     * @return an index over all the supplied names
+     */
+    public static CvsSymbolicNameIndex of(final Collection<String> branchNames, final Collection<String> tagNames) {
+        final Set<String> allNames = new TreeSet<String>(branchNames);
+        allNames.addAll(tagNames);
+
+        final String[] names = allNames.toArray(new String[allNames.size()]);
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+
+        final BitSet branches = new BitSet(names.length);
+        for (int i = 0; i < names.length; i++) {
+            if (branchNames.contains(names[i])) {
+                branches.set(i);
+            }
+        }
+
+        return new CvsSymbolicNameIndex(names, branches);
+    }
+
+    /**
+     * Finds the names starting with the given prefix, ignoring case.
+     * @param prefix the text the user has typed so far
+     * @param limit the maximum number of names to return
+     * @return up to {@code limit} matching names in case-insensitive order
+     */
+    public List<String> search(final String prefix, final int limit) {
+        final String searchPrefix = prefix == null ? "" : prefix;
+        final List<String> matches = new ArrayList<String>();
+
+        for (int i = lowerBound(searchPrefix); i < names.length && matches.size() < limit; i++) {
+            if (!names[i].regionMatches(true, 0, searchPrefix, 0, searchPrefix.length())) {
+                break;
+            }
+            matches.add(names[i]);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Checks whether the exact (case-sensitive) name exists as a branch or tag in this index.
+     * @param name the name to look for
+     * @return true if the name is a known branch or tag
+     */
+    public boolean contains(final String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * @param name the name to check
+     * @return true if the name is known and is used as a branch
+     */
+    public boolean isBranch(final String name) {
+        final int index = indexOf(name);
+        return index >= 0 && branches.get(index);
+    }
+
+    public List<String> getBranchNames() {
+        return getNames(true);
+    }
+
+    public List<String> getTagNames() {
+        return getNames(false);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    private List<String> getNames(final boolean branch) {
+        final List<String> result = new ArrayList<String>();
+        for (int i = 0; i < names.length; i++) {
+            if (branches.get(i) == branch) {
+                result.add(names[i]);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private int indexOf(final String name) {
+        if (name == null) {
+            return -1;
+        }
+
+        // several names may only differ by case, so scan the range that compares equal
+        for (int i = lowerBound(name); i < names.length && names[i].equalsIgnoreCase(name); i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the index of the first name that is not less than the given key, ignoring case.
+     */
+    private int lowerBound(final String key) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(names[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
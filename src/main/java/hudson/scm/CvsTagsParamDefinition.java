@@ -26,9 +26,13 @@ package hudson.scm;
 
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Computer;
+import hudson.model.Item;
+import hudson.model.Job;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.Secret;
@@ -37,6 +41,7 @@ import net.sf.json.JSONObject;
 import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.export.Exported;
 import org.netbeans.lib.cvsclient.CVSRoot;
@@ -62,18 +67,29 @@ import java.io.PrintStream;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static hudson.Util.fixEmpty;
+import static hudson.Util.fixNull;
 
 public class CvsTagsParamDefinition extends ParameterDefinition {
 
     private static final Logger logger = Logger.getLogger("CvsTagsParamDefinition");
 
+    private static final int MAX_AUTO_COMPLETE_RESULTS = 50;
+
+    private static final long INDEX_CACHE_DURATION = Long.getLong(CvsTagsParamDefinition.class.getName() + ".indexCacheDuration",
+            TimeUnit.MINUTES.toMillis(10));
+
     private final String cvsRoot;
     private final Secret password;
     private final String moduleName;
     private final boolean passwordRequired;
+
+    private transient volatile CvsSymbolicNameIndex symbolicNameIndex;
+    private transient volatile long symbolicNameIndexTimestamp;
     
     @DataBoundConstructor
     public CvsTagsParamDefinition(String name, String cvsRoot, final boolean passwordRequired, String password, String moduleName) {
@@ -121,74 +137,55 @@ public class CvsTagsParamDefinition extends ParameterDefinition {
         return req.bindJSON(CvsTagsParamValue.class, formData);
     }
 
+    @Override
+    public boolean isValid(ParameterValue value) {
+        if (!(value instanceof CvsTagsParamValue)) {
+            return false;
+        }
+        try {
+            return isKnownSymbolicName(((CvsTagsParamValue) value).getTagName());
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not load symbolic names for " + moduleName, ex);
+        } catch (CommandException ex) {
+            logger.log(Level.WARNING, "Could not load symbolic names for " + moduleName, ex);
+        } catch (AuthenticationException ex) {
+            logger.log(Level.WARNING, "Could not load symbolic names for " + moduleName, ex);
+        }
+        return false;
+    }
+
+    /**
+     * Validates the name typed into the build form so an unknown branch or tag is reported
+     * before the build is submitted.
+     * @param value the name entered so far
+     * @return an error if the name is not a branch or tag in the module
+     */
+    public FormValidation doCheckTagName(@QueryParameter String value) {
+        String tagName = fixEmpty(value);
+        if (tagName == null) {
+            return FormValidation.error(hudson.scm.cvs.Messages.CVSSCM_MissingTagName());
+        }
+        try {
+            if (!isKnownSymbolicName(tagName)) {
+                return FormValidation.error(hudson.scm.cvs.Messages.CVSSCM_UnknownTagName(tagName, moduleName));
+            }
+        } catch (IOException ex) {
+            return FormValidation.warning(ex, hudson.scm.cvs.Messages.CVSSCM_SymbolicNamesNotLoaded());
+        } catch (CommandException ex) {
+            return FormValidation.warning(ex, hudson.scm.cvs.Messages.CVSSCM_SymbolicNamesNotLoaded());
+        } catch (AuthenticationException ex) {
+            return FormValidation.warning(ex, hudson.scm.cvs.Messages.CVSSCM_SymbolicNamesNotLoaded());
+        }
+        return FormValidation.ok();
+    }
+
     @Exported
     public ListBoxModel getSymbolicNames()  {
         ListBoxModel model = new ListBoxModel();
-        CvsChangeSet changeSet = null;
-
-        RlogCommand statusCommand = new RlogCommand();
-        statusCommand.setHeaderOnly(true);
-        statusCommand.setModule(moduleName);
-        statusCommand.setRecursive(true);
+        CvsSymbolicNameIndex index;
 
         try {
-            final File tempRlogSpill = File.createTempFile("cvs","status");
-            final DeferredFileOutputStream outputStream = new DeferredFileOutputStream(100*1024,tempRlogSpill);
-            final PrintStream logStream = new PrintStream(outputStream, true, CVSSCM.DescriptorImpl.getOrDie().getChangelogEncoding());
-
-            final OutputStream errorOutputStream = new OutputStream() {
-                final StringBuffer buffer = new StringBuffer();
-                
-                @Override
-                public void write(int b) throws IOException {
-                    if ((int)("\n".getBytes()[0]) == b) {
-                        flush();
-                    }
-                    else {
-                        buffer.append(new String(new byte[]{(byte)b}));
-                    }
-                }
-                
-                @Override
-                public void flush() throws IOException {
-                    logger.info(buffer.toString());
-                    buffer.delete(0, buffer.length());
-                    super.flush();
-                }
-                
-                public void close() throws IOException {
-                    flush();
-                    super.close();
-                }
-            };
-            final PrintStream errorPrintStream = new PrintStream(errorOutputStream);
-            Client cvsClient = getCvsClient(cvsRoot, passwordRequired, password);
-            cvsClient.getEventManager().addCVSListener(new BasicListener(logStream, errorPrintStream));
-            cvsClient.executeCommand(statusCommand, getGlobalOptions(cvsRoot));
-
-            logStream.close();
-            errorPrintStream.flush();
-            errorPrintStream.close();
-
-            CvsLog parser  = new CvsLog() {
-                @Override
-                public Reader read() throws IOException {
-                    final String changelogEncoding = CVSSCM.DescriptorImpl.getOrDie().getChangelogEncoding();
-                    if (outputStream.isInMemory())
-                        return new InputStreamReader(new ByteArrayInputStream(outputStream.getData()), changelogEncoding);
-                    else
-                        return new InputStreamReader(new FileInputStream(outputStream.getFile()), changelogEncoding);
-                }
-
-                @Override
-                public void dispose() {
-                    tempRlogSpill.delete();
-                }
-            };
-
-            // we don't care about the repository that's passed to CVS log
-            changeSet = parser.mapCvsLog(cvsRoot, new CvsRepositoryLocation.HeadRepositoryLocation(), null, new EnvVars());
-    
+            index = getSymbolicNameIndex();
         }
         catch(IOException ex) {
             model.add(new ListBoxModel.Option("Could not load symbolic names due to an IO Error - " + ex.getLocalizedMessage()));
@@ -206,17 +203,166 @@ public class CvsTagsParamDefinition extends ParameterDefinition {
 
         model.add(new ListBoxModel.Option("Head", "HEAD"));
         
-        for (String branchName : changeSet.getBranchNames()) {
+        for (String branchName : index.getBranchNames()) {
             model.add(new ListBoxModel.Option(branchName + " (Branch)", branchName));
         }
 
-        for (String tagName : changeSet.getTagNames()) {
+        for (String tagName : index.getTagNames()) {
             model.add(new ListBoxModel.Option(tagName + " (Tag)", tagName));
         }
 
         return model;
     }
 
+    /**
+     * Suggests the branch and tag names starting with the text the user has typed so far. The
+     * names are served from the cached symbolic name index so only the first request after the
+     * cache expires has to run rlog against the repository.
+     * @param value the text entered so far
+     * @return at most {@link #MAX_AUTO_COMPLETE_RESULTS} matching names
+     */
+    public AutoCompletionCandidates doAutoCompleteTagName(@QueryParameter String value) {
+        AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+        String prefix = fixNull(value);
+
+        if ("HEAD".regionMatches(true, 0, prefix, 0, prefix.length())) {
+            candidates.add("HEAD");
+        }
+
+        try {
+            for (String name : getSymbolicNameIndex().search(prefix, MAX_AUTO_COMPLETE_RESULTS)) {
+                candidates.add(name);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not load symbolic names for " + moduleName, ex);
+        } catch (CommandException ex) {
+            logger.log(Level.WARNING, "Could not load symbolic names for " + moduleName, ex);
+        } catch (AuthenticationException ex) {
+            logger.log(Level.WARNING, "Could not load symbolic names for " + moduleName, ex);
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Gets the index of all branch and tag names in the configured module, running rlog against
+     * the repository if the index has not been loaded yet or has expired.
+     * @return the index of symbolic names in the module
+     */
+    public CvsSymbolicNameIndex getSymbolicNameIndex() throws IOException, CommandException, AuthenticationException {
+        CvsSymbolicNameIndex index = symbolicNameIndex;
+        if (isExpired(index)) {
+            index = loadSymbolicNameIndex();
+        }
+        return index;
+    }
+
+    /**
+     * Loads the index unless another thread has loaded it while this one waited, so only one
+     * rlog runs however many requests find the index missing or expired at the same time.
+     */
+    private synchronized CvsSymbolicNameIndex loadSymbolicNameIndex() throws IOException, CommandException, AuthenticationException {
+        CvsSymbolicNameIndex index = symbolicNameIndex;
+        if (isExpired(index)) {
+            CvsChangeSet changeSet = loadSymbolicNames();
+            index = CvsSymbolicNameIndex.of(changeSet.getBranchNames(), changeSet.getTagNames());
+            symbolicNameIndexTimestamp = System.currentTimeMillis();
+            symbolicNameIndex = index;
+        }
+        return index;
+    }
+
+    private boolean isExpired(CvsSymbolicNameIndex index) {
+        return index == null || System.currentTimeMillis() - symbolicNameIndexTimestamp > INDEX_CACHE_DURATION;
+    }
+
+    /**
+     * Checks a name against the cached symbolic name index, loading the index if it hasn't been
+     * loaded yet or has expired. A missing name never triggers a reload of its own, so a tag
+     * created since the index was cached is only accepted once the cache expires.
+     * @param tagName the branch or tag name to validate
+     * @return true if the name is HEAD or in the index
+     */
+    public boolean isKnownSymbolicName(String tagName) throws IOException, CommandException, AuthenticationException {
+        return "HEAD".equals(tagName) || getSymbolicNameIndex().contains(tagName);
+    }
+
+    private CvsChangeSet loadSymbolicNames() throws IOException, CommandException, AuthenticationException {
+        RlogCommand statusCommand = new RlogCommand();
+        statusCommand.setHeaderOnly(true);
+        statusCommand.setModule(moduleName);
+        statusCommand.setRecursive(true);
+
+        final File tempRlogSpill = File.createTempFile("cvs","status");
+        final DeferredFileOutputStream outputStream = new DeferredFileOutputStream(100*1024,tempRlogSpill);
+        final PrintStream logStream = new PrintStream(outputStream, true, CVSSCM.DescriptorImpl.getOrDie().getChangelogEncoding());
+
+        final OutputStream errorOutputStream = new OutputStream() {
+            final StringBuffer buffer = new StringBuffer();
+            
+            @Override
+            public void write(int b) throws IOException {
+                if ((int)("\n".getBytes()[0]) == b) {
+                    flush();
+                }
+                else {
+                    buffer.append(new String(new byte[]{(byte)b}));
+                }
+            }
+            
+            @Override
+            public void flush() throws IOException {
+                logger.info(buffer.toString());
+                buffer.delete(0, buffer.length());
+                super.flush();
+            }
+            
+            public void close() throws IOException {
+                flush();
+                super.close();
+            }
+        };
+        final PrintStream errorPrintStream = new PrintStream(errorOutputStream);
+        Client cvsClient = getCvsClient(cvsRoot, passwordRequired, password);
+        cvsClient.getEventManager().addCVSListener(new BasicListener(logStream, errorPrintStream));
+        final CvsMetrics.Sample sample = CvsMetrics.start(cvsRoot, "symbolicNames");
+        boolean succeeded = false;
+        try {
+            succeeded = cvsClient.executeCommand(statusCommand, getGlobalOptions(cvsRoot));
+        } catch (AuthenticationException ex) {
+            CvsMetrics.count(cvsRoot, CvsMetrics.COUNTER_CONNECTION_FAILURES, 1);
+            throw ex;
+        } finally {
+            sample.stop(succeeded);
+            CvsMetrics.count(cvsRoot, CvsMetrics.COUNTER_CONNECTIONS, 1);
+        }
+
+        logStream.close();
+        errorPrintStream.flush();
+        errorPrintStream.close();
+
+        CvsLog parser  = new CvsLog() {
+            @Override
+            public Reader read() throws IOException {
+                final String changelogEncoding = CVSSCM.DescriptorImpl.getOrDie().getChangelogEncoding();
+                if (outputStream.isInMemory())
+                    return new InputStreamReader(new ByteArrayInputStream(outputStream.getData()), changelogEncoding);
+                else
+                    return new InputStreamReader(new FileInputStream(outputStream.getFile()), changelogEncoding);
+            }
+
+            @Override
+            public void dispose() {
+                tempRlogSpill.delete();
+            }
+        };
+
+        // we don't care about the repository that's passed to CVS log
+        final CvsChangeSet changeSet = parser.mapCvsLog(cvsRoot, new CvsRepositoryLocation.HeadRepositoryLocation(), null, new EnvVars());
+        CvsMetrics.count(cvsRoot, CvsMetrics.COUNTER_RLOG_LINES, changeSet.getLineCount());
+        return changeSet;
+    }
+
     public Client getCvsClient(final String cvsRootString, final boolean passwordRequired, final Secret password) {
         CVSRoot cvsRoot = CVSRoot.parse(cvsRootString);
         EnvVars envVars = new EnvVars(System.getenv());
@@ -293,6 +439,28 @@ public class CvsTagsParamDefinition extends ParameterDefinition {
             return FormValidation.ok();
         }
 
+        /**
+         * Gives access to a parameter definition on the job currently being viewed so that its
+         * auto-completion endpoint can be reached from the build form.
+         * @param name the name of the parameter
+         * @return the matching parameter definition, or null if the job has no such CVS parameter
+         */
+        public CvsTagsParamDefinition getDefinition(String name) {
+            Job<?, ?> job = Stapler.getCurrentRequest2().findAncestorObject(Job.class);
+            if (job == null) {
+                return null;
+            }
+            job.checkPermission(Item.BUILD);
+
+            ParametersDefinitionProperty property = job.getProperty(ParametersDefinitionProperty.class);
+            if (property == null) {
+                return null;
+            }
+
+            ParameterDefinition definition = property.getParameterDefinition(name);
+            return definition instanceof CvsTagsParamDefinition ? (CvsTagsParamDefinition) definition : null;
+        }
+
         public FormValidation doCheckName(@QueryParameter String value) throws IOException {
             if (null == fixEmpty(value)) {
                 return FormValidation.error(hudson.scm.cvs.Messages.CVSSCM_MissingParameterName());
@@ -36,6 +36,10 @@ public class CvsTagsParamValue extends ParameterValue {
         super(name, tagName);
     }
 
+    public String getTagName() {
+        return getDescription();
+    }
+
     @Override
     public void buildEnvVars(AbstractBuild<?,?> build, EnvVars env) {
         env.put(getName(), getDescription());
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.EnvVars;
+import hudson.XmlFile;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * How far polling has got since a job's last build, so each poll only needs rlog to list the commits made since
+ * the previous poll rather than everything since the build. Alongside the date of the last poll it holds every
+ * change found since the build, which is all that's needed to bring the build's state back up to date after a
+ * restart, and whether any of those changes called for a build, so polling keeps asking for one if the build
+ * it asked for never happened. It's kept in <tt>cvs-polling.xml</tt> in the job's directory, and is replaced by
+ * a new one as soon as the job builds again.
+ * <p>
+ * Each poll starts a little before the previous one ended, <tt>hudson.scm.PollingWatermark.overlapSeconds</tt>
+ * (5 minutes by default), so commits that weren't visible yet or were dated by a server whose clock is behind
+ * aren't missed. Revisions found again in the overlap are recognised and ignored. Polling always goes back to
+ * the last build if <tt>hudson.scm.PollingWatermark.disabled</tt> is set.
+ */
+final class PollingWatermark {
+
+    private static final Logger LOGGER = Logger.getLogger(PollingWatermark.class.getName());
+
+    static final boolean DISABLED = Boolean.getBoolean(PollingWatermark.class.getName() + ".disabled");
+
+    static final long OVERLAP = Math.max(0, Long.getLong(PollingWatermark.class.getName() + ".overlapSeconds", 300L))
+            * 1000;
+
+    private static final String FILE_NAME = "cvs-polling.xml";
+
+    private final int build;
+    private final Date pollDate;
+    private boolean changesPending;
+    private final Map<String, List<CvsFile>> changes = new HashMap<String, List<CvsFile>>();
+
+    PollingWatermark(final int build, final Date pollDate) {
+        this.build = build;
+        this.pollDate = pollDate;
+    }
+
+    /**
+     * @return the watermark left by the job's last poll, or null if there isn't one that carries on from the build
+     */
+    static PollingWatermark load(final Job<?, ?> job, final Run<?, ?> build) {
+        if (DISABLED) {
+            return null;
+        }
+        final XmlFile file = getFile(job);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final PollingWatermark watermark = (PollingWatermark) file.read();
+            if (watermark.build != build.getNumber() || watermark.pollDate == null
+                    || !watermark.pollDate.after(build.getTime())) {
+                return null;
+            }
+            return watermark;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not read the polling watermark for " + job.getFullName(), ex);
+            return null;
+        } catch (ClassCastException ex) {
+            LOGGER.log(Level.WARNING, "Ignoring the unexpected polling watermark for " + job.getFullName(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the watermark for the next poll. Failing to save it only means the next poll has more to fetch, so
+     * it doesn't fail this one.
+     */
+    void save(final Job<?, ?> job) {
+        if (DISABLED) {
+            return;
+        }
+        try {
+            getFile(job).write(this);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not save the polling watermark for " + job.getFullName(), ex);
+        }
+    }
+
+    private static XmlFile getFile(final Job<?, ?> job) {
+        return new XmlFile(Jenkins.XSTREAM2, new File(job.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * @return what the changes found in a repository are recorded against: the expanded CVSROOT and what's
+     *         checked out from it. The repository itself isn't used since parts of its configuration, such as its
+     *         browser, don't compare equal once saved and reloaded, and none of it needs to be kept here.
+     */
+    static String getKey(final CvsRepository repository, final EnvVars envVars) {
+        final StringBuilder key = new StringBuilder(envVars.expand(repository.getCvsRoot()));
+        for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+            key.append(' ').append(item.getLocation().getLocationType()).append(':')
+                    .append(envVars.expand(item.getLocation().getLocationName()));
+            for (CvsModule module : item.getModules()) {
+                key.append(' ').append(envVars.expand(module.getRemoteName()));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return when the next poll should list changes from
+     */
+    Date getStartTime() {
+        return new Date(pollDate.getTime() - OVERLAP);
+    }
+
+    boolean isChangesPending() {
+        return changesPending;
+    }
+
+    void setChangesPending(final boolean changesPending) {
+        this.changesPending = changesPending;
+    }
+
+    /**
+     * @return the changes found in the repository since the build, in the order they were found
+     */
+    List<CvsFile> getChanges(final String repositoryKey) {
+        final List<CvsFile> repositoryChanges = changes.get(repositoryKey);
+        return repositoryChanges == null ? Collections.<CvsFile>emptyList() : repositoryChanges;
+    }
+
+    /**
+     * Adds to the changes found in the repository, replacing any earlier revision of the same file.
+     */
+    void addChanges(final String repositoryKey, final List<CvsFile> newChanges) {
+        List<CvsFile> repositoryChanges = changes.get(repositoryKey);
+        if (repositoryChanges == null) {
+            repositoryChanges = new ArrayList<CvsFile>();
+            changes.put(repositoryKey, repositoryChanges);
+        }
+        for (CvsFile change : newChanges) {
+            for (int i = repositoryChanges.size() - 1; i >= 0; i--) {
+                if (repositoryChanges.get(i).getName().equals(change.getName())) {
+                    repositoryChanges.remove(i);
+                }
+            }
+            repositoryChanges.add(change);
+        }
+    }
+
+    /**
+     * Brings a state up to date with the changes found since the build. The state may be the build's own or one
+     * that previous polls have already updated, so changes already applied are left alone.
+     * @param state the files in the repository, updated in place
+     */
+    void restore(final String repositoryKey, final List<CvsFile> state) {
+        final Map<String, CvsFile> latest = new HashMap<String, CvsFile>();
+        for (CvsFile change : getChanges(repositoryKey)) {
+            latest.put(change.getName(), change);
+        }
+        if (latest.isEmpty()) {
+            return;
+        }
+        final Set<String> present = new HashSet<String>();
+        for (Iterator<CvsFile> itr = state.iterator(); itr.hasNext();) {
+            final CvsFile file = itr.next();
+            final CvsFile change = latest.get(file.getName());
+            if (change == null) {
+                continue;
+            }
+            if (change.equals(file)) {
+                present.add(file.getName());
+            } else {
+                itr.remove();
+            }
+        }
+        for (CvsFile change : latest.values()) {
+            if (!change.isDead() && !present.contains(change.getName())) {
+                state.add(change);
+            }
+        }
+    }
+
+    /**
+     * Removes the changes that have already been seen, such as those listed again in the overlap with the
+     * previous poll. Removed files are only known from the changes, since they're no longer in the state.
+     * @param state the files in the repository as of the previous poll
+     * @return a new list of the changes that aren't in the state or already recorded here
+     */
+    List<CvsFile> removeKnownChanges(final String repositoryKey, final List<CvsFile> polledChanges,
+                                     final List<CvsFile> state) {
+        final Set<CvsFile> known = new HashSet<CvsFile>(state);
+        known.addAll(getChanges(repositoryKey));
+        final List<CvsFile> newChanges = new ArrayList<CvsFile>();
+        for (CvsFile change : polledChanges) {
+            if (!known.contains(change)) {
+                newChanges.add(change);
+            }
+        }
+        return newChanges;
+    }
+
+}
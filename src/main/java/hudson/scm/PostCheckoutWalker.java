@@ -0,0 +1,462 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.MasterToSlaveFileCallable;
+import org.netbeans.lib.cvsclient.admin.AdminHandler;
+import org.netbeans.lib.cvsclient.admin.Entry;
+import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tidies up each checked out module and records its state in a single walk of the module on the agent. In the
+ * one traversal empty CVS controlled directories are pruned (working around JENKINS-18390), sticky dates and
+ * sticky HEAD tags are removed, the name and revision of every file under CVS control is collected, and
+ * unmodified files are added to the {@link RevisionBlobCache} when it's enabled. Every
+ * module in the workspace is handled in the same call, so this costs one remoting round trip per checkout.
+ * Symbolic links are never followed, so no canonical path resolution is needed to avoid walking in circles.
+ * Modules with many top level directories have each of those directories walked in parallel.
+ */
+final class PostCheckoutWalker extends MasterToSlaveFileCallable<List<PostCheckoutWalker.ModuleResult>> {
+
+    private static final long serialVersionUID = -1948290175390417620L;
+
+    /**
+     * The number of top level directories a module needs before they're walked in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger(PostCheckoutWalker.class.getName() + ".parallelThreshold", 8);
+
+    private static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final List<ModuleWalk> modules;
+    private final TaskListener listener;
+
+    PostCheckoutWalker(final List<ModuleWalk> modules, final TaskListener listener) {
+        this.modules = modules;
+        this.listener = listener;
+    }
+
+    /**
+     * @return what was found in each module, in the same order the modules were given in
+     */
+    @Override
+    public List<ModuleResult> invoke(final File workspace, final VirtualChannel channel) throws IOException {
+        final List<ModuleResult> results = new ArrayList<ModuleResult>();
+        final Set<String> revisionCaches = new HashSet<String>();
+        for (ModuleWalk module : modules) {
+            results.add(walk(module.path.isEmpty() ? workspace : new File(workspace, module.path), module, listener));
+            if (module.revisionCache != null && revisionCaches.add(module.revisionCache.getRoot())) {
+                RevisionBlobCache.evict(module.revisionCache);
+            }
+        }
+        return results;
+    }
+
+    static ModuleResult walk(final File moduleLocation, final ModuleWalk module, final TaskListener listener)
+            throws IOException {
+        final long start = System.nanoTime();
+        final List<CvsFile> files = new ArrayList<CvsFile>();
+        long cleanupTime = 0;
+
+        if (moduleLocation.isFile()) {
+            final Entry entry = new StandardAdminHandler().getEntry(moduleLocation);
+            if (entry != null) {
+                files.add(CvsFile.make(entry.getName(), entry.getRevision()));
+            }
+        } else if (moduleLocation.isDirectory()) {
+            final Path top = moduleLocation.toPath();
+            final List<Path> subdirectories = getSubdirectories(top);
+            if (subdirectories.size() < PARALLEL_THRESHOLD || PARALLELISM == 1) {
+                final ModuleVisitor visitor = new ModuleVisitor(top, module, files, listener, null);
+                Files.walkFileTree(top, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, visitor);
+                cleanupTime = visitor.cleanupTime;
+            } else {
+                cleanupTime = walkInParallel(top, subdirectories, module, files, listener);
+            }
+        }
+
+        // cleanup time is summed across threads when walking in parallel, so may exceed the time taken
+        return new ModuleResult(files, cleanupTime, Math.max(0, System.nanoTime() - start - cleanupTime));
+    }
+
+    /**
+     * Walks the top level of a module and then each of its directories on a separate thread, collecting the files
+     * in the same order a single walk would.
+     * @return the time spent tidying up across all threads, in nanoseconds
+     */
+    private static long walkInParallel(final Path top, final List<Path> subdirectories, final ModuleWalk module,
+                                       final List<CvsFile> files, final TaskListener listener) throws IOException {
+        // the module directory itself, with its sub-directories only counted as entries
+        final ModuleVisitor topVisitor = new ModuleVisitor(top, module, files, listener, null);
+        Files.walkFileTree(top, EnumSet.noneOf(FileVisitOption.class), 1, topVisitor);
+        long cleanupTime = topVisitor.cleanupTime;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM,
+                new NamingThreadFactory(new DaemonThreadFactory(), "CVS workspace walk " + top.getFileName()));
+        try {
+            final List<Future<ModuleResult>> results = new ArrayList<Future<ModuleResult>>();
+            for (final Path subdirectory : subdirectories) {
+                results.add(executor.submit(new Callable<ModuleResult>() {
+                    @Override
+                    public ModuleResult call() throws IOException {
+                        // stands in for the module directory, which the walk above has already dealt with
+                        final DirectoryState parent = new DirectoryState(module.remoteName, module.prune, null, null, 0);
+                        final List<CvsFile> subdirectoryFiles = new ArrayList<CvsFile>();
+                        final ModuleVisitor visitor = new ModuleVisitor(top, module, subdirectoryFiles, listener,
+                                parent);
+                        Files.walkFileTree(subdirectory, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
+                                visitor);
+                        return new ModuleResult(subdirectoryFiles, visitor.cleanupTime, 0);
+                    }
+                }));
+            }
+            for (Future<ModuleResult> result : results) {
+                files.addAll(result.get().getFiles());
+                cleanupTime += result.get().getCleanupTime();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while walking " + top, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Could not walk " + top, ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return cleanupTime;
+    }
+
+    /**
+     * @return the directories directly below the given one, other than its <tt>CVS</tt> directory, in the order
+     *         a walk would visit them. Symbolic links aren't included since they're never followed.
+     */
+    private static List<Path> getSubdirectories(final Path directory) throws IOException {
+        final List<Path> subdirectories = new ArrayList<Path>();
+        final DirectoryStream<Path> children = Files.newDirectoryStream(directory);
+        try {
+            for (Path child : children) {
+                if (!"CVS".equals(child.getFileName().toString()) && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirectories.add(child);
+                }
+            }
+        } finally {
+            children.close();
+        }
+        return subdirectories;
+    }
+
+    static boolean isCvsControlled(final Path directory) {
+        return Files.isDirectory(directory.resolve("CVS"), LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * What to do with a single module. The module is found at <tt>path</tt> relative to the workspace, or is the
+     * workspace itself when <tt>path</tt> is empty (i.e. a flattened checkout).
+     */
+    static final class ModuleWalk implements Serializable {
+
+        private static final long serialVersionUID = 6712386610263914470L;
+
+        private final String path;
+        private final String remoteName;
+        private final boolean prune;
+        private final boolean removeStickyDates;
+        private final boolean removeTagFile;
+        private final RevisionBlobCache.Target revisionCache;
+
+        ModuleWalk(final String path, final String remoteName, final boolean prune, final boolean removeStickyDates,
+                   final boolean removeTagFile) {
+            this(path, remoteName, prune, removeStickyDates, removeTagFile, null);
+        }
+
+        /**
+         * @param path the location of the module relative to the workspace
+         * @param remoteName the name of the module on the server, which prefixes every file name collected so
+         *                   the state can be compared against rlog output even if the module was checked out
+         *                   under an alternative name
+         * @param prune whether CVS controlled directories left with nothing but their CVS directory are removed
+         * @param removeStickyDates whether the sticky date is removed from each entry
+         * @param removeTagFile whether <tt>CVS/Tag</tt> is removed from each directory, as it carries a sticky
+         *                      reference when checking out HEAD
+         * @param revisionCache where to add the revisions of unmodified files to, or null to not cache them
+         */
+        ModuleWalk(final String path, final String remoteName, final boolean prune, final boolean removeStickyDates,
+                   final boolean removeTagFile, final RevisionBlobCache.Target revisionCache) {
+            this.path = path;
+            this.remoteName = remoteName;
+            this.prune = prune;
+            this.removeStickyDates = removeStickyDates;
+            this.removeTagFile = removeTagFile;
+            this.revisionCache = revisionCache;
+        }
+    }
+
+    /**
+     * The files found in a module, and how the time walking it was split between tidying up its CVS metadata
+     * (removing sticky references and pruning empty directories) and everything else.
+     */
+    static final class ModuleResult implements Serializable {
+
+        private static final long serialVersionUID = -3386711305498412764L;
+
+        private final List<CvsFile> files;
+        private final long cleanupTime;
+        private final long scanTime;
+
+        private ModuleResult(final List<CvsFile> files, final long cleanupTime, final long scanTime) {
+            this.files = files;
+            this.cleanupTime = cleanupTime;
+            this.scanTime = scanTime;
+        }
+
+        List<CvsFile> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return the time spent on tidying up, in nanoseconds
+         */
+        long getCleanupTime() {
+            return cleanupTime;
+        }
+
+        /**
+         * @return the time spent on reading the module's state, in nanoseconds
+         */
+        long getScanTime() {
+            return scanTime;
+        }
+    }
+
+    private static final class DirectoryState {
+
+        private final String prefix;
+        private final boolean prunable;
+        private final List<Entry> entries;
+        private final Map<String, RevisionBlobCache.EntryLine> entryLines;
+        private final int insertAt;
+        private final Set<String> fileNames = new HashSet<String>();
+        private int entryCount;
+
+        private DirectoryState(final String prefix, final boolean prunable, final List<Entry> entries,
+                               final Map<String, RevisionBlobCache.EntryLine> entryLines, final int insertAt) {
+            this.prefix = prefix;
+            this.prunable = prunable;
+            this.entries = entries;
+            this.entryLines = entryLines;
+            this.insertAt = insertAt;
+        }
+    }
+
+    private static final class ModuleVisitor extends SimpleFileVisitor<Path> {
+
+        private final Path top;
+        private final ModuleWalk module;
+        private final AdminHandler adminHandler;
+        private final List<CvsFile> files;
+        private final TaskListener listener;
+        private final Deque<DirectoryState> directories = new ArrayDeque<DirectoryState>();
+        private boolean caching;
+        private long cleanupTime;
+
+        /**
+         * @param top the module directory, which is never pruned
+         * @param parent the state of the directory above where the walk starts when walking part of a module,
+         *               or null when the walk starts at the top of the module
+         */
+        private ModuleVisitor(final Path top, final ModuleWalk module, final List<CvsFile> files,
+                              final TaskListener listener, final DirectoryState parent) {
+            this.top = top;
+            this.module = module;
+            this.adminHandler = new StandardAdminHandler();
+            this.files = files;
+            this.listener = listener;
+            this.caching = module.revisionCache != null;
+            if (parent != null) {
+                directories.push(parent);
+            }
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+            final DirectoryState parent = directories.peek();
+            if (parent != null && "CVS".equals(dir.getFileName().toString())) {
+                countEntry();
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            final boolean controlled = isCvsControlled(dir);
+            final String prefix = parent == null ? module.remoteName
+                    : parent.prefix + "/" + dir.getFileName().toString();
+            // directories outside CVS control are never removed, and neither is anything below them
+            final boolean prunable = module.prune && (parent == null || (parent.prunable && controlled));
+
+            List<Entry> entries = null;
+            Map<String, RevisionBlobCache.EntryLine> entryLines = null;
+            if (controlled) {
+                entries = readEntries(dir.toFile());
+                final long cleanupStart = System.nanoTime();
+                if (module.removeStickyDates && !CvsEntriesRewriter.removeStickyDates(dir.toFile())) {
+                    // there are changes in CVS/Entries.Log, so leave merging them to the client library
+                    removeStickyDates(dir.toFile(), entries);
+                }
+                if (module.removeTagFile) {
+                    final File tagFile = new File(dir.toFile(), "CVS/Tag");
+                    if (tagFile.exists() && !tagFile.delete()) {
+                        listener.getLogger().println("Could not delete the sticky tag file, workspace may be in an inconsistent state");
+                    }
+                }
+                cleanupTime += System.nanoTime() - cleanupStart;
+                if (caching) {
+                    entryLines = RevisionBlobCache.readEntries(dir.toFile());
+                }
+            }
+
+            directories.push(new DirectoryState(prefix, prunable, entries, entryLines, files.size()));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            // symbolic links to directories are visited as files since links aren't followed
+            countEntry();
+            final DirectoryState directory = directories.peek();
+            if (directory != null && directory.entries != null
+                    && (attrs.isRegularFile() || (attrs.isSymbolicLink() && Files.isRegularFile(file)))) {
+                directory.fileNames.add(file.getFileName().toString());
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+            countEntry();
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+            if (exc != null) {
+                throw new IOException("could not examine " + dir, exc);
+            }
+            final DirectoryState directory = directories.pop();
+
+            if (directory.entries != null) {
+                // a directory's own files go before those of its sub-directories
+                final List<CvsFile> directoryFiles = new ArrayList<CvsFile>();
+                for (Entry entry : directory.entries) {
+                    if (!entry.isDirectory() && directory.fileNames.contains(entry.getName())) {
+                        directoryFiles.add(CvsFile.make(directory.prefix + "/" + entry.getName(), entry.getRevision()));
+                        cacheRevision(dir, directory, entry.getName());
+                    }
+                }
+                files.addAll(directory.insertAt, directoryFiles);
+            }
+
+            if (directory.prunable && !dir.equals(top) && directory.entryCount == 1) {
+                // Just CVS.
+                final long cleanupStart = System.nanoTime();
+                Util.deleteRecursive(dir.toFile());
+                cleanupTime += System.nanoTime() - cleanupStart;
+            } else {
+                countEntry();
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void cacheRevision(final Path dir, final DirectoryState directory, final String name) {
+            final RevisionBlobCache.EntryLine entryLine = directory.entryLines == null ? null
+                    : directory.entryLines.get(name);
+            if (!caching || entryLine == null) {
+                return;
+            }
+            try {
+                RevisionBlobCache.store(module.revisionCache, directory.prefix + "/" + name,
+                        dir.resolve(name).toFile(), entryLine);
+            } catch (IOException ex) {
+                // a full disk shouldn't fail the build, so just stop caching this module
+                listener.getLogger().println("Could not add " + name + " to the revision cache: " + ex.getMessage());
+                caching = false;
+            }
+        }
+
+        private List<Entry> readEntries(final File directory) throws IOException {
+            final List<Entry> entries = new ArrayList<Entry>();
+            final Iterator<?> iterator = adminHandler.getEntries(directory);
+            while (iterator.hasNext()) {
+                entries.add((Entry) iterator.next());
+            }
+            return entries;
+        }
+
+        private void removeStickyDates(final File directory, final List<Entry> entries) throws IOException {
+            for (Entry entry : entries) {
+                if (!entry.isDirectory()) {
+                    entry.setTag(entry.getTag()); // re-setting the tag removes the date without altering tag info
+                    adminHandler.setEntry(new File(directory, entry.getName()), entry);
+                }
+            }
+        }
+
+        private void countEntry() {
+            final DirectoryState directory = directories.peek();
+            if (directory != null) {
+                directory.entryCount++;
+            }
+        }
+    }
+
+}
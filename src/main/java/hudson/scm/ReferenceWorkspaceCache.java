@@ -0,0 +1,381 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps a copy of each module checked out on an agent, under <tt>cvs-reference</tt> in the agent's root
+ * directory, so a new workspace can be seeded from local disk and brought up to date with an update rather
+ * than fetching every file with a fresh checkout. References are keyed by CVSROOT, module and location, are
+ * refreshed from the workspace after each fresh checkout, and the least recently used ones are removed once the
+ * total size goes over <tt>hudson.scm.ReferenceWorkspaceCache.maxSizeMb</tt>.
+ * <p>
+ * This is opt-in through <tt>hudson.scm.ReferenceWorkspaceCache.enabled</tt>. Files are copied by default;
+ * setting <tt>hudson.scm.ReferenceWorkspaceCache.hardLinks</tt> links them instead where the file system allows
+ * it, which is only safe if builds never modify checked out files in place.
+ */
+final class ReferenceWorkspaceCache {
+
+    static final boolean ENABLED = Boolean.getBoolean(ReferenceWorkspaceCache.class.getName() + ".enabled");
+
+    private static final boolean HARD_LINKS = Boolean.getBoolean(ReferenceWorkspaceCache.class.getName() + ".hardLinks");
+
+    private static final long MAX_SIZE = Long.getLong(ReferenceWorkspaceCache.class.getName() + ".maxSizeMb", 5120L) * 1024 * 1024;
+
+    private static final String SIZE_FILE = ".reference-size";
+
+    /**
+     * Guards the listing and renaming of references in the cache directory on each agent. It's never held while
+     * a reference is copied, so executors working with different references don't wait for each other.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * One lock per reference directory, so an executor can't replace or evict a reference while another is
+     * copying from it. Seeds share the read lock; replacing and evicting need the write lock.
+     */
+    private static final ConcurrentMap<String, ReadWriteLock> REFERENCE_LOCKS = new ConcurrentHashMap<String, ReadWriteLock>();
+
+    private final FilePath root;
+
+    ReferenceWorkspaceCache(final FilePath root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the cache on the node holding the workspace, or null if the node can't be found
+     */
+    static ReferenceWorkspaceCache forWorkspace(final FilePath workspace) {
+        final Computer computer = workspace.toComputer();
+        final Node node = computer == null ? null : computer.getNode();
+        final FilePath nodeRoot = node == null ? null : node.getRootPath();
+        return nodeRoot == null ? null : new ReferenceWorkspaceCache(nodeRoot.child("cvs-reference"));
+    }
+
+    /**
+     * Creates the name a reference is stored under. Everything that changes what a checkout contains is part of
+     * the key, apart from the date, which the update after seeding takes care of.
+     */
+    static String getKey(final String cvsRoot, final String remoteName, final CvsRepositoryLocationType locationType,
+                         final String locationName) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest((cvsRoot + '\n' + remoteName + '\n' + locationType + '\n'
+                    + (locationName == null ? "" : locationName)).getBytes(StandardCharsets.UTF_8));
+            return Util.toHexString(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Copies the reference into a module directory that doesn't exist yet.
+     * @return true if the module was seeded, false if there's no reference to seed from
+     */
+    boolean seed(final FilePath module, final String key) throws IOException, InterruptedException {
+        return module.act(new Seed(root.getRemote(), key, HARD_LINKS));
+    }
+
+    /**
+     * Replaces the reference with a copy of a freshly checked out module, then evicts the least recently used
+     * references until the cache fits its size limit. Failures are logged rather than failing the build.
+     */
+    void store(final FilePath module, final String key, final TaskListener listener) throws InterruptedException {
+        try {
+            module.act(new Store(root.getRemote(), key, HARD_LINKS, MAX_SIZE));
+        } catch (IOException ex) {
+            listener.getLogger().println("Could not update the reference workspace: " + ex.getMessage());
+        }
+    }
+
+    private static final class Seed extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = -3190538346108526719L;
+
+        private final String root;
+        private final String key;
+        private final boolean hardLinks;
+
+        private Seed(final String root, final String key, final boolean hardLinks) {
+            this.root = root;
+            this.key = key;
+            this.hardLinks = hardLinks;
+        }
+
+        @Override
+        public Boolean invoke(final File module, final VirtualChannel channel) throws IOException {
+            final Path reference = new File(root, key).toPath();
+            final ReadWriteLock lock = getLock(reference.toFile());
+            lock.readLock().lock();
+            try {
+                if (!Files.isDirectory(reference) || module.exists()) {
+                    return false;
+                }
+                try {
+                    copyTree(reference, module.toPath(), hardLinks);
+                } catch (IOException ex) {
+                    Util.deleteRecursive(module);
+                    throw ex;
+                }
+                Files.setLastModifiedTime(reference, FileTime.fromMillis(System.currentTimeMillis()));
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private static final class Store extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 5826270785401657614L;
+
+        private final String root;
+        private final String key;
+        private final boolean hardLinks;
+        private final long maxSize;
+
+        private Store(final String root, final String key, final boolean hardLinks, final long maxSize) {
+            this.root = root;
+            this.key = key;
+            this.hardLinks = hardLinks;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public Void invoke(final File module, final VirtualChannel channel) throws IOException {
+            final File cacheRoot = new File(root);
+            final File reference = new File(cacheRoot, key);
+            final File temporary = getTemporary(cacheRoot, key);
+            final File replaced = getTemporary(cacheRoot, key);
+
+            try {
+                // the copy is made under a name of its own, so only the swap needs to wait for readers
+                final long size = copyTree(module.toPath(), temporary.toPath(), hardLinks);
+                Files.write(new File(temporary, SIZE_FILE).toPath(),
+                        Long.toString(size).getBytes(StandardCharsets.UTF_8));
+
+                final ReadWriteLock lock = getLock(reference);
+                lock.writeLock().lock();
+                try {
+                    synchronized (LOCK) {
+                        if (reference.exists()) {
+                            Files.move(reference.toPath(), replaced.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                        }
+                        Files.move(temporary.toPath(), reference.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                        Files.setLastModifiedTime(reference.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                if (temporary.exists()) {
+                    Util.deleteRecursive(temporary);
+                }
+                if (replaced.exists()) {
+                    Util.deleteRecursive(replaced);
+                }
+            }
+
+            evict(cacheRoot, maxSize);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the least recently used references until the total size of those left is within the limit. A
+     * reference that's being copied into a workspace is skipped; it's just been used so it's kept anyway. Evicted
+     * references are renamed under the lock and deleted after it's released.
+     */
+    static void evict(final File cacheRoot, final long maxSize) throws IOException {
+        final List<File> evicted = new ArrayList<File>();
+        synchronized (LOCK) {
+            final File[] references = cacheRoot.listFiles();
+            if (references == null) {
+                return;
+            }
+
+            final List<File> candidates = new ArrayList<File>();
+            long totalSize = 0;
+            for (File reference : references) {
+                if (reference.isDirectory() && !reference.getName().contains(".tmp-")) {
+                    candidates.add(reference);
+                    totalSize += getSize(reference);
+                }
+            }
+
+            Collections.sort(candidates, new Comparator<File>() {
+                @Override
+                public int compare(final File left, final File right) {
+                    return Long.compare(left.lastModified(), right.lastModified());
+                }
+            });
+
+            for (File reference : candidates) {
+                if (totalSize <= maxSize) {
+                    break;
+                }
+                final ReadWriteLock lock = getLock(reference);
+                if (!lock.writeLock().tryLock()) {
+                    continue;
+                }
+                try {
+                    totalSize -= getSize(reference);
+                    final File renamed = getTemporary(cacheRoot, reference.getName());
+                    Files.move(reference.toPath(), renamed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    evicted.add(renamed);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        for (File reference : evicted) {
+            Util.deleteRecursive(reference);
+        }
+    }
+
+    static ReadWriteLock getLock(final File reference) {
+        final String path = reference.getAbsolutePath();
+        ReadWriteLock lock = REFERENCE_LOCKS.get(path);
+        if (lock == null) {
+            final ReadWriteLock created = new ReentrantReadWriteLock();
+            lock = REFERENCE_LOCKS.putIfAbsent(path, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * @return a name in the cache directory that eviction ignores and that no other executor will use
+     */
+    private static File getTemporary(final File cacheRoot, final String key) {
+        return new File(cacheRoot, key + ".tmp-" + UUID.randomUUID());
+    }
+
+    private static long getSize(final File reference) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(new File(reference, SIZE_FILE).toPath()),
+                    StandardCharsets.UTF_8).trim());
+        } catch (IOException ex) {
+            // incomplete, so it may as well be the first to go
+            return Long.MAX_VALUE / 2;
+        } catch (NumberFormatException ex) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+
+    /**
+     * Copies a directory tree, keeping modification times (CVS relies on them to spot locally modified files)
+     * and recreating symbolic links rather than following them.
+     * @return the total size of the regular files copied
+     */
+    static long copyTree(final Path source, final Path target, final boolean hardLinks) throws IOException {
+        final long[] size = new long[1];
+        Files.walkFileTree(source, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                final Path relative = source.relativize(file);
+                if (relative.toString().equals(SIZE_FILE)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                final Path copy = target.resolve(relative);
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(copy, Files.readSymbolicLink(file));
+                } else if (attrs.isRegularFile()) {
+                    if (!hardLinks || !link(copy, file)) {
+                        Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                    }
+                    size[0] += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.setLastModifiedTime(target.resolve(source.relativize(dir)), Files.getLastModifiedTime(dir));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    private static boolean link(final Path link, final Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (FileAlreadyExistsException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            // e.g. a different file system, so fall back to copying
+            return false;
+        } catch (UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+}
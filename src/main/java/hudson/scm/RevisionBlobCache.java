@@ -0,0 +1,507 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An agent-local store of checked out file revisions. Since a revision never changes once committed, a file
+ * checked out at a given revision (with the same keyword expansion) always has the same content, so a fresh
+ * checkout can put cached revisions in place along with CVS administration files recording those revisions,
+ * then run an update. The server sees those files as up to date and only sends the ones that weren't cached.
+ * <p>
+ * Revisions are added from the workspace as it's walked after each checkout, as long as the file still has the
+ * timestamp CVS recorded for it (i.e. it hasn't been merged with local changes). This is opt-in through the
+ * <tt>hudson.scm.RevisionBlobCache.enabled</tt> system property, and the least recently used revisions are
+ * removed once the cache goes over <tt>hudson.scm.RevisionBlobCache.maxSizeMb</tt>.
+ */
+final class RevisionBlobCache {
+
+    static final boolean ENABLED = Boolean.getBoolean(RevisionBlobCache.class.getName() + ".enabled");
+
+    static final long MAX_SIZE = Long.getLong(RevisionBlobCache.class.getName() + ".maxSizeMb", 2048L) * 1024 * 1024;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private static final String NAMESPACE_SUFFIX = ".namespace";
+
+    /**
+     * Stops one executor evicting revisions while another is copying them into a workspace.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * The total size of the revisions in each cache directory on this agent. Each one is counted by listing the
+     * cache the first time it's needed, then kept up to date as revisions are added, so eviction only has to list
+     * the cache once it's over its limit. Copies of a revision stored by two executors at once may both be
+     * counted, which only brings the next eviction forward; that eviction recounts the cache.
+     */
+    private static final ConcurrentMap<String, AtomicLong> SIZES = new ConcurrentHashMap<String, AtomicLong>();
+
+    private RevisionBlobCache() {
+    }
+
+    /**
+     * @return the directory the cache is kept in on the node holding the workspace, or null if the node
+     *          can't be found
+     */
+    static FilePath getRoot(final FilePath workspace) {
+        final Computer computer = workspace.toComputer();
+        final Node node = computer == null ? null : computer.getNode();
+        final FilePath nodeRoot = node == null ? null : node.getRootPath();
+        return nodeRoot == null ? null : nodeRoot.child("cvs-revisions");
+    }
+
+    /**
+     * The part of the key shared by every file checked out from a location. The location's name is included
+     * since it can be expanded into the file by the <tt>$Name$</tt> keyword.
+     */
+    static String getNamespace(final String cvsRoot, final CvsRepositoryLocationType locationType,
+                               final String locationName) {
+        return cvsRoot + '\n' + (locationType == CvsRepositoryLocationType.HEAD ? "" : locationName);
+    }
+
+    static String getKey(final String namespace, final String name, final String revision) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Util.toHexString(digest.digest((namespace + '\n' + name + '\n' + revision)
+                    .getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static File getBlob(final File root, final String key) {
+        return new File(new File(root, key.substring(0, 2)), key);
+    }
+
+    /**
+     * The name of the file in the cache directory that marks a namespace as having had revisions stored in it,
+     * so a checkout can tell whether it's worth listing its files to look for them in the cache.
+     */
+    static String getNamespaceMarker(final String namespace) {
+        return getKey(namespace, "", "") + NAMESPACE_SUFFIX;
+    }
+
+    /**
+     * Adds a checked out file to the cache if it isn't already there and hasn't been changed since CVS wrote it.
+     * @param target the cache to add to
+     * @param name the name of the file on the server, as held in a {@link CvsRevisionState}
+     * @param file the checked out file
+     * @param entry the file's line from <tt>CVS/Entries</tt>
+     * @throws IOException if the file could not be copied into the cache
+     */
+    static void store(final Target target, final String name, final File file, final EntryLine entry)
+            throws IOException {
+        if (!isPristine(file, entry.timestamp)) {
+            return;
+        }
+        final File root = new File(target.root);
+        final File blob = getBlob(root, getKey(target.namespace, name, entry.revision));
+        if (blob.exists()) {
+            blob.setLastModified(System.currentTimeMillis());
+            return;
+        }
+        // counted before the blob is added, so a first count that lists the cache doesn't include it already
+        final AtomicLong size = getSize(root);
+
+        final File directory = blob.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create " + directory);
+        }
+        final File temporaryBlob = File.createTempFile(blob.getName(), ".tmp", directory);
+        final File temporaryEntry = File.createTempFile(blob.getName(), ".tmp", directory);
+        try {
+            Files.copy(file.toPath(), temporaryBlob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.write(temporaryEntry.toPath(), (entry.timestamp + '\n' + entry.options + '\n' + file.lastModified())
+                    .getBytes(StandardCharsets.UTF_8));
+            // the entry goes in first, since the blob existing is what marks the revision as cached
+            Files.move(temporaryEntry.toPath(), new File(directory, blob.getName() + ENTRY_SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(temporaryBlob.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            size.addAndGet(blob.length());
+        } finally {
+            Files.deleteIfExists(temporaryBlob.toPath());
+            Files.deleteIfExists(temporaryEntry.toPath());
+        }
+
+        final File marker = new File(root, getNamespaceMarker(target.namespace));
+        if (!marker.exists()) {
+            Files.write(marker.toPath(), (target.namespace + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Whether the file's modification time matches the timestamp CVS recorded for it, which is how CVS itself
+     * decides a file hasn't been modified.
+     */
+    static boolean isPristine(final File file, final String timestamp) {
+        final SimpleDateFormat format = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        try {
+            return format.parse(timestamp.trim().replaceAll(" +", " ")).getTime() / 1000
+                    == file.lastModified() / 1000;
+        } catch (ParseException ex) {
+            // e.g. "Result of merge"
+            return false;
+        }
+    }
+
+    /**
+     * Removes the least recently used revisions until the cache is within its size limit. The cache is only
+     * listed when its tracked size is over the limit.
+     */
+    static void evict(final Target target) throws IOException {
+        final File root = new File(target.root);
+        final AtomicLong size = getSize(root);
+        if (size.get() <= target.maxSize) {
+            return;
+        }
+
+        synchronized (LOCK) {
+            final List<File> blobs = new ArrayList<File>();
+            long totalSize = listBlobs(root, blobs);
+            if (totalSize > target.maxSize) {
+                Collections.sort(blobs, new Comparator<File>() {
+                    @Override
+                    public int compare(final File left, final File right) {
+                        return Long.compare(left.lastModified(), right.lastModified());
+                    }
+                });
+                for (File blob : blobs) {
+                    if (totalSize <= target.maxSize) {
+                        break;
+                    }
+                    totalSize -= blob.length();
+                    Files.deleteIfExists(blob.toPath());
+                    Files.deleteIfExists(new File(blob.getParentFile(), blob.getName() + ENTRY_SUFFIX).toPath());
+                }
+            }
+            size.set(totalSize);
+        }
+    }
+
+    /**
+     * Gets the tracked size of the revisions in a cache directory, listing the directory to count them the first
+     * time it's asked for.
+     */
+    static AtomicLong getSize(final File root) {
+        final String path = root.getAbsolutePath();
+        AtomicLong size = SIZES.get(path);
+        if (size == null) {
+            synchronized (LOCK) {
+                size = SIZES.get(path);
+                if (size == null) {
+                    size = new AtomicLong(listBlobs(root, null));
+                    SIZES.put(path, size);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Lists the cached revisions, skipping their entry files, files still being written and namespace markers.
+     * @param blobs where to add the revisions found, or null if only their size is needed
+     * @return the total size of the revisions
+     */
+    private static long listBlobs(final File root, final List<File> blobs) {
+        final File[] directories = root.listFiles();
+        if (directories == null) {
+            return 0;
+        }
+
+        long totalSize = 0;
+        for (File directory : directories) {
+            final File[] files = directory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (!file.getName().endsWith(ENTRY_SUFFIX) && !file.getName().endsWith(".tmp")) {
+                    if (blobs != null) {
+                        blobs.add(file);
+                    }
+                    totalSize += file.length();
+                }
+            }
+        }
+        return totalSize;
+    }
+
+    /**
+     * Reads the file entries of a directory's <tt>CVS/Entries</tt>.
+     * @return the entries keyed by file name
+     */
+    static Map<String, EntryLine> readEntries(final File directory) throws IOException {
+        final Map<String, EntryLine> entries = new HashMap<String, EntryLine>();
+        final File entriesFile = new File(directory, "CVS/Entries");
+        if (!entriesFile.isFile()) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(entriesFile.toPath(), StandardCharsets.ISO_8859_1)) {
+            final EntryLine entry = EntryLine.parse(line);
+            if (entry != null) {
+                entries.put(entry.name, entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Where to cache revisions from a location, passed to the agent with each module being walked.
+     */
+    static final class Target implements Serializable {
+
+        private static final long serialVersionUID = -5716930880463180114L;
+
+        private final String root;
+        private final String namespace;
+        private final long maxSize;
+
+        Target(final String root, final String namespace, final long maxSize) {
+            this.root = root;
+            this.namespace = namespace;
+            this.maxSize = maxSize;
+        }
+
+        String getRoot() {
+            return root;
+        }
+    }
+
+    /**
+     * A file entry from <tt>CVS/Entries</tt>: <tt>/name/revision/timestamp/options/sticky</tt>.
+     */
+    static final class EntryLine {
+
+        private final String name;
+        private final String revision;
+        private final String timestamp;
+        private final String options;
+
+        private EntryLine(final String name, final String revision, final String timestamp, final String options) {
+            this.name = name;
+            this.revision = revision;
+            this.timestamp = timestamp;
+            this.options = options;
+        }
+
+        /**
+         * @return the entry, or null for directory entries, removed or added files, and anything unparseable
+         */
+        static EntryLine parse(final String line) {
+            if (!line.startsWith("/")) {
+                return null;
+            }
+            final String[] fields = line.split("/", -1);
+            if (fields.length != 6 || fields[2].isEmpty() || fields[2].startsWith("-") || "0".equals(fields[2])) {
+                return null;
+            }
+            return new EntryLine(fields[1], fields[2], fields[3], fields[4]);
+        }
+    }
+
+    /**
+     * Puts the cached revisions of a module's files into a module directory that doesn't exist yet, along with
+     * the CVS administration files an update needs to treat them as checked out.
+     */
+    static final class Materialize extends MasterToSlaveFileCallable<Integer> {
+
+        private static final long serialVersionUID = 8170351794567706582L;
+
+        private final String root;
+        private final String namespace;
+        private final String cvsRoot;
+        private final String remoteName;
+        private final String sticky;
+        private final Map<String, String> files;
+
+        /**
+         * @param root the cache directory on the agent
+         * @param namespace the namespace returned by {@link #getNamespace} for the location
+         * @param cvsRoot the expanded CVSROOT the module is checked out from
+         * @param remoteName the expanded name of the module on the server
+         * @param sticky the sticky tag to record for each file (e.g. <tt>Tbranch</tt>), or an empty string
+         * @param files the revision of each live file, keyed by path within the module
+         */
+        Materialize(final String root, final String namespace, final String cvsRoot, final String remoteName,
+                    final String sticky, final Map<String, String> files) {
+            this.root = root;
+            this.namespace = namespace;
+            this.cvsRoot = cvsRoot;
+            this.remoteName = remoteName;
+            this.sticky = sticky;
+            this.files = files;
+        }
+
+        /**
+         * @return the number of files taken from the cache; the module directory is not created if this is 0
+         */
+        @Override
+        public Integer invoke(final File module, final VirtualChannel channel) throws IOException {
+            if (module.exists()) {
+                return 0;
+            }
+
+            final Map<String, List<String>> entriesByDirectory = new TreeMap<String, List<String>>();
+            synchronized (LOCK) {
+                try {
+                    for (Map.Entry<String, String> file : files.entrySet()) {
+                        final String path = file.getKey();
+                        final File blob = getBlob(new File(root), getKey(namespace, remoteName + "/" + path, file.getValue()));
+                        final File entryFile = new File(blob.getParentFile(), blob.getName() + ENTRY_SUFFIX);
+                        if (!blob.isFile() || !entryFile.isFile()) {
+                            continue;
+                        }
+
+                        final List<String> entry = Files.readAllLines(entryFile.toPath(), StandardCharsets.UTF_8);
+                        final File target = new File(module, path);
+                        final File parent = target.getParentFile();
+                        if (!parent.isDirectory() && !parent.mkdirs()) {
+                            throw new IOException("Could not create " + parent);
+                        }
+                        Files.copy(blob.toPath(), target.toPath());
+                        if (!target.setLastModified(Long.parseLong(entry.get(2)))) {
+                            throw new IOException("Could not set the modification time of " + target);
+                        }
+                        blob.setLastModified(System.currentTimeMillis());
+
+                        final int lastSlash = path.lastIndexOf('/');
+                        final String directory = lastSlash == -1 ? "" : path.substring(0, lastSlash);
+                        List<String> entries = entriesByDirectory.get(directory);
+                        if (entries == null) {
+                            entries = new ArrayList<String>();
+                            entriesByDirectory.put(directory, entries);
+                        }
+                        entries.add("/" + target.getName() + "/" + file.getValue() + "/" + entry.get(0) + "/"
+                                + entry.get(1) + "/" + sticky);
+                    }
+                } catch (IOException ex) {
+                    Util.deleteRecursive(module);
+                    throw ex;
+                } catch (RuntimeException ex) {
+                    // a damaged entry file
+                    Util.deleteRecursive(module);
+                    throw new IOException("Could not read the revision cache", ex);
+                }
+            }
+
+            if (entriesByDirectory.isEmpty()) {
+                return 0;
+            }
+            writeAdministrationFiles(module, entriesByDirectory);
+
+            int count = 0;
+            for (List<String> entries : entriesByDirectory.values()) {
+                count += entries.size();
+            }
+            return count;
+        }
+
+        private void writeAdministrationFiles(final File module, final Map<String, List<String>> entriesByDirectory)
+                throws IOException {
+            // every directory between the module and a restored file needs to be under CVS control too
+            final Map<String, TreeSet<String>> subdirectories = new TreeMap<String, TreeSet<String>>();
+            for (String directory : entriesByDirectory.keySet()) {
+                String child = directory;
+                while (!child.isEmpty()) {
+                    final int lastSlash = child.lastIndexOf('/');
+                    final String parent = lastSlash == -1 ? "" : child.substring(0, lastSlash);
+                    TreeSet<String> children = subdirectories.get(parent);
+                    if (children == null) {
+                        children = new TreeSet<String>();
+                        subdirectories.put(parent, children);
+                    }
+                    children.add(child.substring(lastSlash + 1));
+                    child = parent;
+                }
+            }
+
+            final TreeSet<String> directories = new TreeSet<String>(entriesByDirectory.keySet());
+            directories.addAll(subdirectories.keySet());
+            for (String directory : directories) {
+                final File adminDirectory = new File(directory.isEmpty() ? module : new File(module, directory), "CVS");
+                if (!adminDirectory.isDirectory() && !adminDirectory.mkdirs()) {
+                    throw new IOException("Could not create " + adminDirectory);
+                }
+
+                final StringBuilder entries = new StringBuilder();
+                final List<String> fileEntries = entriesByDirectory.get(directory);
+                if (fileEntries != null) {
+                    for (String entry : fileEntries) {
+                        entries.append(entry).append('\n');
+                    }
+                }
+                final TreeSet<String> children = subdirectories.get(directory);
+                if (children != null) {
+                    for (String child : children) {
+                        entries.append("D/").append(child).append("////\n");
+                    }
+                }
+
+                write(new File(adminDirectory, "Root"), cvsRoot + '\n');
+                write(new File(adminDirectory, "Repository"),
+                        (directory.isEmpty() ? remoteName : remoteName + "/" + directory) + '\n');
+                write(new File(adminDirectory, "Entries"), entries.toString());
+            }
+        }
+
+        private static void write(final File file, final String contents) throws IOException {
+            Files.write(file.toPath(), contents.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+}
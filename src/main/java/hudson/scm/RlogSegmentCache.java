@@ -0,0 +1,501 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.Util;
+import hudson.scm.CVSChangeLogSet.CVSChangeLog;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of parsed rlog output for each module and location, split into fixed time buckets. Once a bucket is
+ * far enough in the past no new commits can be dated in it, so what rlog lists for it never changes and it can
+ * be shared by every poll and changelog that covers it. A request for the changes in a date range is put
+ * together from the cached buckets it covers, with any missing run of closed buckets fetched in a single rlog
+ * and cached, and only the still open tail fetched every time.
+ * <p>
+ * Buckets are <tt>hudson.scm.RlogSegmentCache.bucketMinutes</tt> long (60 by default) and are treated as
+ * closed <tt>hudson.scm.RlogSegmentCache.settleMinutes</tt> (30 by default) after they end, to allow for server
+ * clock skew and commits that take a while to go through. The most recently used buckets are held in memory
+ * and all of them on disk under <tt>cvs-rlog</tt> in the Jenkins home directory, with the least recently used
+ * removed once that goes over <tt>hudson.scm.RlogSegmentCache.maxSizeMb</tt>. This is opt-in through the
+ * <tt>hudson.scm.RlogSegmentCache.enabled</tt> system property.
+ */
+final class RlogSegmentCache {
+
+    private static final Logger LOGGER = Logger.getLogger(RlogSegmentCache.class.getName());
+
+    private static final String PREFIX = RlogSegmentCache.class.getName();
+
+    static final boolean ENABLED = Boolean.getBoolean(PREFIX + ".enabled");
+
+    private static final long BUCKET_SIZE = Math.max(1, Long.getLong(PREFIX + ".bucketMinutes", 60L)) * 60 * 1000;
+
+    private static final long SETTLE_TIME = Math.max(0, Long.getLong(PREFIX + ".settleMinutes", 30L)) * 60 * 1000;
+
+    private static final long MAX_SIZE = Long.getLong(PREFIX + ".maxSizeMb", 256L) * 1024 * 1024;
+
+    private static final int MEMORY_SEGMENTS = Math.max(0, Integer.getInteger(PREFIX + ".memorySegments", 2000));
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static RlogSegmentCache instance;
+
+    private final File root;
+    private final long bucketSize;
+    private final long settleTime;
+    private final long maxSize;
+    private final Map<String, Segment> memory;
+
+    RlogSegmentCache(final File root, final long bucketSize, final long settleTime, final long maxSize,
+                     final int memorySegments) {
+        this.root = root;
+        this.bucketSize = bucketSize;
+        this.settleTime = settleTime;
+        this.maxSize = maxSize;
+        this.memory = new LinkedHashMap<String, Segment>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2251361097623519408L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Segment> eldest) {
+                return size() > memorySegments;
+            }
+        };
+    }
+
+    static synchronized RlogSegmentCache get() {
+        if (instance == null) {
+            instance = new RlogSegmentCache(new File(Jenkins.get().getRootDir(), "cvs-rlog"), BUCKET_SIZE,
+                    SETTLE_TIME, MAX_SIZE, MEMORY_SEGMENTS);
+        }
+        return instance;
+    }
+
+    /**
+     * Everything that affects what's parsed from a module's rlog output, other than the dates.
+     */
+    static String getKey(final String cvsRoot, final String module, final CvsRepositoryLocationType locationType,
+                         final String locationName, final String encoding) {
+        return cvsRoot + '\n' + module + '\n' + locationType + '\n'
+                + (locationType == CvsRepositoryLocationType.HEAD ? "" : locationName) + '\n' + encoding;
+    }
+
+    /**
+     * Runs rlog for a date range. An inclusive range lists revisions dated at either end, an exclusive one
+     * doesn't, in the same way as <tt>start&lt;=end</tt> and <tt>start&lt;end</tt> in rlog's date filter.
+     */
+    interface Fetcher {
+        CvsChangeSet fetch(Date start, Date end, boolean inclusive) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Lists the changes between two dates, exclusive of both, as rlog would.
+     * @param key the module and location, from {@link #getKey}
+     * @param repository the repository to record against each change
+     * @param fetcher runs rlog for anything that isn't cached
+     */
+    CvsChangeSet getChanges(final String key, final Date start, final Date end, final CvsRepository repository,
+                            final Fetcher fetcher) throws IOException, InterruptedException {
+        return getChanges(key, start, end, repository, fetcher, System.currentTimeMillis());
+    }
+
+    CvsChangeSet getChanges(final String key, final Date start, final Date end, final CvsRepository repository,
+                            final Fetcher fetcher, final long now) throws IOException, InterruptedException {
+        // rlog only works to the second
+        final long startTime = start.getTime() / 1000 * 1000;
+        final long endTime = end.getTime() / 1000 * 1000;
+        final long firstBucket = floor(startTime);
+        final long closedBuckets = Math.min(floor(now - settleTime), floor(endTime - 1000) + bucketSize);
+        if (firstBucket >= closedBuckets) {
+            // too recent for anything to be cached
+            return fetcher.fetch(start, end, false);
+        }
+
+        final List<Segment> segments = new ArrayList<Segment>();
+        int lineCount = 0;
+        long connectTime = 0;
+        boolean stored = false;
+
+        long missingFrom = -1;
+        for (long bucket = firstBucket; bucket <= closedBuckets; bucket += bucketSize) {
+            final Segment segment = bucket == closedBuckets ? null : load(key, bucket);
+            if (segment == null && bucket < closedBuckets) {
+                if (missingFrom == -1) {
+                    missingFrom = bucket;
+                }
+                continue;
+            }
+            if (missingFrom != -1) {
+                // one rlog for the whole run of missing buckets, split up to cache each one
+                final CvsChangeSet changeSet = fetcher.fetch(new Date(missingFrom), new Date(bucket - 1000), true);
+                lineCount += changeSet.getLineCount();
+                connectTime += changeSet.getConnectTime();
+                final List<Segment> fetched = split(Segment.of(changeSet.getChanges()), missingFrom, bucket);
+                for (int i = 0; i < fetched.size(); i++) {
+                    store(key, missingFrom + i * bucketSize, fetched.get(i));
+                }
+                segments.addAll(fetched);
+                stored = true;
+                missingFrom = -1;
+            }
+            if (segment != null) {
+                segments.add(segment);
+            }
+        }
+
+        if (endTime > closedBuckets) {
+            // the open tail, from the end of the last closed bucket
+            final CvsChangeSet tail = fetcher.fetch(new Date(closedBuckets - 1000), end, false);
+            lineCount += tail.getLineCount();
+            connectTime += tail.getConnectTime();
+            segments.add(Segment.of(tail.getChanges()));
+        }
+
+        if (stored) {
+            evict();
+        }
+
+        final CvsChangeSet changeSet = assemble(segments, startTime, endTime, repository, lineCount);
+        changeSet.setConnectTime(connectTime);
+        return changeSet;
+    }
+
+    private long floor(final long time) {
+        return time - Math.floorMod(time, bucketSize);
+    }
+
+    /**
+     * Divides changes fetched for a run of buckets into a segment for each bucket.
+     */
+    private List<Segment> split(final Segment segment, final long from, final long to) {
+        final List<Segment> segments = new ArrayList<Segment>();
+        for (long bucket = from; bucket < to; bucket += bucketSize) {
+            final List<Change> changes = new ArrayList<Change>();
+            for (Change change : segment.changes) {
+                if (change.date >= bucket && change.date < bucket + bucketSize) {
+                    changes.add(change);
+                }
+            }
+            segments.add(new Segment(changes));
+        }
+        return segments;
+    }
+
+    private static CvsChangeSet assemble(final List<Segment> segments, final long start, final long end,
+                                         final CvsRepository repository, final int lineCount) {
+        final List<CVSChangeLog> changes = new ArrayList<CVSChangeLog>();
+        final Map<String, CvsFile> files = new HashMap<String, CvsFile>();
+        for (Segment segment : segments) {
+            for (Change change : segment.changes) {
+                if (change.date <= start || change.date >= end) {
+                    continue;
+                }
+                final CVSChangeLog log = new CVSChangeLog();
+                log.setChangeDate(new Date(change.date));
+                log.setUser(change.user);
+                log.setMsg(change.msg);
+                log.setRepository(repository);
+                for (FileRevision revision : change.files) {
+                    final CVSChangeLogSet.File file = new CVSChangeLogSet.File();
+                    file.setName(revision.name);
+                    file.setFullName(revision.fullName);
+                    file.setRevision(revision.revision);
+                    file.setPrevrevision(revision.prevrevision);
+                    file.setDead(revision.dead);
+                    log.addFile(file);
+                    // segments and the changes in them are in date order, so the latest revision goes in last
+                    files.put(revision.fullName, CvsFile.make(revision.fullName, revision.revision, revision.dead));
+                }
+                changes.add(log);
+            }
+        }
+        return new CvsChangeSet(new ArrayList<CvsFile>(files.values()), changes, new TreeSet<String>(),
+                new TreeSet<String>(), lineCount);
+    }
+
+    private Segment load(final String key, final long bucket) {
+        final String memoryKey = key + '\n' + bucket;
+        synchronized (memory) {
+            final Segment segment = memory.get(memoryKey);
+            if (segment != null) {
+                return segment;
+            }
+        }
+        final File file = getFile(key, bucket);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final Segment segment;
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                segment = Segment.read(input);
+            } finally {
+                input.close();
+            }
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (memory) {
+                memory.put(memoryKey, segment);
+            }
+            return segment;
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Discarding unreadable rlog segment " + file, ex);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void store(final String key, final long bucket, final Segment segment) {
+        synchronized (memory) {
+            memory.put(key + '\n' + bucket, segment);
+        }
+        final File file = getFile(key, bucket);
+        try {
+            final File directory = file.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException("Could not create " + directory);
+            }
+            final File temporaryFile = File.createTempFile(file.getName(), ".tmp", directory);
+            try {
+                final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(temporaryFile)));
+                try {
+                    segment.write(output);
+                } finally {
+                    output.close();
+                }
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temporaryFile.delete();
+            }
+        } catch (IOException ex) {
+            // it's still held in memory, and can always be fetched again
+            LOGGER.log(Level.WARNING, "Could not save rlog segment " + file, ex);
+        }
+    }
+
+    private File getFile(final String key, final long bucket) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new File(new File(root, Util.toHexString(digest.digest(key.getBytes(StandardCharsets.UTF_8)))),
+                    Long.toString(bucket));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Removes the least recently used segments from disk until the cache is within its size limit.
+     */
+    synchronized void evict() {
+        final File[] modules = root.listFiles();
+        if (modules == null) {
+            return;
+        }
+        final List<File> files = new ArrayList<File>();
+        long size = 0;
+        for (File module : modules) {
+            final File[] segments = module.listFiles();
+            if (segments != null) {
+                for (File segment : segments) {
+                    files.add(segment);
+                    size += segment.length();
+                }
+            }
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        final Map<File, Long> lastModified = new HashMap<File, Long>();
+        for (File file : files) {
+            lastModified.put(file, file.lastModified());
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File first, final File second) {
+                return Long.compare(lastModified.get(first), lastModified.get(second));
+            }
+        });
+        for (File file : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            final long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * The changes from one bucket, in date order. Kept separately from the {@link CVSChangeLog}s they're made
+     * from since those get tied to the build whose changelog they're put in.
+     */
+    static final class Segment {
+
+        private final List<Change> changes;
+
+        private Segment(final List<Change> changes) {
+            this.changes = changes;
+        }
+
+        static Segment of(final List<CVSChangeLog> logs) {
+            final List<Change> changes = new ArrayList<Change>();
+            for (CVSChangeLog log : logs) {
+                final List<FileRevision> files = new ArrayList<FileRevision>();
+                for (CVSChangeLogSet.File file : log.getFiles()) {
+                    files.add(new FileRevision(file.getName(), file.getFullName(), file.getRevision(),
+                            file.getPrevrevision(), file.isDead()));
+                }
+                changes.add(new Change(log.getChangeDate().getTime(), log.getUser(), log.getMsg(), files));
+            }
+            Collections.sort(changes, new Comparator<Change>() {
+                @Override
+                public int compare(final Change first, final Change second) {
+                    return Long.compare(first.date, second.date);
+                }
+            });
+            return new Segment(changes);
+        }
+
+        void write(final DataOutputStream output) throws IOException {
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(changes.size());
+            for (Change change : changes) {
+                output.writeLong(change.date);
+                writeString(output, change.user);
+                writeString(output, change.msg);
+                output.writeInt(change.files.size());
+                for (FileRevision file : change.files) {
+                    writeString(output, file.name);
+                    writeString(output, file.fullName);
+                    writeString(output, file.revision);
+                    writeString(output, file.prevrevision);
+                    output.writeBoolean(file.dead);
+                }
+            }
+        }
+
+        static Segment read(final DataInputStream input) throws IOException {
+            if (input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown rlog segment format");
+            }
+            final int changeCount = input.readInt();
+            final List<Change> changes = new ArrayList<Change>(changeCount);
+            for (int i = 0; i < changeCount; i++) {
+                final long date = input.readLong();
+                final String user = readString(input);
+                final String msg = readString(input);
+                final int fileCount = input.readInt();
+                final List<FileRevision> files = new ArrayList<FileRevision>(fileCount);
+                for (int j = 0; j < fileCount; j++) {
+                    files.add(new FileRevision(readString(input), readString(input), readString(input),
+                            readString(input), input.readBoolean()));
+                }
+                changes.add(new Change(date, user, msg, files));
+            }
+            return new Segment(changes);
+        }
+
+        private static void writeString(final DataOutputStream output, final String value) throws IOException {
+            if (value == null) {
+                output.writeInt(-1);
+                return;
+            }
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        private static String readString(final DataInputStream input) throws IOException {
+            final int length = input.readInt();
+            if (length == -1) {
+                return null;
+            }
+            final byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Change {
+
+        private final long date;
+        private final String user;
+        private final String msg;
+        private final List<FileRevision> files;
+
+        private Change(final long date, final String user, final String msg, final List<FileRevision> files) {
+            this.date = date;
+            this.user = user;
+            this.msg = msg;
+            this.files = files;
+        }
+    }
+
+    private static final class FileRevision {
+
+        private final String name;
+        private final String fullName;
+        private final String revision;
+        private final String prevrevision;
+        private final boolean dead;
+
+        private FileRevision(final String name, final String fullName, final String revision,
+                             final String prevrevision, final boolean dead) {
+            this.name = name;
+            this.fullName = fullName;
+            this.revision = revision;
+            this.prevrevision = prevrevision;
+            this.dead = dead;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Support for updating only the files that rlog shows as changed since the previous build, rather than having
+ * the server examine every file in the module. This is opt-in through the <tt>hudson.scm.TargetedUpdate.enabled</tt>
+ * system property, and a full recursive update is still run every
+ * <tt>hudson.scm.TargetedUpdate.fullUpdateInterval</tt> builds so local damage to the workspace gets repaired.
+ */
+final class TargetedUpdate {
+
+    static final boolean ENABLED = Boolean.getBoolean(TargetedUpdate.class.getName() + ".enabled");
+
+    /**
+     * Every build whose number is a multiple of this runs a full update. 1 means every build does.
+     */
+    static final int FULL_UPDATE_INTERVAL = Math.max(1, Integer.getInteger(TargetedUpdate.class.getName() + ".fullUpdateInterval", 10));
+
+    private TargetedUpdate() {
+    }
+
+    /**
+     * Converts the files listed by rlog into paths relative to the module's checkout directory.
+     * @param changedFiles the files from rlog, named by their full path in the repository
+     * @param rootName the path to the repository root on the server
+     * @param remoteName the expanded name of the module on the server
+     * @return the changed paths in the module, sorted and without duplicates, or null if any of the files isn't
+     *          inside the module directory (e.g. because the module is an alias)
+     */
+    static String[] getModuleFiles(final Collection<CvsFile> changedFiles, final String rootName,
+                                   final String remoteName) {
+        final String modulePrefix = rootName + "/" + trimSlashes(remoteName) + "/";
+        final Set<String> paths = new TreeSet<String>();
+        for (CvsFile file : changedFiles) {
+            final String name = removeAttic(file.getName());
+            if (!name.startsWith(modulePrefix) || name.length() == modulePrefix.length()) {
+                return null;
+            }
+            paths.add(name.substring(modulePrefix.length()));
+        }
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    /**
+     * Removes the <tt>Attic</tt> directory that dead files on the trunk are moved into on the server.
+     */
+    static String removeAttic(final String name) {
+        final int atticIndex = name.lastIndexOf("/Attic/");
+        if (atticIndex != -1 && name.indexOf('/', atticIndex + 7) == -1) {
+            return name.substring(0, atticIndex) + name.substring(atticIndex + 6);
+        }
+        return name;
+    }
+
+    private static String trimSlashes(final String name) {
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        return name.substring(start, end);
+    }
+
+    /**
+     * Checks that the directory every changed file is in is already checked out. CVS can only update a file in a
+     * directory it knows about, so a change in a new (or pruned) directory needs a full update.
+     */
+    static final class DirectoriesPresent extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = 2265734213874391557L;
+
+        private final String[] files;
+
+        DirectoriesPresent(final String[] files) {
+            this.files = files;
+        }
+
+        @Override
+        public Boolean invoke(final File module, final VirtualChannel channel) throws IOException {
+            final Set<String> checked = new HashSet<String>();
+            for (String file : files) {
+                final int lastSlash = file.lastIndexOf('/');
+                final String directory = lastSlash == -1 ? "" : file.substring(0, lastSlash);
+                if (checked.add(directory) && !new File(module, directory.isEmpty() ? "CVS/Entries"
+                        : directory + "/CVS/Entries").isFile()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
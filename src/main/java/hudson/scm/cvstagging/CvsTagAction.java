@@ -30,6 +30,8 @@ import hudson.scm.CVSSCM;
 import hudson.scm.CvsRevisionState;
 import hudson.scm.SCM;
 import hudson.scm.cvs.Messages;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.security.Permission;
 import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
@@ -43,6 +45,7 @@ import org.kohsuke.stapler.interceptor.RequirePOST;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +56,7 @@ public class CvsTagAction extends AbstractScmTagAction implements Describable<Cv
 
     private final List<String> tagNames = new ArrayList<String>();
     private final AbstractCvs parentScm;
+    private transient volatile List<CvsTagActionWorker> submittedWorkers = Collections.emptyList();
 
     @Deprecated
     private transient CVSSCM parent;
@@ -99,7 +103,7 @@ public class CvsTagAction extends AbstractScmTagAction implements Describable<Cv
     }
 
     @Exported
-    public String[] getTagNames() {
+    public synchronized String[] getTagNames() {
         return tagNames.toArray(new String[tagNames.size()]);
     }
     
@@ -108,19 +112,29 @@ public class CvsTagAction extends AbstractScmTagAction implements Describable<Cv
     }
 
 	@RequirePOST
-    public synchronized void doSubmit(final StaplerRequest2 request, final StaplerResponse2 response) throws IOException,
+    public void doSubmit(final StaplerRequest2 request, final StaplerResponse2 response) throws IOException,
                     ServletException {
         // check the user is allowed to tag
         getBuild().checkPermission(getPermission());
 
+        if (isTagging()) {
+            sendError(Messages.CVSSCM_TaggingInProgress());
+            return;
+        }
+
         // get the user supplied tag name and check it's ok
         final String tagName = fixNull(request.getParameter("name")).trim();
         final boolean createBranch = Boolean.parseBoolean(request.getParameter("createBranch"));
         if (!checkTagName(tagName)) {
             sendError(Messages.CVSSCM_TagNameInvalid(Messages.CVSSCM_Tag()));
+            return;
         }
         final boolean moveTag = Boolean.parseBoolean(request.getParameter("moveTag"));
 
+        // validate every request before queuing any tagging so a bad upstream tag name doesn't leave
+        // some builds tagged and others not
+        final List<CvsTagActionWorker> upstreamWorkers = new ArrayList<CvsTagActionWorker>();
+
         // handle upstream tagging
         if (null != request.getParameter("upstream")) {
             @SuppressWarnings("unchecked")
@@ -130,37 +144,119 @@ public class CvsTagAction extends AbstractScmTagAction implements Describable<Cv
                 boolean upstreamCreateBranch = Boolean.parseBoolean(request.getParameter("upstream-createBranch." + project.getName()));
                 if (!checkTagName(upstreamTagName)) {
                     sendError(Messages.CVSSCM_TagNameInvalid(Messages.CVSSCM_Tag()));
+                    return;
                 }
                 boolean upstreamMoveTag = Boolean.parseBoolean(request.getParameter("upstream-moveTag." + project.getName()));
                 CvsTagAction action = project.getBuildByNumber(upstream.get(project)).getAction(CvsTagAction.class);
-                if (null != action) {
-                    action.perform(upstreamTagName, upstreamCreateBranch, upstreamMoveTag);
+                if (null != action && !action.isTagging()) {
+                    CvsTagActionWorker worker = action.createWorker(upstreamTagName, upstreamCreateBranch, upstreamMoveTag);
+                    if (null != worker) {
+                        upstreamWorkers.add(worker);
+                    }
                 }
             }
         }
 
-        perform(tagName, createBranch, moveTag);
+        final List<CvsTagActionWorker> workers = new ArrayList<CvsTagActionWorker>();
+        CvsTagActionWorker worker = createWorker(tagName, createBranch, moveTag);
+        if (null != worker) {
+            if (!startIfIdle(worker)) {
+                sendError(Messages.CVSSCM_TaggingInProgress());
+                return;
+            }
+            workers.add(worker);
+        }
+
+        // an upstream build that another request has started tagging in the meantime is left to that request
+        for (CvsTagActionWorker upstreamWorker : upstreamWorkers) {
+            if (upstreamWorker.getAction().startIfIdle(upstreamWorker)) {
+                workers.add(upstreamWorker);
+            }
+        }
+        submittedWorkers = workers;
 
-        doIndex(request, response);
+        response.sendRedirect("progress");
     }
 
+    /**
+     * Starts tagging this build in the background. The tag is recorded against this action once the
+     * tagging has completed successfully.
+     */
     public void perform(final String tagName, boolean createTag, boolean moveTag) throws IOException {
+        CvsTagActionWorker worker = createWorker(tagName, createTag, moveTag);
+        if (null != worker) {
+            startIfIdle(worker);
+        }
+    }
+
+    /**
+     * Starts a worker unless this build is already being tagged. The check and the start are made under the
+     * action's lock so two requests can't both start tagging the same build.
+     * @return false if the build was already being tagged, in which case the worker isn't started
+     */
+    synchronized boolean startIfIdle(final CvsTagActionWorker worker) {
+        if (isTagging()) {
+            return false;
+        }
+        workerThread = worker;
+        worker.start();
+        return true;
+    }
+
+    private CvsTagActionWorker createWorker(final String tagName, final boolean createTag, final boolean moveTag) {
         CvsRevisionState state = getBuild().getAction(CvsRevisionState.class);
 
         if (state == null) {
-            return;
+            return null;
         }
 
-        CvsTagActionWorker worker = new CvsTagActionWorker(state, tagName, createTag, getBuild(), this, moveTag);
-        worker.start();
-        if (worker.isSuccess()) {
-            if (getBuild().hasPermission(Permission.UPDATE)) {
+        // permissions have to be checked here since the worker won't run as the requesting user
+        return new CvsTagActionWorker(state, tagName, createTag, getBuild(), this, moveTag,
+                getBuild().hasPermission(Permission.UPDATE));
+    }
+
+    /**
+     * Records a tag once a worker has successfully applied it.
+     */
+    void onTagCompleted(final String tagName, final boolean keepLog) throws IOException {
+        if (keepLog) {
+            // the worker runs as anonymous, but the requesting user's permission was checked in createWorker
+            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
                 getBuild().keepLog(true);
             }
-            synchronized (this) {
-                tagNames.add(tagName);
+        }
+        synchronized (this) {
+            tagNames.add(tagName);
+        }
+        getBuild().save();
+    }
+
+    /**
+     * @return whether a tagging worker is currently running against this build
+     */
+    public boolean isTagging() {
+        return workerThread != null && workerThread.isAlive();
+    }
+
+    /**
+     * @return the tagging jobs started by the last tag request submitted on this build, including
+     * any upstream builds
+     */
+    public List<CvsTagActionWorker> getSubmittedWorkers() {
+        return submittedWorkers;
+    }
+
+    /**
+     * @return whether any of the tagging jobs from the last tag request submitted on this build are still running
+     */
+    public boolean isSubmissionRunning() {
+        for (CvsTagActionWorker worker : submittedWorkers) {
+            if (worker.getStatus() == CvsTagActionWorker.Status.QUEUED
+                    || worker.getStatus() == CvsTagActionWorker.Status.RUNNING) {
+                return true;
             }
         }
+        return false;
     }
 
     public FormValidation doCheckTag(@QueryParameter final String value) {
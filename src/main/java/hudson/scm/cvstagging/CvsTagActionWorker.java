@@ -1,39 +1,55 @@
 package hudson.scm.cvstagging;
 
+import hudson.AbortException;
+import hudson.EnvVars;
 import hudson.model.AbstractBuild;
 import hudson.model.TaskListener;
 import hudson.model.TaskThread;
 import hudson.scm.AbstractCvs;
-import hudson.scm.CvsFile;
+import hudson.scm.CvsMetrics;
 import hudson.scm.CvsRepository;
 import hudson.scm.CvsRevisionState;
-import org.netbeans.lib.cvsclient.Client;
-import org.netbeans.lib.cvsclient.command.CommandAbortedException;
+import hudson.scm.cvs.Messages;
 import org.netbeans.lib.cvsclient.command.CommandException;
-import org.netbeans.lib.cvsclient.command.GlobalOptions;
-import org.netbeans.lib.cvsclient.command.tag.RtagCommand;
-import org.netbeans.lib.cvsclient.commandLine.BasicListener;
 import org.netbeans.lib.cvsclient.connection.AuthenticationException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 public class CvsTagActionWorker extends TaskThread {
 
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
     private final CvsRevisionState revisionState;
     private final String tagName;
     private final AbstractBuild<?, ?> build;
     private final CvsTagAction parent;
     private final boolean createBranch;
     private final boolean moveTag;
-    private boolean isSuccess = true;
+    private final boolean keepLog;
+    private volatile boolean isSuccess = true;
+    private volatile Status status = Status.QUEUED;
+    private volatile RtagExecutor currentExecutor;
+    private volatile int completedModules;
+    private volatile int totalModules;
 
     public CvsTagActionWorker(final CvsRevisionState revisionState,
                     final String tagName, final boolean createBranch, final AbstractBuild<?, ?> build,
                     final CvsTagAction parent, final boolean moveTag) {
+        this(revisionState, tagName, createBranch, build, parent, moveTag, false);
+    }
+
+    /**
+     * @param keepLog whether to mark the build as 'keep forever' once tagged. This has to be decided
+     *                when tagging is requested since permissions can't be checked from the worker thread.
+     */
+    public CvsTagActionWorker(final CvsRevisionState revisionState,
+                    final String tagName, final boolean createBranch, final AbstractBuild<?, ?> build,
+                    final CvsTagAction parent, final boolean moveTag, final boolean keepLog) {
         super(parent, ListenerAndText.forMemory(parent));
         this.revisionState = revisionState;
         this.tagName = tagName;
@@ -41,73 +57,97 @@ public class CvsTagActionWorker extends TaskThread {
         this.parent = parent;
         this.createBranch = createBranch;
         this.moveTag = moveTag;
+        this.keepLog = keepLog;
     }
 
     @Override
     public void perform(final TaskListener listener) throws IOException, InterruptedException, CommandException, AuthenticationException {
-        for (CvsRepository repository : revisionState.getModuleFiles().keySet()) {
-            boolean oneIterationComplete = false;
-            Map<String, List<String>> versionFileMap = new HashMap<String, List<String>>();
-
-            for (CvsFile file : revisionState.getModuleState(repository)) {
+        boolean completed = false;
+        try {
+            final AbstractCvs owner = parent.getParent();
+            final EnvVars envVars = build.getEnvironment(listener);
+
+            final List<String> cvsRoots = new ArrayList<String>();
+            for (CvsRepository repository : revisionState.getModuleFiles().keySet()) {
+                cvsRoots.add(envVars.expand(repository.getCvsRoot()));
+            }
 
-                List<String> filesForVersion = versionFileMap.get(file.getRevision());
+            final CvsTagQueue.Permit permit = CvsTagQueue.acquire(cvsRoots, listener);
+            try {
+                status = Status.RUNNING;
+                tag(owner, envVars, listener);
+            } finally {
+                permit.release();
+            }
 
-                if (null == filesForVersion) {
-                    filesForVersion = new ArrayList<String>();
-                    versionFileMap.put(file.getRevision(), filesForVersion);
-                }
+            if (!isSuccess) {
+                throw new AbortException(Messages.CVSSCM_TaggingFailed());
+            }
 
-                filesForVersion.add(file.getName());
+            parent.onTagCompleted(tagName, keepLog);
+            completed = true;
+        } finally {
+            status = completed ? Status.SUCCEEDED : Status.FAILED;
+        }
+    }
 
-            }
+    private void tag(final AbstractCvs owner, final EnvVars envVars, final TaskListener listener)
+            throws IOException, InterruptedException, CommandException, AuthenticationException {
+        final Date checkoutDate = owner.getCheckoutDate(build);
 
-            for (Map.Entry<String, List<String>> versionEntry : versionFileMap.entrySet()) {
-                AbstractCvs owner = parent.getParent();
-                final Client cvsClient = owner.getCvsClient(repository, build.getEnvironment(listener), listener, !oneIterationComplete);
-                final GlobalOptions globalOptions = owner.getGlobalOptions(repository, build.getEnvironment(listener));
-
-                globalOptions.setCVSRoot(repository.getCvsRoot());
-
-                RtagCommand rtagCommand = new RtagCommand();
-
-                rtagCommand.setTag(tagName);
-                rtagCommand.setTagByRevision(versionEntry.getKey());
-                for (String fileName : versionEntry.getValue()) {
-                    rtagCommand.addModule(fileName);
-                }
-                rtagCommand.setMakeBranchTag(createBranch);
-                rtagCommand.setOverrideExistingTag(moveTag);
-                cvsClient.getEventManager().addCVSListener(
-                                new BasicListener(listener.getLogger(),
-                                                listener.getLogger()));
-
-                try {
-                    isSuccess = isSuccess && cvsClient.executeCommand(rtagCommand, globalOptions);
-                } catch (CommandAbortedException e) {
-                    e.printStackTrace(listener
-                                    .error("The CVS rtag command was aborted"));
-                    throw e;
-                } catch (CommandException e) {
-                    e.printStackTrace(listener
-                                    .error("Error while trying to run CVS rtag command"));
-                    throw e;
-                } catch (AuthenticationException e) {
-                    e.printStackTrace(listener
-                                    .error("Authentication error while trying to run CVS rtag command"));
-                    throw e;
-                }  finally {
-                    try {
-                        cvsClient.getConnection().close();
-                    } catch(IOException ex) {
-                        listener.error("Could not close client connection: " + ex.getMessage());
-                    }
-                }
-                oneIterationComplete = true;
+        for (CvsRepository repository : revisionState.getModuleFiles().keySet()) {
+            final List<RtagBatch> batches = RtagPlanner.plan(owner, repository, revisionState.getModuleState(repository),
+                    checkoutDate, envVars, listener);
+
+            final RtagExecutor executor = new RtagExecutor(owner, repository, envVars, listener, tagName,
+                    createBranch, moveTag);
+            currentExecutor = executor;
+            final CvsMetrics.Sample sample = CvsMetrics.start(envVars.expand(repository.getCvsRoot()), "tag");
+            boolean tagged = false;
+            try {
+                tagged = executor.execute(batches);
+                isSuccess = tagged && isSuccess;
+            } finally {
+                sample.stop(tagged);
+                completedModules += executor.getCompletedModules();
+                totalModules += executor.getTotalModules();
+                currentExecutor = null;
             }
         }
     }
 
+    public AbstractBuild<?, ?> getBuild() {
+        return build;
+    }
+
+    public CvsTagAction getAction() {
+        return parent;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the number of files and directories tagged so far, across all repositories
+     */
+    public int getCompletedCount() {
+        final RtagExecutor executor = currentExecutor;
+        return completedModules + (executor == null ? 0 : executor.getCompletedModules());
+    }
+
+    /**
+     * @return the number of files and directories known to need tagging so far, across all repositories
+     */
+    public int getTotalCount() {
+        final RtagExecutor executor = currentExecutor;
+        return totalModules + (executor == null ? 0 : executor.getTotalModules());
+    }
+
     public boolean isSuccess() {
         return isSuccess;
     }
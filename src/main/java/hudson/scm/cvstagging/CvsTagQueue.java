@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm.cvstagging;
+
+import hudson.model.TaskListener;
+import hudson.scm.CvsRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many tagging jobs run at once, both overall and against any single CVS server.
+ * Tagging workers for every requested build start straight away, then wait here in the order
+ * they were submitted until a slot is free for every server they need to tag on.
+ */
+final class CvsTagQueue {
+
+    /**
+     * The maximum number of builds being tagged at the same time.
+     */
+    static final int MAX_CONCURRENT = Math.max(1, Integer.getInteger(CvsTagQueue.class.getName() + ".maxConcurrent", 4));
+
+    /**
+     * The maximum number of builds being tagged on the same CVS server at the same time.
+     */
+    static final int MAX_PER_SERVER = Math.max(1, Integer.getInteger(CvsTagQueue.class.getName() + ".maxPerServer", 2));
+
+    private static final Semaphore GLOBAL = new Semaphore(MAX_CONCURRENT, true);
+    private static final ConcurrentMap<String, Semaphore> SERVERS = new ConcurrentHashMap<String, Semaphore>();
+
+    private CvsTagQueue() {
+    }
+
+    /**
+     * Waits until a tagging job against the given CVS roots can start.
+     * @param cvsRoots the (expanded) CVSROOTs the job will run rtag against
+     * @param listener where to report any wait to
+     * @return the permits held by the job, which must be released once tagging completes
+     * @throws InterruptedException if the job is aborted while waiting
+     */
+    static Permit acquire(final Collection<String> cvsRoots, final TaskListener listener) throws InterruptedException {
+        // always take server slots in the same order so two jobs can't each hold a slot the other is waiting on
+        final TreeSet<String> servers = new TreeSet<String>();
+        for (String cvsRoot : cvsRoots) {
+            servers.add(CvsRepository.getServerName(cvsRoot));
+        }
+
+        final Permit permit = new Permit();
+        try {
+            for (String server : servers) {
+                Semaphore semaphore = SERVERS.get(server);
+                if (semaphore == null) {
+                    SERVERS.putIfAbsent(server, new Semaphore(MAX_PER_SERVER, true));
+                    semaphore = SERVERS.get(server);
+                }
+                if (!semaphore.tryAcquire()) {
+                    listener.getLogger().println("Waiting for other tagging jobs on " + server + " to complete");
+                    semaphore.acquire();
+                }
+                permit.held.add(semaphore);
+            }
+
+            // server slots are taken first so a job waiting on a busy server doesn't hold up jobs for other servers
+            if (!GLOBAL.tryAcquire()) {
+                listener.getLogger().println("Waiting for other tagging jobs to complete");
+                GLOBAL.acquire();
+            }
+            permit.held.add(GLOBAL);
+        } catch (InterruptedException ex) {
+            permit.release();
+            throw ex;
+        }
+
+        return permit;
+    }
+
+    static final class Permit {
+
+        private final List<Semaphore> held = new ArrayList<Semaphore>();
+
+        void release() {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).release();
+            }
+            held.clear();
+        }
+    }
+
+}
@@ -23,6 +23,7 @@
  */
 package hudson.scm.cvstagging;
 
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.*;
@@ -46,6 +47,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -261,6 +263,76 @@ public class LegacyTagAction extends AbstractScmTagAction implements
      * Performs tagging.
      */
     public void perform(final String tagName, final boolean moveTag, final TaskListener listener) {
+        try {
+            final EnvVars envVars = build.getEnvironment(listener);
+            final Boolean tagged = performFromManifest(tagName, moveTag, envVars, listener);
+            if (tagged == null) {
+                performFromExpandedArchive(tagName, moveTag, envVars, listener);
+            } else if (tagged) {
+                // completed successfully
+                onTagCompleted(tagName);
+                build.save();
+            } else {
+                listener.getLogger().print(Messages.CVSSCM_TaggingFailed());
+            }
+        } catch (Throwable e) {
+            e.printStackTrace(listener.fatalError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Tags the revisions recorded in the archive's CVS control files using rtag, without extracting the
+     * archive.
+     * @return whether tagging succeeded, or null if the archive couldn't be mapped onto the configured
+     * repositories and has to be expanded instead
+     */
+    private Boolean performFromManifest(final String tagName, final boolean moveTag, final EnvVars envVars,
+                                        final TaskListener listener) throws Exception {
+        final File archive = getArchiveFile(build);
+        listener.getLogger().println("Reading CVS control files from " + archive);
+        final WorkspaceArchiveManifest manifest = WorkspaceArchiveManifest.read(archive);
+        if (manifest.isEmpty()) {
+            listener.getLogger().println("No CVS entries found in workspace archive");
+            return null;
+        }
+
+        final Map<CvsRepository, String> repositoryRoots = new LinkedHashMap<CvsRepository, String>();
+        for (String root : manifest.getRoots()) {
+            final CvsRepository repository = findRepository(root, envVars);
+            if (repository == null) {
+                listener.getLogger().println("No repository configured for CVSROOT " + root + " found in workspace archive");
+                return null;
+            }
+            repositoryRoots.put(repository, root);
+        }
+
+        listener.getLogger().println(Messages.CVSSCM_TaggingWorkspace());
+        boolean success = true;
+        for (Entry<CvsRepository, String> repositoryRoot : repositoryRoots.entrySet()) {
+            final RtagExecutor executor = new RtagExecutor(parent, repositoryRoot.getKey(), envVars, listener,
+                    tagName, false, moveTag);
+            success = executor.execute(RtagBatch.split(manifest.getFilesByRevision(repositoryRoot.getValue()),
+                    RtagExecutor.BATCH_SIZE)) && success;
+        }
+        return success;
+    }
+
+    private CvsRepository findRepository(final String root, final EnvVars envVars) {
+        final CvsRepository[] repositories = parent.getRepositories();
+        for (CvsRepository repository : repositories) {
+            if (root.equals(envVars.expand(repository.getCvsRoot()))) {
+                return repository;
+            }
+        }
+        // directories archived without a CVS/Root can only have come from the one repository there is
+        if (WorkspaceArchiveManifest.NO_ROOT.equals(root) && repositories.length == 1) {
+            return repositories[0];
+        }
+        return null;
+    }
+
+    private void performFromExpandedArchive(final String tagName, final boolean moveTag, final EnvVars envVars,
+                                            final TaskListener listener) throws Exception {
         File destdir = null;
         try {
             destdir = Util.createTempDir();
@@ -281,8 +353,8 @@ public class LegacyTagAction extends AbstractScmTagAction implements
                 for (CvsRepositoryItem item : repository.getRepositoryItems()) {
                     for (CvsModule module : item.getModules()) {
 
-                        final Client cvsClient = parent.getCvsClient(repository, build.getEnvironment(listener), listener);
-                        final GlobalOptions globalOptions = parent.getGlobalOptions(repository, build.getEnvironment(listener));
+                        final Client cvsClient = parent.getCvsClient(repository, envVars, listener);
+                        final GlobalOptions globalOptions = parent.getGlobalOptions(repository, envVars);
 
                         File path = new File(destdir, module.getCheckoutName());
                         boolean isDir = path.isDirectory();
@@ -325,8 +397,6 @@ public class LegacyTagAction extends AbstractScmTagAction implements
             // completed successfully
             onTagCompleted(tagName);
             build.save();
-        } catch (Throwable e) {
-            e.printStackTrace(listener.fatalError(e.getMessage()));
         } finally {
             try {
                 if (destdir != null) {
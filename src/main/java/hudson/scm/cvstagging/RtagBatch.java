@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm.cvstagging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single {@code rtag} invocation: a list of module paths that are all tagged
+ * from the same revision and/or date.
+ */
+final class RtagBatch {
+
+    private final String revision;
+    private final String date;
+    private final boolean recursive;
+    private final List<String> modules;
+
+    RtagBatch(final String revision, final List<String> modules) {
+        this(revision, null, true, modules);
+    }
+
+    /**
+     * @param revision the revision or branch to tag from, or null to use the head of the default branch
+     * @param date the date to select revisions at, or null to use the latest revision
+     * @param recursive whether directories in the module list should have their subdirectories tagged
+     * @param modules the files and directories to tag
+     */
+    RtagBatch(final String revision, final String date, final boolean recursive, final List<String> modules) {
+        this.revision = revision;
+        this.date = date;
+        this.recursive = recursive;
+        this.modules = Collections.unmodifiableList(new ArrayList<String>(modules));
+    }
+
+    String getRevision() {
+        return revision;
+    }
+
+    String getDate() {
+        return date;
+    }
+
+    boolean isRecursive() {
+        return recursive;
+    }
+
+    List<String> getModules() {
+        return modules;
+    }
+
+    /**
+     * Splits files grouped by revision into batches of at most {@code batchSize} modules so
+     * no single command gets too large for the server to handle comfortably.
+     * @param filesByRevision the file names to tag, grouped by the revision they should be tagged at
+     * @param batchSize the maximum number of modules in each batch
+     * @return the batches to run
+     */
+    static List<RtagBatch> split(final Map<String, List<String>> filesByRevision, final int batchSize) {
+        final List<RtagBatch> batches = new ArrayList<RtagBatch>();
+        for (Map.Entry<String, List<String>> entry : filesByRevision.entrySet()) {
+            final List<String> files = entry.getValue();
+            for (int start = 0; start < files.size(); start += batchSize) {
+                batches.add(new RtagBatch(entry.getKey(), files.subList(start, Math.min(files.size(), start + batchSize))));
+            }
+        }
+        return batches;
+    }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm.cvstagging;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import hudson.scm.AbstractCvs;
+import hudson.scm.CvsEvents;
+import hudson.scm.CvsMetrics;
+import hudson.scm.CvsRepository;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.netbeans.lib.cvsclient.Client;
+import org.netbeans.lib.cvsclient.command.CommandAbortedException;
+import org.netbeans.lib.cvsclient.command.CommandException;
+import org.netbeans.lib.cvsclient.command.GlobalOptions;
+import org.netbeans.lib.cvsclient.command.tag.RtagCommand;
+import org.netbeans.lib.cvsclient.commandLine.BasicListener;
+import org.netbeans.lib.cvsclient.connection.AuthenticationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of {@link RtagBatch}es against a single repository. Batches are shared between a
+ * small number of sessions, each of which keeps one client connection open for all the batches
+ * it runs, rather than connecting to the server for every command.
+ */
+class RtagExecutor {
+
+    /**
+     * The maximum number of connections opened to the CVS server while tagging a repository.
+     */
+    static final int PARALLELISM = Math.max(1, Integer.getInteger(RtagExecutor.class.getName() + ".parallelism", 4));
+
+    /**
+     * The maximum number of module paths passed to a single rtag command.
+     */
+    static final int BATCH_SIZE = Math.max(1, Integer.getInteger(RtagExecutor.class.getName() + ".batchSize", 500));
+
+    /**
+     * The number of times a batch is retried on a fresh connection after a communication failure.
+     */
+    static final int RETRIES = Math.max(0, Integer.getInteger(RtagExecutor.class.getName() + ".retries", 2));
+
+    private final AbstractCvs owner;
+    private final CvsRepository repository;
+    private final EnvVars envVars;
+    private final TaskListener listener;
+    private final String tagName;
+    private final boolean createBranch;
+    private final boolean moveTag;
+
+    private final AtomicInteger completedModules = new AtomicInteger();
+    private volatile int totalModules;
+
+    RtagExecutor(final AbstractCvs owner, final CvsRepository repository, final EnvVars envVars,
+                 final TaskListener listener, final String tagName, final boolean createBranch,
+                 final boolean moveTag) {
+        this.owner = owner;
+        this.repository = repository;
+        this.envVars = envVars;
+        this.listener = listener;
+        this.tagName = tagName;
+        this.createBranch = createBranch;
+        this.moveTag = moveTag;
+    }
+
+    /**
+     * Runs all the given batches, returning once every batch has completed or one of them has
+     * failed with an exception that could not be recovered by retrying.
+     * @param batches the commands to run
+     * @return true if the server reported success for every batch
+     */
+    boolean execute(final List<RtagBatch> batches) throws IOException, InterruptedException,
+            CommandException, AuthenticationException {
+        int total = 0;
+        for (RtagBatch batch : batches) {
+            total += batch.getModules().size();
+        }
+        totalModules = total;
+
+        if (batches.isEmpty()) {
+            return true;
+        }
+
+        final Queue<RtagBatch> pending = new ConcurrentLinkedQueue<RtagBatch>(batches);
+        final int sessions = Math.min(PARALLELISM, batches.size());
+
+        if (sessions == 1) {
+            return new Session(pending, true).call();
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(sessions,
+                new NamingThreadFactory(new DaemonThreadFactory(), "CVS rtag " + tagName));
+        try {
+            final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < sessions; i++) {
+                results.add(executor.submit(new Session(pending, i == 0)));
+            }
+
+            boolean success = true;
+            for (Future<Boolean> result : results) {
+                try {
+                    success = result.get() && success;
+                } catch (ExecutionException e) {
+                    // stop the other sessions picking up any more work before reporting the failure
+                    pending.clear();
+                    rethrow(e.getCause());
+                }
+            }
+            return success;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    int getCompletedModules() {
+        return completedModules.get();
+    }
+
+    int getTotalModules() {
+        return totalModules;
+    }
+
+    /**
+     * Creates the rtag command for a batch, tagging from the batch's revision and/or date.
+     */
+    RtagCommand createCommand(final RtagBatch batch) {
+        final RtagCommand rtagCommand = new RtagCommand();
+        rtagCommand.setTag(tagName);
+        if (batch.getRevision() != null) {
+            rtagCommand.setTagByRevision(batch.getRevision());
+        }
+        if (batch.getDate() != null) {
+            rtagCommand.setTagByDate(batch.getDate());
+        }
+        rtagCommand.setRecursive(batch.isRecursive());
+        for (String module : batch.getModules()) {
+            rtagCommand.addModule(module);
+        }
+        rtagCommand.setMakeBranchTag(createBranch);
+        rtagCommand.setOverrideExistingTag(moveTag);
+        return rtagCommand;
+    }
+
+    /**
+     * Opens a connection to the repository's server for a session to run its batches over.
+     * @param showAuthenticationInfo whether to log the credentials being used
+     */
+    RtagConnection connect(final boolean showAuthenticationInfo) throws CommandException, AuthenticationException {
+        final Client cvsClient = owner.getCvsClient(repository, envVars, listener, showAuthenticationInfo);
+        final GlobalOptions globalOptions = owner.getGlobalOptions(repository, envVars);
+        globalOptions.setCVSRoot(repository.getCvsRoot());
+        cvsClient.getEventManager().addCVSListener(new BasicListener(listener.getLogger(), listener.getLogger()));
+        CvsEvents.connect(cvsClient, envVars.expand(repository.getCvsRoot()));
+        return new RtagConnection() {
+            @Override
+            public boolean execute(final RtagCommand command) throws CommandException, AuthenticationException {
+                return cvsClient.executeCommand(command, globalOptions);
+            }
+
+            @Override
+            public void close() throws IOException {
+                cvsClient.getConnection().close();
+            }
+        };
+    }
+
+    private static void rethrow(final Throwable cause) throws IOException, InterruptedException,
+            CommandException, AuthenticationException {
+        if (cause instanceof CommandException) {
+            throw (CommandException) cause;
+        }
+        if (cause instanceof AuthenticationException) {
+            throw (AuthenticationException) cause;
+        }
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IOException(cause);
+    }
+
+    /**
+     * An open connection to the CVS server that rtag commands are run over.
+     */
+    interface RtagConnection {
+
+        /**
+         * @return true if the server reported success
+         */
+        boolean execute(RtagCommand command) throws CommandException, AuthenticationException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * A single connection to the server, used to run batches from the shared queue until it is empty.
+     */
+    private class Session implements Callable<Boolean> {
+
+        private final Queue<RtagBatch> pending;
+        private final boolean showAuthenticationInfo;
+        private RtagConnection connection;
+        private boolean reconnecting;
+
+        Session(final Queue<RtagBatch> pending, final boolean showAuthenticationInfo) {
+            this.pending = pending;
+            this.showAuthenticationInfo = showAuthenticationInfo;
+        }
+
+        @Override
+        public Boolean call() throws IOException, InterruptedException, CommandException, AuthenticationException {
+            boolean success = true;
+            try {
+                RtagBatch batch;
+                while ((batch = pending.poll()) != null) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    success = run(batch) && success;
+
+                    final int completed = completedModules.addAndGet(batch.getModules().size());
+                    listener.getLogger().println("Tagged " + completed + "/" + totalModules + " modules");
+                }
+            } finally {
+                disconnect();
+            }
+            return success;
+        }
+
+        private boolean run(final RtagBatch batch) throws CommandException, AuthenticationException {
+            final RtagCommand rtagCommand = createCommand(batch);
+
+            for (int attempt = 0; ; attempt++) {
+                final CvsEvents.RtagBatch event = new CvsEvents.RtagBatch();
+                event.begin();
+                try {
+                    open();
+                    event.succeeded = connection.execute(rtagCommand);
+                    return event.succeeded;
+                } catch (CommandAbortedException e) {
+                    e.printStackTrace(listener.error("The CVS rtag command was aborted"));
+                    throw e;
+                } catch (AuthenticationException e) {
+                    e.printStackTrace(listener.error("Authentication error while trying to run CVS rtag command"));
+                    throw e;
+                } catch (CommandException e) {
+                    if (attempt >= RETRIES) {
+                        e.printStackTrace(listener.error("Error while trying to run CVS rtag command"));
+                        throw e;
+                    }
+                    listener.getLogger().println("Error while trying to run CVS rtag command, retrying on a new connection: "
+                            + e.getMessage());
+                    disconnect();
+                } finally {
+                    if (event.shouldCommit()) {
+                        event.cvsRoot = CvsMetrics.sanitise(envVars.expand(repository.getCvsRoot()));
+                        event.tag = tagName;
+                        event.modules = batch.getModules().size();
+                        event.commit();
+                    }
+                }
+            }
+        }
+
+        private void open() throws CommandException, AuthenticationException {
+            if (connection != null) {
+                return;
+            }
+            // the credentials are only shown for the first connection, not again for a retry
+            connection = connect(showAuthenticationInfo && !reconnecting);
+            reconnecting = true;
+        }
+
+        private void disconnect() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.close();
+            } catch (IOException ex) {
+                listener.error("Could not close client connection: " + ex.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+}
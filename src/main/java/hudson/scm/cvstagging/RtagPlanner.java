@@ -0,0 +1,335 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm.cvstagging;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import hudson.scm.AbstractCvs;
+import hudson.scm.CvsFile;
+import hudson.scm.CvsModule;
+import hudson.scm.CvsRepository;
+import hudson.scm.CvsRepositoryItem;
+import hudson.scm.CvsRepositoryLocation;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Works out the smallest set of rtag commands needed to tag the files in a workspace. Where every
+ * file in a directory tree is at the revision the server selects for the checkout date and location,
+ * the whole tree is tagged with a single recursive {@code rtag -D} (and {@code -r} for branches).
+ * Directories that only match for their own files are tagged with {@code rtag -l}, and any file that
+ * doesn't match is tagged by its own revision. A directory holding another configured module is never tagged
+ * recursively, since that would also tag the other module at this module's date and location.
+ */
+final class RtagPlanner {
+
+    /**
+     * Allows the planner to be turned off so every file is tagged by its own revision.
+     */
+    static final boolean DISABLED = Boolean.getBoolean(RtagPlanner.class.getName() + ".disabled");
+
+    private RtagPlanner() {
+    }
+
+    /**
+     * Plans the commands needed to tag the given workspace files.
+     * @param owner the SCM the files were checked out with
+     * @param repository the repository the files belong to
+     * @param workspaceFiles the files and revisions found in the workspace
+     * @param checkoutDate the date the files were checked out at
+     * @param envVars variables to use for macro expansion
+     * @param listener where to log any messages to
+     * @return the batches to run to tag every workspace file
+     */
+    static List<RtagBatch> plan(final AbstractCvs owner, final CvsRepository repository, final List<CvsFile> workspaceFiles,
+                                final Date checkoutDate, final EnvVars envVars, final TaskListener listener) {
+        final Map<String, List<String>> perFile = new LinkedHashMap<String, List<String>>();
+
+        if (DISABLED) {
+            for (CvsFile file : workspaceFiles) {
+                addFile(perFile, file.getRevision(), file.getName());
+            }
+            return RtagBatch.split(perFile, RtagExecutor.BATCH_SIZE);
+        }
+
+        final String date = new SimpleDateFormat("dd MMM yyyy HH:mm:ss Z", Locale.UK).format(checkoutDate);
+
+        // the module roots checked out from each location, so each file can be matched against the state of
+        // the most specific module it was checked out as part of
+        final Map<String, CvsRepositoryItem> moduleItems = new HashMap<String, CvsRepositoryItem>();
+        final Map<String, CvsModule> modules = new HashMap<String, CvsModule>();
+        for (CvsRepositoryItem item : repository.getRepositoryItems()) {
+            for (CvsModule module : item.getModules()) {
+                final String root = envVars.expand(module.getRemoteName());
+                moduleItems.put(root, item);
+                modules.put(root, module);
+            }
+        }
+
+        final Map<String, Map<String, String>> workspaceByModule = new HashMap<String, Map<String, String>>();
+        for (CvsFile file : workspaceFiles) {
+            final String root = findModuleRoot(file.getName(), moduleItems.keySet());
+            if (root == null || !isCollapsible(moduleItems.get(root).getLocation())) {
+                addFile(perFile, file.getRevision(), file.getName());
+                continue;
+            }
+            Map<String, String> files = workspaceByModule.get(root);
+            if (files == null) {
+                files = new HashMap<String, String>();
+                workspaceByModule.put(root, files);
+            }
+            files.put(file.getName().substring(root.length() + 1), file.getRevision());
+        }
+
+        final Map<String, List<String>> recursiveByRevision = new LinkedHashMap<String, List<String>>();
+        final Map<String, List<String>> localByRevision = new LinkedHashMap<String, List<String>>();
+
+        for (Map.Entry<String, Map<String, String>> moduleFiles : workspaceByModule.entrySet()) {
+            final String root = moduleFiles.getKey();
+            final CvsRepositoryItem item = moduleItems.get(root);
+
+            final Map<String, String> remoteFiles = new HashMap<String, String>();
+            try {
+                for (CvsFile file : owner.getRemoteFilesAtDate(repository, item, modules.get(root), checkoutDate,
+                        envVars, listener)) {
+                    if (!file.isDead() && root.equals(findModuleRoot(file.getName(), moduleItems.keySet()))) {
+                        remoteFiles.put(file.getName().substring(root.length() + 1), file.getRevision());
+                    }
+                }
+            } catch (IOException ex) {
+                listener.getLogger().println("Could not list files for " + root + ", tagging files individually: " + ex.getMessage());
+                addFiles(perFile, root, moduleFiles.getValue());
+                continue;
+            } catch (RuntimeException ex) {
+                listener.getLogger().println("Could not list files for " + root + ", tagging files individually: " + ex.getMessage());
+                addFiles(perFile, root, moduleFiles.getValue());
+                continue;
+            }
+
+            // a null revision is used for head, where the date alone selects the revision
+            final String revision = item.getLocation() instanceof CvsRepositoryLocation.BranchRepositoryLocation
+                    ? envVars.expand(item.getLocation().getLocationName()) : null;
+
+            final List<String> nestedModules = new ArrayList<String>();
+            for (String otherRoot : moduleItems.keySet()) {
+                if (otherRoot.startsWith(root + "/")) {
+                    nestedModules.add(otherRoot.substring(root.length() + 1));
+                }
+            }
+
+            final List<String> recursive = new ArrayList<String>();
+            final List<String> local = new ArrayList<String>();
+            planModule(root, moduleFiles.getValue(), remoteFiles, nestedModules, recursive, local, perFile);
+
+            for (String path : recursive) {
+                addFile(recursiveByRevision, revision, path);
+            }
+            for (String path : local) {
+                addFile(localByRevision, revision, path);
+            }
+        }
+
+        final List<RtagBatch> batches = new ArrayList<RtagBatch>();
+        addBatches(batches, recursiveByRevision, date, true);
+        addBatches(batches, localByRevision, date, false);
+        batches.addAll(RtagBatch.split(perFile, RtagExecutor.BATCH_SIZE));
+        return batches;
+    }
+
+    /**
+     * Compares the workspace and server state for a single module and sorts its contents into directories
+     * that can be tagged recursively, directories that can be tagged without recursion and individual files.
+     * @param root the path of the module in the repository
+     * @param workspaceFiles the revision of each file in the workspace, keyed by path relative to the module
+     * @param remoteFiles the revision of each live file on the server, keyed by path relative to the module
+     * @param nestedModules the paths, relative to the module, of other configured modules inside it. Their files
+     *                      are tagged as part of those modules so mustn't be reached by a recursive rtag from this one
+     * @param recursive receives the directories that can be tagged by date with a recursive rtag
+     * @param local receives the directories whose files, but not subdirectories, can be tagged by date
+     * @param perFile receives the files that have to be tagged by their own revision, keyed by revision
+     */
+    static void planModule(final String root, final Map<String, String> workspaceFiles, final Map<String, String> remoteFiles,
+                           final Collection<String> nestedModules, final List<String> recursive, final List<String> local,
+                           final Map<String, List<String>> perFile) {
+        final Directory rootDirectory = new Directory();
+        for (Map.Entry<String, String> file : workspaceFiles.entrySet()) {
+            rootDirectory.add(file.getKey(), file.getValue(), true);
+        }
+        for (Map.Entry<String, String> file : remoteFiles.entrySet()) {
+            rootDirectory.add(file.getKey(), file.getValue(), false);
+        }
+        for (String nestedModule : nestedModules) {
+            rootDirectory.addNestedModule(nestedModule);
+        }
+        rootDirectory.calculateMatches();
+        rootDirectory.plan(root, recursive, local, perFile);
+    }
+
+    private static boolean isCollapsible(final CvsRepositoryLocation location) {
+        // tags don't depend on the date, and 'use head if not found' changes which revision the server selects
+        return !location.isUseHeadIfNotFound() && (location instanceof CvsRepositoryLocation.HeadRepositoryLocation
+                || location instanceof CvsRepositoryLocation.BranchRepositoryLocation);
+    }
+
+    private static String findModuleRoot(final String fileName, final Iterable<String> roots) {
+        String match = null;
+        for (String root : roots) {
+            if (fileName.startsWith(root + "/") && (match == null || root.length() > match.length())) {
+                match = root;
+            }
+        }
+        return match;
+    }
+
+    private static void addFiles(final Map<String, List<String>> perFile, final String root, final Map<String, String> files) {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            addFile(perFile, file.getValue(), root + "/" + file.getKey());
+        }
+    }
+
+    private static void addFile(final Map<String, List<String>> map, final String key, final String path) {
+        List<String> paths = map.get(key);
+        if (paths == null) {
+            paths = new ArrayList<String>();
+            map.put(key, paths);
+        }
+        paths.add(path);
+    }
+
+    private static void addBatches(final List<RtagBatch> batches, final Map<String, List<String>> pathsByRevision,
+                                   final String date, final boolean recursive) {
+        for (Map.Entry<String, List<String>> entry : pathsByRevision.entrySet()) {
+            final List<String> paths = entry.getValue();
+            for (int start = 0; start < paths.size(); start += RtagExecutor.BATCH_SIZE) {
+                batches.add(new RtagBatch(entry.getKey(), date, recursive,
+                        paths.subList(start, Math.min(paths.size(), start + RtagExecutor.BATCH_SIZE))));
+            }
+        }
+    }
+
+    private static final class Directory {
+
+        private final Map<String, String> workspaceFiles = new TreeMap<String, String>();
+        private final Map<String, String> remoteFiles = new HashMap<String, String>();
+        private final Map<String, Directory> children = new TreeMap<String, Directory>();
+        private boolean filesMatch;
+        private boolean treeMatches;
+        private boolean holdsModule;
+
+        private void add(final String path, final String revision, final boolean workspace) {
+            Directory directory = this;
+            int start = 0;
+            int separator;
+            while ((separator = path.indexOf('/', start)) != -1) {
+                final String name = path.substring(start, separator);
+                Directory child = directory.children.get(name);
+                if (child == null) {
+                    child = new Directory();
+                    directory.children.put(name, child);
+                }
+                directory = child;
+                start = separator + 1;
+            }
+            (workspace ? directory.workspaceFiles : directory.remoteFiles).put(path.substring(start), revision);
+        }
+
+        /**
+         * Marks this directory and every directory down to the one holding the given module as holding a module.
+         */
+        private void addNestedModule(final String path) {
+            Directory directory = this;
+            directory.holdsModule = true;
+            int start = 0;
+            int separator;
+            while ((separator = path.indexOf('/', start)) != -1) {
+                final String name = path.substring(start, separator);
+                Directory child = directory.children.get(name);
+                if (child == null) {
+                    child = new Directory();
+                    directory.children.put(name, child);
+                }
+                directory = child;
+                directory.holdsModule = true;
+                start = separator + 1;
+            }
+        }
+
+        private boolean calculateMatches() {
+            filesMatch = workspaceFiles.equals(remoteFiles);
+            treeMatches = filesMatch && !holdsModule;
+            for (Directory child : children.values()) {
+                // every child has to be visited so its own match flags get set
+                treeMatches = child.calculateMatches() && treeMatches;
+            }
+            return treeMatches;
+        }
+
+        private void plan(final String path, final List<String> recursive, final List<String> local,
+                          final Map<String, List<String>> perFile) {
+            if (treeMatches) {
+                if (!isEmpty()) {
+                    recursive.add(path);
+                }
+                return;
+            }
+
+            if (filesMatch) {
+                if (!workspaceFiles.isEmpty()) {
+                    local.add(path);
+                }
+            } else {
+                for (Map.Entry<String, String> file : workspaceFiles.entrySet()) {
+                    addFile(perFile, file.getValue(), path + "/" + file.getKey());
+                }
+            }
+
+            for (Map.Entry<String, Directory> child : children.entrySet()) {
+                child.getValue().plan(path + "/" + child.getKey(), recursive, local, perFile);
+            }
+        }
+
+        private boolean isEmpty() {
+            if (!workspaceFiles.isEmpty()) {
+                return false;
+            }
+            for (Directory child : children.values()) {
+                if (!child.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
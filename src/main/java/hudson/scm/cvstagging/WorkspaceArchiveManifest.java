@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, CVS Plugin contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm.cvstagging;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The revision of every file recorded in an archived legacy workspace, read straight from the
+ * {@code CVS/Root}, {@code CVS/Repository} and {@code CVS/Entries} files in the archive. Only
+ * those entries are inflated, so no source files are extracted to build the manifest.
+ */
+final class WorkspaceArchiveManifest {
+
+    private static final String CVS_DIRECTORY = "CVS/";
+
+    /**
+     * What files from directories without a {@code CVS/Root} are recorded against.
+     */
+    static final String NO_ROOT = "";
+
+    /**
+     * File paths relative to the repository root, grouped by revision then by CVSROOT.
+     */
+    private final Map<String, Map<String, List<String>>> filesByRoot;
+
+    private WorkspaceArchiveManifest(final Map<String, Map<String, List<String>>> filesByRoot) {
+        this.filesByRoot = filesByRoot;
+    }
+
+    /**
+     * Reads the manifest from a zip of CVS control files.
+     * @param archive the archived workspace
+     * @return the files found in the archive
+     * @throws IOException on failure reading the archive
+     */
+    static WorkspaceArchiveManifest read(final File archive) throws IOException {
+        final Map<String, Map<String, String>> controlFiles = new HashMap<String, Map<String, String>>();
+
+        final ZipFile zipFile = new ZipFile(archive);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final String name = entry.getName().replace('\\', '/');
+                final int cvsIndex = name.lastIndexOf(CVS_DIRECTORY);
+                if (entry.isDirectory() || cvsIndex == -1 || (cvsIndex > 0 && name.charAt(cvsIndex - 1) != '/')) {
+                    continue;
+                }
+
+                final String controlFile = name.substring(cvsIndex + CVS_DIRECTORY.length());
+                if (!"Root".equals(controlFile) && !"Repository".equals(controlFile) && !"Entries".equals(controlFile)) {
+                    continue;
+                }
+
+                final String directory = name.substring(0, cvsIndex);
+                Map<String, String> directoryFiles = controlFiles.get(directory);
+                if (directoryFiles == null) {
+                    directoryFiles = new HashMap<String, String>();
+                    controlFiles.put(directory, directoryFiles);
+                }
+                directoryFiles.put(controlFile, readEntry(zipFile, entry));
+            }
+        } finally {
+            zipFile.close();
+        }
+
+        final Map<String, Map<String, List<String>>> filesByRoot = new LinkedHashMap<String, Map<String, List<String>>>();
+        for (Map<String, String> directory : controlFiles.values()) {
+            final String root = firstLine(directory.get("Root"));
+            final String repositoryPath = firstLine(directory.get("Repository"));
+            final String entries = directory.get("Entries");
+            // without a root there's no telling what an absolute repository path is relative to
+            if (repositoryPath == null || entries == null || (root == null && repositoryPath.startsWith("/"))) {
+                continue;
+            }
+
+            final String rootKey = root == null ? NO_ROOT : root;
+            Map<String, List<String>> filesByRevision = filesByRoot.get(rootKey);
+            if (filesByRevision == null) {
+                filesByRevision = new LinkedHashMap<String, List<String>>();
+                filesByRoot.put(rootKey, filesByRevision);
+            }
+
+            final String prefix = getRelativeRepositoryPath(rootKey, repositoryPath);
+            for (String line : entries.split("\r?\n")) {
+                addEntry(filesByRevision, prefix, line);
+            }
+        }
+
+        return new WorkspaceArchiveManifest(filesByRoot);
+    }
+
+    /**
+     * @return the CVSROOTs the archived directories were checked out from, including {@link #NO_ROOT} if any
+     * directories didn't record one
+     */
+    Iterable<String> getRoots() {
+        return filesByRoot.keySet();
+    }
+
+    /**
+     * @param root the CVSROOT to get files for
+     * @return the files checked out from the given CVSROOT, keyed by revision
+     */
+    Map<String, List<String>> getFilesByRevision(final String root) {
+        final Map<String, List<String>> files = filesByRoot.get(root);
+        return files == null ? new HashMap<String, List<String>>() : files;
+    }
+
+    boolean isEmpty() {
+        for (Map<String, List<String>> files : filesByRoot.values()) {
+            if (!files.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a single line from a {@code CVS/Entries} file. Directory lines, locally added files (revision 0)
+     * and locally removed files (revision starting with '-') don't exist on the server at the listed revision
+     * so are skipped.
+     */
+    private static void addEntry(final Map<String, List<String>> filesByRevision, final String prefix, final String line) {
+        if (!line.startsWith("/")) {
+            return;
+        }
+        final String[] parts = line.split("/", -1);
+        if (parts.length < 3 || parts[1].isEmpty() || parts[2].isEmpty()
+                || "0".equals(parts[2]) || parts[2].startsWith("-")) {
+            return;
+        }
+
+        List<String> files = filesByRevision.get(parts[2]);
+        if (files == null) {
+            files = new ArrayList<String>();
+            filesByRevision.put(parts[2], files);
+        }
+        files.add(prefix.isEmpty() ? parts[1] : prefix + "/" + parts[1]);
+    }
+
+    /**
+     * {@code CVS/Repository} holds either a path relative to the repository root or, for older clients, an
+     * absolute path on the server. Strips the repository root from absolute paths.
+     */
+    static String getRelativeRepositoryPath(final String root, final String repositoryPath) {
+        String path = repositoryPath;
+        if (path.startsWith("/")) {
+            final int rootPathIndex = root.indexOf('/');
+            final String rootPath = rootPathIndex == -1 ? "" : root.substring(rootPathIndex);
+            if (!rootPath.isEmpty() && (path.equals(rootPath) || path.startsWith(rootPath + "/"))) {
+                path = path.substring(rootPath.length());
+            }
+            while (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+        }
+        // the repository root itself is recorded as '.'
+        if (".".equals(path)) {
+            return "";
+        }
+        return path;
+    }
+
+    private static String firstLine(final String content) {
+        if (content == null) {
+            return null;
+        }
+        final int lineEnd = content.indexOf('\n');
+        final String line = (lineEnd == -1 ? content : content.substring(0, lineEnd)).trim();
+        return line.isEmpty() ? null : line;
+    }
+
+    private static String readEntry(final ZipFile zipFile, final ZipEntry entry) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry),
+                StandardCharsets.ISO_8859_1));
+        try {
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return content.toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+package hudson.scm;
+
+import jenkins.benchmark.jmh.BenchmarkFinder;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks, only with <tt>mvn -P benchmark test</tt>. The results are written to
+ * <tt>target/jmh-report.json</tt>.
+ * <p>
+ * <tt>-Dbenchmark.include=&lt;regex&gt;</tt> runs just the matching benchmarks, and
+ * <tt>-Dbenchmark.params=lines=10000000;files=100000</tt> overrides their parameters, e.g. to parse 10M lines
+ * of rlog output.
+ */
+class BenchmarkRunner {
+
+    @Test
+    void runJmhBenchmarks() throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .warmupIterations(Integer.getInteger("benchmark.warmupIterations", 3))
+                .measurementIterations(Integer.getInteger("benchmark.measurementIterations", 5))
+                .forks(Integer.getInteger("benchmark.forks", 1))
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-report.json");
+
+        String include = System.getProperty("benchmark.include");
+        if (include != null) {
+            options.include(include);
+        } else {
+            new BenchmarkFinder(getClass()).findBenchmarks(options);
+        }
+
+        String params = System.getProperty("benchmark.params");
+        if (params != null) {
+            for (String param : params.split(";")) {
+                int separator = param.indexOf('=');
+                options.param(param.substring(0, separator).trim(), param.substring(separator + 1).split(","));
+            }
+        }
+
+        new Runner(options.build()).run();
+    }
+
+}
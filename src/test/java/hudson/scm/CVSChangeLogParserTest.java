@@ -7,7 +7,14 @@ import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @WithJenkins
@@ -45,4 +52,23 @@ class CVSChangeLogParserTest {
         assertNotNull(result);
     }
 
+    @Test
+    void testParseIsRecordedInFlightRecordings() throws Exception {
+        Path dump = Files.createTempFile("cvs", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("hudson.scm.cvs.ChangeLog");
+            recording.start();
+            new CVSChangeLogParser().parse(null, getDataFile("changelogCurrentFormat.xml"));
+            recording.stop();
+            recording.dump(dump);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            assertEquals(1, events.size());
+            assertEquals("parse", events.get(0).getString("operation"));
+            assertEquals(1, events.get(0).getLong("entries"));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
 }
@@ -0,0 +1,60 @@
+package hudson.scm;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+
+/**
+ * Reading and writing the changelog that's stored with each build.
+ */
+@JmhBenchmark
+public class CVSChangeLogSetBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ChangeLogState extends JmhBenchmarkState {
+
+        @Param({"1000", "10000"})
+        public int files;
+
+        @Param({"5"})
+        public int revisions;
+
+        @Param({"10"})
+        public int filesPerCommit;
+
+        File changelog;
+        File output;
+        CVSChangeLogSet changeLogSet;
+
+        @Override
+        public void setup() throws Exception {
+            changelog = File.createTempFile("changelog", ".xml");
+            output = File.createTempFile("changelog", ".xml");
+            new RlogGenerator(files, revisions, 0, 0, filesPerCommit).writeChangeLog(changelog);
+            changeLogSet = CVSChangeLogSet.parse(null, null, changelog);
+        }
+
+        @Override
+        public void tearDown() {
+            changelog.delete();
+            output.delete();
+        }
+    }
+
+    @Benchmark
+    public CVSChangeLogSet parse(final ChangeLogState state) throws Exception {
+        return CVSChangeLogSet.parse(null, null, state.changelog);
+    }
+
+    @Benchmark
+    public File toFile(final ChangeLogState state) throws Exception {
+        state.changeLogSet.toFile(state.output);
+        return state.output;
+    }
+
+}
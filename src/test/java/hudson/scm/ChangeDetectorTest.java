@@ -0,0 +1,104 @@
+package hudson.scm;
+
+import hudson.EnvVars;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeDetectorTest {
+
+    private static final String CVS_ROOT = ":pserver:user@host:/cvs/repo";
+
+    @Test
+    void testExcludedAndKnownRevisionsAreNotSignificant() {
+        ChangeDetector detector = new ChangeDetector(Arrays.asList(Pattern.compile(".*\\.txt")),
+                Arrays.asList(CvsFile.make("/cvs/repo/module/b.java", "1.2", false)));
+
+        assertFalse(detector.isSignificant(CvsFile.make("/cvs/repo/module/a.txt", "1.4", false)));
+        assertFalse(detector.isSignificant(CvsFile.make("/cvs/repo/module/b.java", "1.2", false)));
+        assertTrue(detector.isSignificant(CvsFile.make("/cvs/repo/module/b.java", "1.3", false)));
+        assertNull(detector.findSignificant(Arrays.asList(CvsFile.make("/cvs/repo/module/a.txt", "1.4", false))));
+    }
+
+    @Test
+    void testParsingStopsAtTheFirstSignificantChange() throws IOException {
+        ChangeDetector detector = new ChangeDetector(Arrays.asList(Pattern.compile(".*/a\\.txt")),
+                new ArrayList<CvsFile>());
+        List<String> lines = readLines("rlogLocationsFull.txt");
+
+        CvsLog.Parser parser = newLog().newParser(CVS_ROOT, new CvsRepositoryLocation.HeadRepositoryLocation(), null,
+                new EnvVars(), detector);
+        int parsed = 0;
+        while (!parser.isStopped()) {
+            parser.parseLine(lines.get(parsed++));
+        }
+        CvsChangeSet changeSet = parser.finish();
+
+        assertTrue(parsed < lines.size());
+        assertEquals(new HashSet<CvsFile>(Arrays.asList(CvsFile.make("/cvs/repo/module/a.txt", "1.3", false),
+                CvsFile.make("/cvs/repo/module/Attic/b.txt", "1.1", true))), new HashSet<CvsFile>(changeSet.getFiles()));
+        assertEquals(CvsFile.make("/cvs/repo/module/Attic/b.txt", "1.1", true),
+                detector.findSignificant(changeSet.getFiles()));
+    }
+
+    @Test
+    void testParsingWithoutSignificantChangesListsEverything() throws IOException {
+        ChangeDetector detector = new ChangeDetector(Arrays.asList(Pattern.compile(".*")), new ArrayList<CvsFile>());
+        List<String> lines = readLines("rlogLocationsFull.txt");
+
+        CvsLog.Parser parser = newLog().newParser(CVS_ROOT, new CvsRepositoryLocation.HeadRepositoryLocation(), null,
+                new EnvVars(), detector);
+        for (String line : lines) {
+            parser.parseLine(line);
+        }
+        CvsChangeSet changeSet = parser.finish();
+
+        assertFalse(parser.isStopped());
+        assertEquals(lines.size(), changeSet.getLineCount());
+        assertEquals(4, changeSet.getChanges().size());
+        assertEquals(4, changeSet.getFiles().size());
+    }
+
+    private static CvsLog newLog() {
+        return new CvsLog() {
+            @Override
+            protected Reader read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected void dispose() {
+            }
+        };
+    }
+
+    private static List<String> readLines(final String fixture) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ChangeDetectorTest.class.getResourceAsStream(fixture), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+}
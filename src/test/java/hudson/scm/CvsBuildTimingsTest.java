@@ -0,0 +1,50 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CvsBuildTimingsTest {
+
+    @Test
+    void testTimingsAreRecordedWithoutPasswords() {
+        CvsBuildTimings timings = new CvsBuildTimings();
+        timings.record(":pserver:user:secret@host:/cvs", "module", CvsBuildTimings.PHASE_CHECKOUT,
+                TimeUnit.MILLISECONDS.toNanos(1500), 12, 3400);
+
+        CvsBuildTimings.Timing timing = timings.getTimings().get(0);
+        assertEquals(":pserver:user@host:/cvs", timing.getRepository());
+        assertEquals("module", timing.getModule());
+        assertEquals(CvsBuildTimings.PHASE_CHECKOUT, timing.getPhase());
+        assertEquals(1500, timing.getMillis());
+        assertEquals(12, timing.getFiles());
+        assertEquals(3400, timing.getBytes());
+    }
+
+    @Test
+    void testPhaseTotalsAreInFirstSeenOrder() {
+        CvsBuildTimings timings = new CvsBuildTimings();
+        timings.record(":local:/cvs", "a", CvsBuildTimings.PHASE_CONNECT, TimeUnit.MILLISECONDS.toNanos(10), 0, 0);
+        timings.record(":local:/cvs", "a", CvsBuildTimings.PHASE_UPDATE, TimeUnit.MILLISECONDS.toNanos(200), 5, 50);
+        timings.record(":local:/cvs", "b", CvsBuildTimings.PHASE_CONNECT, TimeUnit.MILLISECONDS.toNanos(30), 0, 0);
+        timings.record(":local:/cvs", "b", CvsBuildTimings.PHASE_SCAN, TimeUnit.MILLISECONDS.toNanos(7), 20, 0);
+
+        Map<String, Long> totals = timings.getPhaseTotals();
+        assertEquals(Arrays.asList(CvsBuildTimings.PHASE_CONNECT, CvsBuildTimings.PHASE_UPDATE,
+                CvsBuildTimings.PHASE_SCAN), new ArrayList<String>(totals.keySet()));
+        assertEquals(40L, totals.get(CvsBuildTimings.PHASE_CONNECT).longValue());
+        assertEquals(200L, totals.get(CvsBuildTimings.PHASE_UPDATE).longValue());
+        assertEquals(7L, totals.get(CvsBuildTimings.PHASE_SCAN).longValue());
+
+        List<CvsBuildTimings.Timing> rows = timings.getTimings();
+        assertEquals(4, rows.size());
+        assertEquals("b", rows.get(3).getModule());
+    }
+
+}
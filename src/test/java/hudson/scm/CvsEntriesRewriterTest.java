@@ -0,0 +1,83 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CvsEntriesRewriterTest {
+
+    @TempDir
+    private File directory;
+
+    @Test
+    void testStickyDatesAreRemoved() {
+        assertEquals("/file.txt/1.3/Thu Jan  1 00:00:00 2009//",
+                CvsEntriesRewriter.removeStickyDate("/file.txt/1.3/Thu Jan  1 00:00:00 2009//D2009.01.01.00.00.00"));
+        assertEquals("/image.png/1.1/Thu Jan  1 00:00:00 2009/-kb/",
+                CvsEntriesRewriter.removeStickyDate("/image.png/1.1/Thu Jan  1 00:00:00 2009/-kb/D2009.01.01.00.00.00"));
+    }
+
+    @Test
+    void testOtherEntriesAreUnchanged() {
+        assertEquals("/file.txt/1.2.2.1/Thu Jan  1 00:00:00 2009//TBRANCH",
+                CvsEntriesRewriter.removeStickyDate("/file.txt/1.2.2.1/Thu Jan  1 00:00:00 2009//TBRANCH"));
+        assertEquals("D/sub////", CvsEntriesRewriter.removeStickyDate("D/sub////"));
+        assertEquals("D", CvsEntriesRewriter.removeStickyDate("D"));
+    }
+
+    @Test
+    void testLineEndingsArePreserved() {
+        assertEquals("/a/1.1/x//\r\n/b/1.1/x//TTAG\r\nD\r\n",
+                CvsEntriesRewriter.removeStickyDates("/a/1.1/x//D2009.01.01.00.00.00\r\n/b/1.1/x//TTAG\r\nD\r\n"));
+        assertEquals("/a/1.1/x//\n/b/1.1/x//", CvsEntriesRewriter.removeStickyDates("/a/1.1/x//D1\n/b/1.1/x//D2"));
+    }
+
+    @Test
+    void testEntriesFileIsRewritten() throws IOException {
+        File entries = entriesFile("/a.txt/1.1/x//D2009.01.01.00.00.00\n/b.txt/1.4/x//\nD/sub////\n");
+
+        assertTrue(CvsEntriesRewriter.removeStickyDates(directory));
+
+        assertEquals("/a.txt/1.1/x//\n/b.txt/1.4/x//\nD/sub////\n",
+                new String(Files.readAllBytes(entries.toPath()), StandardCharsets.ISO_8859_1));
+        assertEquals(1, new File(directory, "CVS").list().length);
+    }
+
+    @Test
+    void testUnchangedEntriesFileIsNotRewritten() throws IOException {
+        File entries = entriesFile("/a.txt/1.1/x//TTAG\n/b.txt/1.4/x//\n");
+        assertTrue(entries.setLastModified(0));
+
+        assertTrue(CvsEntriesRewriter.removeStickyDates(directory));
+
+        assertEquals(0, entries.lastModified());
+    }
+
+    @Test
+    void testPendingLogIsLeftToTheClientLibrary() throws IOException {
+        File entries = entriesFile("/a.txt/1.1/x//D2009.01.01.00.00.00\n");
+        assertTrue(new File(directory, "CVS/Entries.Log").createNewFile());
+
+        assertFalse(CvsEntriesRewriter.removeStickyDates(directory));
+
+        assertEquals("/a.txt/1.1/x//D2009.01.01.00.00.00\n",
+                new String(Files.readAllBytes(entries.toPath()), StandardCharsets.ISO_8859_1));
+    }
+
+    private File entriesFile(final String contents) throws IOException {
+        File adminDirectory = new File(directory, "CVS");
+        assertTrue(adminDirectory.mkdir());
+        File entries = new File(adminDirectory, "Entries");
+        Files.write(entries.toPath(), contents.getBytes(StandardCharsets.ISO_8859_1));
+        return entries;
+    }
+
+}
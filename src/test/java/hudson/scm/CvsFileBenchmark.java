@@ -0,0 +1,61 @@
+package hudson.scm;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Interning of {@link CvsFile}s, which happens for every file in every change set and revision state.
+ */
+@JmhBenchmark
+public class CvsFileBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class InternerState {
+
+        @Param({"1000", "100000"})
+        public int files;
+
+        String[] names;
+
+        // held so the weakly interned instances survive and can be found again
+        CvsFile[] interned;
+
+        @Setup
+        public void setup() {
+            names = new String[files];
+            interned = new CvsFile[files];
+            for (int i = 0; i < files; i++) {
+                names[i] = RlogGenerator.getFileName(i);
+                interned[i] = CvsFile.make(names[i], "1.1");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+        long made;
+
+        int next(final int files) {
+            next = (next + 1) % files;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public CvsFile makeExisting(final InternerState state, final Cursor cursor) {
+        return CvsFile.make(state.names[cursor.next(state.files)], "1.1");
+    }
+
+    @Benchmark
+    public CvsFile makeNew(final InternerState state, final Cursor cursor) {
+        // a revision nothing else holds, so each one is new to the interner
+        return CvsFile.make(state.names[cursor.next(state.files)], "1." + ++cursor.made);
+    }
+
+}
@@ -0,0 +1,69 @@
+package hudson.scm;
+
+import hudson.EnvVars;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parsing of <tt>cvs rlog</tt> output into a change set, as done for every poll and checkout.
+ */
+@JmhBenchmark
+public class CvsLogBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RlogState {
+
+        @Param({"10000", "100000", "1000000"})
+        public int lines;
+
+        @Param({"5"})
+        public int revisions;
+
+        @Param({"2"})
+        public int branches;
+
+        @Param({"10"})
+        public int tags;
+
+        @Param({"10"})
+        public int filesPerCommit;
+
+        RlogGenerator generator;
+
+        @Setup
+        public void setup() {
+            generator = RlogGenerator.ofLines(lines, revisions, branches, tags, filesPerCommit);
+        }
+    }
+
+    @Benchmark
+    public CvsChangeSet mapHeadLog(final RlogState state) throws IOException {
+        return map(state.generator, new CvsRepositoryLocation.HeadRepositoryLocation());
+    }
+
+    @Benchmark
+    public CvsChangeSet mapBranchLog(final RlogState state) throws IOException {
+        return map(state.generator, new CvsRepositoryLocation.BranchRepositoryLocation("BRANCH_1", false));
+    }
+
+    static CvsChangeSet map(final RlogGenerator generator, final CvsRepositoryLocation location) throws IOException {
+        return new CvsLog() {
+            @Override
+            protected Reader read() {
+                return generator.read();
+            }
+
+            @Override
+            protected void dispose() {
+            }
+        }.mapCvsLog(RlogGenerator.CVS_ROOT, location, null, new EnvVars());
+    }
+
+}
@@ -0,0 +1,56 @@
+package hudson.scm;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CvsMetricsTest {
+
+    @BeforeEach
+    void setUp() {
+        CvsMetrics.reset();
+    }
+
+    @Test
+    void testPasswordIsRemovedFromCvsRoot() {
+        assertEquals(":pserver:user@host:/cvs", CvsMetrics.sanitise(":pserver:user:secret@host:/cvs"));
+        assertEquals(":pserver:user@host:2401/cvs", CvsMetrics.sanitise(":pserver:user@host:2401/cvs"));
+        assertEquals(":local:/var/cvs", CvsMetrics.sanitise(":local:/var/cvs"));
+        assertEquals(CvsMetrics.ALL_REPOSITORIES, CvsMetrics.sanitise(null));
+    }
+
+    @Test
+    void testTimingsAndCountersAreGroupedByRoot() {
+        CvsMetrics.start(":pserver:user:secret@host:/cvs", "checkout").stop(true);
+        CvsMetrics.start(":pserver:user@host:/cvs", "checkout").stop(false);
+        CvsMetrics.count(":pserver:user@host:/cvs", CvsMetrics.COUNTER_FILES, 3);
+        CvsMetrics.count(":pserver:user@host:/cvs", CvsMetrics.COUNTER_FILES, 2);
+
+        JSONObject root = CvsMetrics.toJson().getJSONObject("roots").getJSONObject(":pserver:user@host:/cvs");
+        JSONObject checkout = root.getJSONObject("operations").getJSONObject("checkout");
+        assertEquals(2, checkout.getLong("count"));
+        assertEquals(1, checkout.getLong("failures"));
+        assertEquals(5, root.getJSONObject("counters").getLong(CvsMetrics.COUNTER_FILES));
+        assertFalse(CvsMetrics.toJson().toString().contains("secret"));
+    }
+
+    @Test
+    void testLatenciesAreBucketed() {
+        CvsMetrics.Timer timer = new CvsMetrics.Timer();
+        timer.record(5000000L, true);
+        timer.record(75000000L, true);
+        timer.record(3600000000000L, true);
+
+        JSONArray histogram = timer.toJson().getJSONArray("histogram");
+        assertEquals(CvsMetrics.BUCKETS.length + 1, histogram.size());
+        assertEquals(1, histogram.getJSONObject(0).getLong("count"));
+        assertEquals(1, histogram.getJSONObject(2).getLong("count"));
+        assertEquals("+Inf", histogram.getJSONObject(CvsMetrics.BUCKETS.length).getString("le"));
+        assertEquals(1, histogram.getJSONObject(CvsMetrics.BUCKETS.length).getLong("count"));
+    }
+
+}
@@ -0,0 +1,59 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CvsProjectsetParserTest {
+
+    private static final String PSF = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<psf version=\"2.0\">\n"
+            + "<provider id=\"org.eclipse.team.cvs.core.cvsnature\">\n"
+            + "<project reference=\"1.0,:pserver:cvs.example.org:/cvsroot,apps/core,core\"/>\n"
+            + "<project reference=\"1.0,:extssh:cvs-2.example.org:2401/var/cvs,libs/util,util-lib,RELEASE_1_X\"/>\n"
+            + "<project reference=\"1.0,:pserver:cvs.example.org:/cvsroot,apps/ui,ui,\"/>\n"
+            + "<project reference=\"1.0,:pserver:bad host:/cvsroot,apps/other,other\"/>\n"
+            + "<project reference=\"1.0,not a cvs root\"/>\n"
+            + "</provider>\n"
+            + "</psf>\n";
+
+    @Test
+    void testValidReferencesAreParsed() {
+        List<CvsProjectsetParser.ProjectReference> references = CvsProjectsetParser.parse(PSF);
+
+        assertEquals(3, references.size());
+
+        CvsProjectsetParser.ProjectReference head = references.get(0);
+        assertEquals(":pserver:cvs.example.org:/cvsroot", head.getCvsRoot());
+        assertEquals(":pserver:", head.getMethod());
+        assertEquals("cvs.example.org", head.getHost());
+        assertNull(head.getPort());
+        assertEquals("/cvsroot", head.getPath());
+        assertEquals("apps/core", head.getModule());
+        assertEquals("core", head.getProject());
+        assertNull(head.getBranch());
+
+        CvsProjectsetParser.ProjectReference branch = references.get(1);
+        assertEquals(":extssh:", branch.getMethod());
+        assertEquals("cvs-2.example.org", branch.getHost());
+        assertEquals("2401", branch.getPort());
+        assertEquals("/var/cvs", branch.getPath());
+        assertEquals("libs/util", branch.getModule());
+        assertEquals("util-lib", branch.getProject());
+        assertEquals("RELEASE_1_X", branch.getBranch());
+
+        assertEquals("apps/ui", references.get(2).getModule());
+        assertNull(references.get(2).getBranch());
+    }
+
+    @Test
+    void testUnterminatedReferenceIsIgnored() {
+        assertTrue(CvsProjectsetParser.parse("<project reference=\"1.0,:pserver:host:/cvsroot,a,b").isEmpty());
+        assertTrue(CvsProjectsetParser.parse("<project reference=\"1.0,:pserver:host:/cvsroot,a,b\">").isEmpty());
+    }
+
+}
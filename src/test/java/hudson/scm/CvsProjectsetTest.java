@@ -0,0 +1,238 @@
+package hudson.scm;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithJenkins
+class CvsProjectsetTest {
+
+    private static final String SERVER = ":pserver:cvs.example.org:/cvsroot";
+    private static final String OTHER_SERVER = ":pserver:cvs-2.example.org:/cvsroot";
+
+    private JenkinsRule r;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        r = rule;
+    }
+
+    @Test
+    void testProjectOutputIsPrefixedLineByLine() throws IOException {
+        ByteArrayOutputStream buildLog = new ByteArrayOutputStream();
+        PrintStream logger = new PrintStream(buildLog, true, "UTF-8");
+        CvsProjectset.ProjectLog first = new CvsProjectset.ProjectLog(logger, "core", StandardCharsets.UTF_8);
+        CvsProjectset.ProjectLog second = new CvsProjectset.ProjectLog(logger, "ui, docs", StandardCharsets.UTF_8);
+
+        first.write("U core/a.txt\nU core/".getBytes(StandardCharsets.UTF_8));
+        second.write("U ui/\u00e9t\u00e9.txt\n".getBytes(StandardCharsets.UTF_8));
+        first.write("b.txt\n".getBytes(StandardCharsets.UTF_8));
+        second.write("cvs update: done".getBytes(StandardCharsets.UTF_8));
+        second.close();
+        first.close();
+        logger.println("after");
+
+        assertEquals("[core] U core/a.txt\n[ui, docs] U ui/\u00e9t\u00e9.txt\n[core] U core/b.txt\n"
+                + "[ui, docs] cvs update: done\nafter" + System.lineSeparator(),
+                new String(buildLog.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWorkspaceIsNotNeededForPolling() {
+        assertFalse(new FakeProjectset(false, SERVER + ",core").requiresWorkspaceForPolling());
+    }
+
+    @Test
+    void testInnerProjectsAreCheckedOutInParallel() throws Exception {
+        FakeProjectset scm = new FakeProjectset(false, SERVER + ",core", SERVER + ",ui", SERVER + ",docs");
+        // no project finishes until all three have started
+        scm.started = new CountDownLatch(3);
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.setScm(scm);
+
+        FreeStyleBuild build = r.buildAndAssertSuccess(p);
+
+        assertEquals(Collections.emptyList(), scm.waitedTooLong);
+        for (String module : new String[]{"core", "ui", "docs"}) {
+            assertTrue(build.getWorkspace().child(module + "/f").exists(), module);
+            r.assertLogContains("[" + module + "] U " + module + "/f", build);
+        }
+    }
+
+    @Test
+    void testCheckoutsAreLimitedForEachServer() throws Exception {
+        List<String> references = new ArrayList<String>();
+        for (int i = 0; i < CvsProjectset.MAX_CHECKOUTS_PER_SERVER + 2; i++) {
+            references.add(SERVER + ",project" + i);
+        }
+        references.add(OTHER_SERVER + ",other0");
+        references.add(OTHER_SERVER + ",other1");
+        FakeProjectset scm = new FakeProjectset(false, references.toArray(new String[references.size()]));
+        // the other server's projects don't wait for a checkout slot on the first one
+        scm.started = new CountDownLatch(CvsProjectset.MAX_CHECKOUTS_PER_SERVER + 2);
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.setScm(scm);
+
+        r.buildAndAssertSuccess(p);
+
+        assertEquals(Collections.emptyList(), scm.waitedTooLong);
+        assertEquals(references.size(), scm.checkouts.size());
+        assertEquals(CvsProjectset.MAX_CHECKOUTS_PER_SERVER, (int) scm.mostRunning.get("cvs.example.org"));
+        assertEquals(2, (int) scm.mostRunning.get("cvs-2.example.org"));
+    }
+
+    @Test
+    void testFailedProjectIsCleanedAndCheckedOutAgain() throws Exception {
+        FakeProjectset scm = new FakeProjectset(true, SERVER + ",core", SERVER + ",ui");
+        scm.failures.put("ui", 1);
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.setScm(scm);
+
+        FreeStyleBuild build = r.buildAndAssertSuccess(p);
+
+        assertEquals(1, Collections.frequency(scm.checkouts, "core"));
+        assertEquals(2, Collections.frequency(scm.checkouts, "ui"));
+        // only the project that failed is removed before it's checked out again
+        assertEquals(Collections.emptyList(), scm.alreadyThere);
+        assertTrue(build.getWorkspace().child("core/f").exists());
+        assertTrue(build.getWorkspace().child("ui/f").exists());
+        r.assertLogContains("Cleaning " + build.getWorkspace().child("ui").getRemote(), build);
+        r.assertLogNotContains("Cleaning " + build.getWorkspace().child("core").getRemote(), build);
+    }
+
+    @Test
+    void testFailedProjectFailsTheBuildWithoutCleanOnFailedUpdate() throws Exception {
+        FakeProjectset scm = new FakeProjectset(false, SERVER + ",core", SERVER + ",ui");
+        scm.failures.put("ui", 1);
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.setScm(scm);
+
+        FreeStyleBuild build = r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+
+        assertEquals(1, Collections.frequency(scm.checkouts, "ui"));
+        assertTrue(build.getWorkspace().child("ui/f").exists());
+        r.assertLogNotContains("Cleaning", build);
+    }
+
+    /**
+     * A projectset whose projectset file and inner projects are written straight to the workspace, recording how
+     * the inner projects are checked out rather than contacting a CVS server.
+     */
+    public static class FakeProjectset extends CvsProjectset {
+
+        private final String projectset;
+
+        private transient CountDownLatch started;
+        private final transient Map<String, Integer> failures = new HashMap<String, Integer>();
+        private final transient List<String> checkouts = new ArrayList<String>();
+        private final transient List<String> alreadyThere = new ArrayList<String>();
+        private final transient List<String> waitedTooLong = new ArrayList<String>();
+        private final transient Map<String, Integer> running = new HashMap<String, Integer>();
+        private final transient Map<String, Integer> mostRunning = new HashMap<String, Integer>();
+
+        /**
+         * @param references the CVS root and module of each inner project, separated by a comma
+         */
+        FakeProjectset(final boolean cleanOnFailedUpdate, final String... references) {
+            super(new CvsRepository[]{new CvsRepository(SERVER, false, null,
+                    Collections.singletonList(new CvsRepositoryItem(new CvsRepositoryLocation.HeadRepositoryLocation(),
+                            new CvsModule[]{new CvsModule("projectset", "projectset", "projects.psf")})),
+                    new ArrayList<ExcludedRegion>(), 3, null)},
+                    true, null, null, null, true, false, false, cleanOnFailedUpdate, false);
+            StringBuilder contents = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<psf version=\"2.0\">\n"
+                    + "<provider id=\"org.eclipse.team.cvs.core.cvsnature\">\n");
+            for (String reference : references) {
+                String module = reference.substring(reference.lastIndexOf(',') + 1);
+                contents.append("<project reference=\"1.0,").append(reference).append(",").append(module)
+                        .append("\"/>\n");
+            }
+            projectset = contents.append("</provider>\n</psf>\n").toString();
+        }
+
+        @Override
+        protected boolean checkout(final CvsRepository[] repositories, final boolean isFlatten,
+                                   final FilePath workspace, final boolean canUseUpdate, final Run<?, ?> build,
+                                   final String dateStamp, final boolean pruneEmptyDirectories,
+                                   final boolean cleanOnFailedUpdate, final TaskListener listener)
+                throws IOException, InterruptedException {
+            if (repositories == getRepositories()) {
+                workspace.child("projectset/projects.psf").write(projectset, "UTF-8");
+                return true;
+            }
+
+            boolean success = true;
+            for (CvsRepository repository : repositories) {
+                final String server = CvsRepository.getServerName(repository.getCvsRoot());
+                final String module = repository.getRepositoryItems()[0].getModules()[0].getCheckoutName();
+                final FilePath location = workspace.child(module);
+                synchronized (this) {
+                    if (location.exists()) {
+                        alreadyThere.add(module);
+                    }
+                    Integer now = running.get(server);
+                    now = now == null ? 1 : now + 1;
+                    running.put(server, now);
+                    Integer most = mostRunning.get(server);
+                    if (most == null || most < now) {
+                        mostRunning.put(server, now);
+                    }
+                }
+                try {
+                    location.child("f").write(module, "UTF-8");
+                    listener.getLogger().println("U " + module + "/f");
+                    final CountDownLatch latch = started;
+                    if (latch != null) {
+                        latch.countDown();
+                        if (!latch.await(10, TimeUnit.SECONDS)) {
+                            synchronized (this) {
+                                waitedTooLong.add(module);
+                            }
+                        }
+                    }
+                } finally {
+                    synchronized (this) {
+                        running.put(server, running.get(server) - 1);
+                    }
+                }
+                synchronized (this) {
+                    checkouts.add(module);
+                    Integer remaining = failures.get(module);
+                    if (remaining != null && remaining > 0) {
+                        failures.put(module, remaining - 1);
+                        success = false;
+                    }
+                }
+            }
+            return success;
+        }
+
+        @TestExtension
+        public static class DescriptorImpl extends CvsProjectsetDescriptor {
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CvsSymbolicNameIndexTest {
+
+    private final CvsSymbolicNameIndex index = CvsSymbolicNameIndex.of(
+            Arrays.asList("release_1_x", "RELEASE_2_X", "feature-login"),
+            Arrays.asList("release_1_0", "release_1_1", "Release_2_0", "beta"));
+
+    @Test
+    void testPrefixSearchIgnoresCase() {
+        assertEquals(Arrays.asList("release_1_0", "release_1_1", "release_1_x", "Release_2_0", "RELEASE_2_X"),
+                index.search("rel", 10));
+        assertEquals(Arrays.asList("Release_2_0", "RELEASE_2_X"), index.search("RELEASE_2", 10));
+        assertEquals(Collections.emptyList(), index.search("zzz", 10));
+    }
+
+    @Test
+    void testSearchHonoursLimit() {
+        List<String> matches = index.search("release", 2);
+        assertEquals(Arrays.asList("release_1_0", "release_1_1"), matches);
+        assertEquals(7, index.search("", 100).size());
+    }
+
+    @Test
+    void testContainsIsCaseSensitive() {
+        assertTrue(index.contains("Release_2_0"));
+        assertFalse(index.contains("release_2_0"));
+        assertFalse(index.contains("release"));
+        assertFalse(index.contains(null));
+    }
+
+    @Test
+    void testBranchesAndTagsAreSeparated() {
+        assertTrue(index.isBranch("RELEASE_2_X"));
+        assertFalse(index.isBranch("Release_2_0"));
+        assertEquals(Arrays.asList("feature-login", "release_1_x", "RELEASE_2_X"), index.getBranchNames());
+        assertEquals(Arrays.asList("beta", "release_1_0", "release_1_1", "Release_2_0"), index.getTagNames());
+    }
+
+}
@@ -0,0 +1,273 @@
+package hudson.scm;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import hudson.scm.cvstagging.CvsTagAction;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Drives checkouts, updates, polling and tagging of many jobs against a large synthetic repository served by
+ * {@link LocalCvsServer}, and writes the throughput and latency of each to a JSON report, along with the
+ * plugin's own {@link CvsMetrics}. Only runs when asked to, e.g.
+ * <pre>mvn test -Dtest=LoadTest -Dhudson.scm.LoadTest.run=true -Dhudson.scm.LoadTest.jobs=50</pre>
+ * The size of the repository and the load are set with the <tt>hudson.scm.LoadTest.*</tt> properties below, and
+ * the report goes to <tt>target/cvs-load-test.json</tt> unless <tt>hudson.scm.LoadTest.report</tt> says otherwise.
+ */
+@EnabledIfSystemProperty(named = "hudson.scm.LoadTest.run", matches = "true")
+@WithJenkins
+class LoadTest {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTest.class.getName());
+
+    private static final String PREFIX = LoadTest.class.getName();
+
+    private static final int MODULES = Integer.getInteger(PREFIX + ".modules", 10);
+    private static final int FILES = Integer.getInteger(PREFIX + ".files", 500);
+    private static final int REVISIONS = Integer.getInteger(PREFIX + ".revisions", 20);
+    private static final int BRANCHES = Integer.getInteger(PREFIX + ".branches", 5);
+    private static final int TAGS = Integer.getInteger(PREFIX + ".tags", 50);
+    private static final int LINES = Integer.getInteger(PREFIX + ".lines", 100);
+    private static final int JOBS = Integer.getInteger(PREFIX + ".jobs", 20);
+    private static final int EXECUTORS = Integer.getInteger(PREFIX + ".executors", 8);
+    private static final int POLLING_ROUNDS = Integer.getInteger(PREFIX + ".pollingRounds", 5);
+    private static final int TAGGING_TIMEOUT_MINUTES = Integer.getInteger(PREFIX + ".taggingTimeoutMinutes", 10);
+    private static final int CHANGED_FILES = Integer.getInteger(PREFIX + ".changedFiles", 10);
+
+    private JenkinsRule r;
+    @TempDir
+    private File tmp;
+    private LocalCvsServer server;
+    private SyntheticRepository repository;
+    private final JSONObject report = new JSONObject();
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) throws Exception {
+        r = rule;
+
+        assumeTrue(LocalCvsServer.isAvailable(), "CVS must be installed to run this test");
+        File repo = new File(tmp, "repo");
+        assertTrue(repo.mkdirs());
+        server = new LocalCvsServer(repo);
+        repository = new SyntheticRepository(MODULES, FILES, REVISIONS, BRANCHES, TAGS, LINES);
+
+        long start = System.nanoTime();
+        repository.create(repo);
+        report.put("generateMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        r.jenkins.setNumExecutors(EXECUTORS);
+        CvsMetrics.reset();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void load() throws Exception {
+        JSONObject configuration = new JSONObject();
+        configuration.put("modules", MODULES);
+        configuration.put("files", FILES);
+        configuration.put("revisions", REVISIONS);
+        configuration.put("branches", BRANCHES);
+        configuration.put("tags", TAGS);
+        configuration.put("lines", LINES);
+        configuration.put("jobs", JOBS);
+        configuration.put("executors", EXECUTORS);
+        report.put("configuration", configuration);
+
+        final List<FreeStyleProject> projects = new ArrayList<FreeStyleProject>();
+        for (int job = 0; job < JOBS; job++) {
+            projects.add(createProject(job));
+        }
+
+        report.put("checkout", build(projects));
+
+        commitChanges();
+        report.put("update", build(projects));
+
+        commitChanges();
+        Phase polling = new Phase();
+        ExecutorService pool = Executors.newFixedThreadPool(EXECUTORS);
+        try {
+            for (int round = 0; round < POLLING_ROUNDS; round++) {
+                List<Callable<Object>> polls = new ArrayList<Callable<Object>>();
+                for (final FreeStyleProject project : projects) {
+                    polls.add(polling.timed(new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return project.poll(TaskListener.NULL);
+                        }
+                    }));
+                }
+                for (Future<Object> poll : pool.invokeAll(polls)) {
+                    poll.get();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        report.put("polling", polling.finish());
+
+        // tags are requested all at once and queue up behind CvsTagQueue, so each is timed from the request
+        Phase tagging = new Phase();
+        List<CvsTagAction> actions = new ArrayList<CvsTagAction>();
+        for (FreeStyleProject project : projects) {
+            CvsTagAction action = project.getLastBuild().getAction(CvsTagAction.class);
+            action.perform("LOAD_" + project.getName().toUpperCase(), false, false);
+            actions.add(action);
+        }
+        long deadline = tagging.started + TimeUnit.MINUTES.toNanos(TAGGING_TIMEOUT_MINUTES);
+        for (CvsTagAction action : actions) {
+            while (action.isTagging()) {
+                if (System.nanoTime() - deadline > 0) {
+                    fail("tagging did not finish within " + TAGGING_TIMEOUT_MINUTES + " minutes for "
+                            + action.getBuild());
+                }
+                Thread.sleep(10);
+            }
+            tagging.record(System.nanoTime() - tagging.started);
+            assertTrue(action.isTagged(), "tagging failed for " + action.getBuild());
+        }
+        report.put("tagging", tagging.finish());
+
+        report.put("metrics", CvsMetrics.toJson());
+
+        File reportFile = new File(System.getProperty(PREFIX + ".report", "target/cvs-load-test.json"));
+        FileUtils.writeStringToFile(reportFile, report.toString(2), StandardCharsets.UTF_8);
+        LOGGER.info("CVS load test report written to " + reportFile.getAbsolutePath());
+    }
+
+    /**
+     * Jobs are spread over the modules, with every fourth one on a branch if there are any.
+     */
+    private FreeStyleProject createProject(final int job) throws IOException {
+        String module = SyntheticRepository.getModuleName(job % MODULES);
+        CvsRepositoryLocation location = BRANCHES > 0 && job % 4 == 3
+                ? new CvsRepositoryLocation.BranchRepositoryLocation(SyntheticRepository.getBranchName(job / 4 % BRANCHES + 1), false)
+                : new CvsRepositoryLocation.HeadRepositoryLocation();
+        FreeStyleProject p = r.createFreeStyleProject("job" + job);
+        p.setScm(new CVSSCM(Collections.singletonList(new CvsRepository(server.getCvsRoot(), false, null,
+                Collections.singletonList(new CvsRepositoryItem(location, new CvsModule[]{new CvsModule(module, module, null)})),
+                Collections.emptyList(), 3, null)), true, false, false, true, false, true, false, false));
+        return p;
+    }
+
+    /**
+     * Builds every job at once, as many at a time as there are executors.
+     */
+    private JSONObject build(final List<FreeStyleProject> projects) throws Exception {
+        Phase phase = new Phase();
+        List<Future<FreeStyleBuild>> builds = new ArrayList<Future<FreeStyleBuild>>();
+        for (FreeStyleProject project : projects) {
+            builds.add(project.scheduleBuild2(0));
+        }
+        for (Future<FreeStyleBuild> build : builds) {
+            phase.record(TimeUnit.MILLISECONDS.toNanos(r.assertBuildStatusSuccess(build).getDuration()));
+        }
+        return phase.finish();
+    }
+
+    /**
+     * Commits a change to the first few files of every module, so updates and polling have something to find.
+     */
+    private void commitChanges() throws Exception {
+        File work = new File(tmp, "work-" + System.nanoTime());
+        assertTrue(work.mkdirs());
+        for (int module = 0; module < MODULES; module++) {
+            String name = SyntheticRepository.getModuleName(module);
+            server.cvs(work, "checkout", name);
+            for (int file = 0; file < Math.min(CHANGED_FILES, FILES); file++) {
+                FileUtils.writeStringToFile(new File(work, name + "/" + SyntheticRepository.getFileName(file)),
+                        "changed at " + System.currentTimeMillis() + "\n", StandardCharsets.UTF_8, true);
+            }
+            server.cvs(new File(work, name), "commit", "-m", "load test change");
+        }
+        // the changes have to be in the past before a build or poll will pick them up
+        Thread.sleep(2000);
+    }
+
+    /**
+     * Latencies of one kind of operation, and the throughput over the whole phase.
+     */
+    private static final class Phase {
+
+        private final long started = System.nanoTime();
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+
+        void record(final long nanos) {
+            latencies.add(nanos);
+        }
+
+        <T> Callable<T> timed(final Callable<T> operation) {
+            return new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    long start = System.nanoTime();
+                    try {
+                        return operation.call();
+                    } finally {
+                        record(System.nanoTime() - start);
+                    }
+                }
+            };
+        }
+
+        JSONObject finish() {
+            long elapsed = System.nanoTime() - started;
+            List<Long> sorted = new ArrayList<Long>(latencies);
+            Collections.sort(sorted);
+            JSONObject json = new JSONObject();
+            json.put("count", sorted.size());
+            json.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            json.put("perSecond", sorted.size() * 1e9 / elapsed);
+            if (!sorted.isEmpty()) {
+                long total = 0;
+                for (long latency : sorted) {
+                    total += latency;
+                }
+                json.put("meanMillis", TimeUnit.NANOSECONDS.toMillis(total / sorted.size()));
+                json.put("minMillis", TimeUnit.NANOSECONDS.toMillis(sorted.get(0)));
+                json.put("p50Millis", percentile(sorted, 50));
+                json.put("p90Millis", percentile(sorted, 90));
+                json.put("p99Millis", percentile(sorted, 99));
+                json.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(sorted.get(sorted.size() - 1)));
+            }
+            return json;
+        }
+
+        private static long percentile(final List<Long> sorted, final int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+        }
+    }
+
+}
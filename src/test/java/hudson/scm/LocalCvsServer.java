@@ -0,0 +1,131 @@
+package hudson.scm;
+
+import hudson.Launcher;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.LogTaskListener;
+import hudson.util.StreamTaskListener;
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A CVS repository served over pserver on a local port, by starting <tt>cvs pserver</tt> for each connection.
+ * Needs CVS to be installed.
+ */
+final class LocalCvsServer implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(LocalCvsServer.class.getName());
+
+    private final File repo;
+    private final ServerSocket sock;
+
+    static boolean isAvailable() {
+        // TODO switch to docker-fixtures:
+        return new File("/usr/bin/cvs").canExecute();
+    }
+
+    LocalCvsServer(final File repo) throws IOException, InterruptedException {
+        this.repo = repo;
+        int r = new Launcher.LocalLauncher(StreamTaskListener.fromStderr()).launch().cmds("cvs", "-d", repo.getAbsolutePath(), "init").join();
+        if (r != 0) {
+            throw new IOException("command failed: " + r);
+        }
+        // TODO is there a simpler way to ask pserver to run without trying to setuid?
+        FileUtils.writeStringToFile(new File(repo, "CVSROOT/passwd"), System.getProperty("user.name") + ":\n", StandardCharsets.UTF_8);
+        sock = new ServerSocket();
+        sock.bind(new InetSocketAddress(0));
+        LOGGER.log(Level.INFO, "listening at {0}", getCvsRoot());
+        new Thread("listen") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket s;
+                        try {
+                            s = sock.accept();
+                        } catch (SocketException x) {
+                            // Socket closed?
+                            break;
+                        }
+                        LOGGER.info("accepted client connection");
+                        ProcessBuilder pb = new ProcessBuilder("cvs", "-f", "--allow-root=" + repo, "pserver");
+                        final Process server = pb.start();
+                        new Thread("printing errors") {
+                            @Override
+                            public void run() {
+                                try {
+                                    copy(server.getErrorStream(), new LogTaskListener(LOGGER, Level.INFO).getLogger());
+                                } catch (IOException x) {
+                                    LOGGER.log(Level.WARNING, "failed to copy errors", x);
+                                }
+                            }
+                        }.start();
+                        new Thread("sending output") {
+                            @Override
+                            public void run() {
+                                try {
+                                    copy(server.getInputStream(), /*new TeeOutputStream(*/s.getOutputStream()/*, System.err)*/);
+                                } catch (SocketException x) {
+                                    // Broken pipe? Ignore.
+                                } catch (IOException x) {
+                                    LOGGER.log(Level.WARNING, "failed to copy output", x);
+                                }
+                            }
+                        }.start();
+                        new Thread("accepting input") {
+                            @Override
+                            public void run() {
+                                try {
+                                    InputStream is = s.getInputStream();
+                                    OutputStream os = server.getOutputStream();
+                                    copy(is, /*new TeeOutputStream(*/os/*, System.err)*/);
+                                } catch (IOException x) {
+                                    LOGGER.log(Level.WARNING, "failed to copy input", x);
+                                }
+                            }
+                        }.start();
+                    }
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "failed to start server or open socket", x);
+                }
+            }
+        }.start();
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        int b;
+        while ((b = is.read()) != -1) {
+            os.write(b);
+            os.flush();
+        }
+    }
+
+    String getCvsRoot() {
+        return ":pserver:" + sock.getInetAddress().getHostAddress() + ":" + sock.getLocalPort() + repo.getAbsolutePath().replace('\\', '/');
+    }
+
+    void cvs(File wd, String... args) throws IOException, InterruptedException {
+        int r = new Launcher.LocalLauncher(StreamTaskListener.fromStderr()).launch().cmds(new ArgumentListBuilder("cvs").add(args)).envs("CVSROOT=" + getCvsRoot()).pwd(wd).join();
+        if (r != 0) {
+            throw new IOException("command failed: " + r);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // TODO if necessary, kill all threads & destroy() any server processes still running
+        sock.close();
+    }
+
+}
@@ -0,0 +1,98 @@
+package hudson.scm;
+
+import hudson.EnvVars;
+import hudson.XmlFile;
+import hudson.scm.browsers.ViewCVS;
+import hudson.util.XStream2;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PollingWatermarkTest {
+
+    @TempDir
+    private File root;
+
+    private final String repository = PollingWatermark.getKey(new CvsRepository(":local:/cvs", false, null,
+            new ArrayList<CvsRepositoryItem>(), new ArrayList<ExcludedRegion>(), 3, null), new EnvVars());
+
+    @Test
+    void testLaterRevisionsReplaceEarlierChanges() {
+        PollingWatermark watermark = new PollingWatermark(1, new Date());
+        watermark.addChanges(repository, Arrays.asList(CvsFile.make("a", "1.2", false), CvsFile.make("b", "1.4", false)));
+        watermark.addChanges(repository, Arrays.asList(CvsFile.make("a", "1.3", false)));
+
+        assertEquals(Arrays.asList(CvsFile.make("b", "1.4", false), CvsFile.make("a", "1.3", false)),
+                watermark.getChanges(repository));
+    }
+
+    @Test
+    void testRestoreBringsBuildStateUpToDate() {
+        PollingWatermark watermark = new PollingWatermark(1, new Date());
+        watermark.addChanges(repository, Arrays.asList(CvsFile.make("a", "1.3", false),
+                CvsFile.make("b", "1.2", true), CvsFile.make("c", "1.1", false)));
+
+        List<CvsFile> state = new ArrayList<CvsFile>(Arrays.asList(CvsFile.make("a", "1.2", false),
+                CvsFile.make("b", "1.1", false), CvsFile.make("d", "1.5", false)));
+        watermark.restore(repository, state);
+        assertEquals(3, state.size());
+        assertEquals(new HashSet<CvsFile>(Arrays.asList(CvsFile.make("d", "1.5", false),
+                CvsFile.make("a", "1.3", false), CvsFile.make("c", "1.1", false))), new HashSet<CvsFile>(state));
+
+        // a state the earlier polls already brought up to date is left as it is
+        List<CvsFile> restored = new ArrayList<CvsFile>(state);
+        watermark.restore(repository, state);
+        assertEquals(restored, state);
+    }
+
+    @Test
+    void testChangesSeenByEarlierPollsAreIgnored() {
+        PollingWatermark watermark = new PollingWatermark(1, new Date());
+        watermark.addChanges(repository, Arrays.asList(CvsFile.make("a", "1.3", false), CvsFile.make("b", "1.2", true)));
+        List<CvsFile> state = new ArrayList<CvsFile>(Arrays.asList(CvsFile.make("a", "1.3", false)));
+
+        List<CvsFile> changes = watermark.removeKnownChanges(repository, Arrays.asList(CvsFile.make("a", "1.3", false),
+                CvsFile.make("b", "1.2", true), CvsFile.make("a", "1.4", false)), state);
+
+        assertEquals(Arrays.asList(CvsFile.make("a", "1.4", false)), changes);
+    }
+
+    @Test
+    void testChangesAreFoundAfterReloadingForRepositoryWithBrowser() throws Exception {
+        PollingWatermark watermark = new PollingWatermark(1, new Date());
+        watermark.addChanges(PollingWatermark.getKey(newRepositoryWithBrowser(), new EnvVars()),
+                Arrays.asList(CvsFile.make("module/a", "1.3", false)));
+        XmlFile file = new XmlFile(new XStream2(), new File(root, "cvs-polling.xml"));
+        file.write(watermark);
+
+        PollingWatermark reloaded = (PollingWatermark) file.read();
+
+        // the job's configuration is loaded separately, so holds its own browser
+        assertEquals(Arrays.asList(CvsFile.make("module/a", "1.3", false)),
+                reloaded.getChanges(PollingWatermark.getKey(newRepositoryWithBrowser(), new EnvVars())));
+    }
+
+    @Test
+    void testPollingStartsBeforeTheLastPoll() {
+        Date pollDate = new Date();
+        assertEquals(pollDate.getTime() - PollingWatermark.OVERLAP,
+                new PollingWatermark(1, pollDate).getStartTime().getTime());
+    }
+
+    private static CvsRepository newRepositoryWithBrowser() throws Exception {
+        CvsRepositoryItem item = new CvsRepositoryItem(new CvsRepositoryLocation.HeadRepositoryLocation(),
+                new CvsModule[] {new CvsModule("module", "")});
+        return new CvsRepository(":pserver:user@host:/cvs", false, null, Arrays.asList(item),
+                new ArrayList<ExcludedRegion>(), 3, new ViewCVS(new URL("http://host/viewcvs/")));
+    }
+
+}
@@ -0,0 +1,166 @@
+package hudson.scm;
+
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostCheckoutWalkerTest {
+
+    @TempDir
+    private File workspace;
+
+    @Test
+    void testNestedEmptyDirectoriesAreRemoved() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        File empty = cvsDirectory(module, "empty");
+        cvsDirectory(empty, "alsoEmpty");
+        File kept = cvsDirectory(module, "kept");
+        addFile(kept, "file.txt", "1.1");
+
+        walk(module, true);
+
+        assertTrue(module.isDirectory());
+        assertFalse(empty.exists());
+        assertTrue(new File(kept, "file.txt").isFile());
+    }
+
+    @Test
+    void testEmptyDirectoriesAreKeptWithoutPruning() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        File empty = cvsDirectory(module, "empty");
+
+        walk(module, false);
+
+        assertTrue(empty.isDirectory());
+    }
+
+    @Test
+    void testModuleDirectoryIsNeverRemoved() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+
+        walk(module, true);
+
+        assertTrue(new File(module, "CVS").isDirectory());
+    }
+
+    @Test
+    void testDirectoriesNotUnderCvsControlAreKept() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        File target = new File(module, "target");
+        assertTrue(target.mkdir());
+        File holder = cvsDirectory(module, "holder");
+        assertTrue(new File(holder, "generated").mkdir());
+
+        walk(module, true);
+
+        assertTrue(target.isDirectory());
+        assertTrue(holder.isDirectory());
+    }
+
+    @Test
+    void testSymbolicLinksAreNotFollowed() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        File linked = cvsDirectory(workspace, "linked");
+        addFile(linked, "linked.txt", "1.1");
+        File link = new File(module, "link");
+        try {
+            Files.createSymbolicLink(link.toPath(), linked.toPath());
+        } catch (UnsupportedOperationException ex) {
+            return;
+        }
+
+        List<CvsFile> files = walk(module, true);
+
+        assertTrue(files.isEmpty());
+        assertTrue(Files.isSymbolicLink(link.toPath()));
+        assertTrue(new File(linked, "CVS").isDirectory());
+    }
+
+    @Test
+    void testFilesAreCollectedUnderTheRemoteName() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        addFile(module, "top.txt", "1.3");
+        File sub = cvsDirectory(module, "sub");
+        addFile(sub, "inner.txt", "1.2.2.1");
+        // an entry whose file has been removed from the workspace isn't part of the state
+        Files.write(new File(module, "CVS/Entries").toPath(),
+                "/missing.txt/1.1///\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        List<CvsFile> files = walk(module, true);
+
+        assertEquals(Arrays.asList(CvsFile.make("remote/top.txt", "1.3"), CvsFile.make("remote/sub/inner.txt", "1.2.2.1")),
+                files);
+    }
+
+    @Test
+    void testLargeModulesAreWalkedLikeSmallOnes() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        addFile(module, "top.txt", "1.1");
+        Set<CvsFile> expected = new HashSet<CvsFile>(Arrays.asList(CvsFile.make("remote/top.txt", "1.1")));
+        for (int i = 0; i < 12; i++) {
+            File directory = cvsDirectory(module, "dir" + i);
+            if (i % 3 == 0) {
+                cvsDirectory(directory, "empty");
+            } else {
+                addFile(cvsDirectory(directory, "sub"), "file.txt", "1." + i);
+                expected.add(CvsFile.make("remote/dir" + i + "/sub/file.txt", "1." + i));
+            }
+        }
+
+        List<CvsFile> files = walk(module, true);
+
+        assertEquals(CvsFile.make("remote/top.txt", "1.1"), files.get(0));
+        assertEquals(expected, new HashSet<CvsFile>(files));
+        for (int i = 0; i < 12; i++) {
+            assertEquals(i % 3 != 0, new File(module, "dir" + i).exists());
+        }
+    }
+
+    @Test
+    void testStickyTagFileIsRemoved() throws IOException {
+        File module = cvsDirectory(workspace, "module");
+        addFile(module, "top.txt", "1.3");
+        File tagFile = new File(module, "CVS/Tag");
+        Files.write(tagFile.toPath(), "THEAD\n".getBytes(StandardCharsets.UTF_8));
+
+        PostCheckoutWalker.walk(module, new PostCheckoutWalker.ModuleWalk("module", "remote", false, false, true),
+                TaskListener.NULL);
+
+        assertFalse(tagFile.exists());
+    }
+
+    private static List<CvsFile> walk(final File module, final boolean prune) throws IOException {
+        return PostCheckoutWalker.walk(module, new PostCheckoutWalker.ModuleWalk("module", "remote", prune, false, false),
+                TaskListener.NULL).getFiles();
+    }
+
+    private static File cvsDirectory(final File parent, final String name) throws IOException {
+        File directory = new File(parent, name);
+        assertTrue(new File(directory, "CVS").mkdirs());
+        assertTrue(new File(directory, "CVS/Entries").createNewFile());
+        return directory;
+    }
+
+    private static void addFile(final File directory, final String name, final String revision) throws IOException {
+        assertTrue(new File(directory, name).createNewFile());
+        Files.write(new File(directory, "CVS/Entries").toPath(),
+                ("/" + name + "/" + revision + "/Thu Jan  1 00:00:00 2009//\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+    }
+
+}
@@ -0,0 +1,86 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReferenceWorkspaceCacheTest {
+
+    @TempDir
+    private File directory;
+
+    @Test
+    void testCopyKeepsModificationTimes() throws IOException {
+        File source = new File(directory, "source");
+        assertTrue(new File(source, "CVS").mkdirs());
+        File file = new File(source, "file.txt");
+        Files.write(file.toPath(), "contents".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(1234000L));
+
+        File target = new File(directory, "target");
+        long size = ReferenceWorkspaceCache.copyTree(source.toPath(), target.toPath(), false);
+
+        assertEquals(8, size);
+        assertEquals(1234000L, new File(target, "file.txt").lastModified());
+        assertTrue(new File(target, "CVS").isDirectory());
+    }
+
+    @Test
+    void testLeastRecentlyUsedReferencesAreEvicted() throws IOException {
+        File oldest = reference("oldest", 100, 1000000L);
+        File middle = reference("middle", 100, 2000000L);
+        File newest = reference("newest", 100, 3000000L);
+
+        ReferenceWorkspaceCache.evict(directory, 250);
+
+        assertFalse(oldest.exists());
+        assertTrue(middle.exists());
+        assertTrue(newest.exists());
+    }
+
+    @Test
+    void testReferenceInUseIsNotEvicted() throws IOException {
+        File oldest = reference("oldest", 100, 1000000L);
+        File middle = reference("middle", 100, 2000000L);
+        File newest = reference("newest", 100, 3000000L);
+
+        ReadWriteLock lock = ReferenceWorkspaceCache.getLock(oldest);
+        lock.readLock().lock();
+        try {
+            ReferenceWorkspaceCache.evict(directory, 250);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        assertTrue(oldest.exists());
+        assertFalse(middle.exists());
+        assertTrue(newest.exists());
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    void testKeyDependsOnLocation() {
+        assertEquals(ReferenceWorkspaceCache.getKey(":pserver:host:/cvsroot", "module", CvsRepositoryLocationType.HEAD, null),
+                ReferenceWorkspaceCache.getKey(":pserver:host:/cvsroot", "module", CvsRepositoryLocationType.HEAD, null));
+        assertFalse(ReferenceWorkspaceCache.getKey(":pserver:host:/cvsroot", "module", CvsRepositoryLocationType.BRANCH, "b1")
+                .equals(ReferenceWorkspaceCache.getKey(":pserver:host:/cvsroot", "module", CvsRepositoryLocationType.BRANCH, "b2")));
+    }
+
+    private File reference(final String name, final long size, final long lastUsed) throws IOException {
+        File reference = new File(directory, name);
+        assertTrue(reference.mkdir());
+        Files.write(new File(reference, ".reference-size").toPath(), Long.toString(size).getBytes(StandardCharsets.UTF_8));
+        assertTrue(reference.setLastModified(lastUsed));
+        return reference;
+    }
+
+}
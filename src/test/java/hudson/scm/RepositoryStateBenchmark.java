@@ -0,0 +1,70 @@
+package hudson.scm;
+
+import hudson.model.TaskListener;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The work polling does once the changed files are known: merging them into the previous build's state and
+ * filtering out excluded regions.
+ */
+@JmhBenchmark
+public class RepositoryStateBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+
+        @Param({"1000", "10000", "100000"})
+        public int files;
+
+        @Param({"10", "1000"})
+        public int changes;
+
+        @Param({"1", "10"})
+        public int excludedRegions;
+
+        List<CvsFile> remoteFiles;
+        List<CvsFile> changedFiles;
+        List<Pattern> excludePatterns;
+
+        @Setup
+        public void setup() {
+            remoteFiles = new ArrayList<CvsFile>();
+            for (int i = 0; i < files; i++) {
+                remoteFiles.add(CvsFile.make(RlogGenerator.getFileName(i), "1.1"));
+            }
+            changedFiles = new ArrayList<CvsFile>();
+            final int step = Math.max(1, files / changes);
+            for (int i = 0; i < changes; i++) {
+                // every other change is to a file that isn't in the previous state yet
+                final int file = i % 2 == 0 ? i * step % files : files + i;
+                changedFiles.add(CvsFile.make(RlogGenerator.getFileName(file), "1.2", i % 10 == 9));
+            }
+            excludePatterns = new ArrayList<Pattern>();
+            for (int i = 0; i < excludedRegions; i++) {
+                excludePatterns.add(Pattern.compile(RlogGenerator.MODULE + "/dir" + i + "/.*\\.xml"));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<CvsFile> mergeRemoteState(final RepositoryState state) {
+        final List<CvsFile> remoteFiles = new ArrayList<CvsFile>(state.remoteFiles);
+        AbstractCvs.mergeRemoteState(remoteFiles, state.changedFiles);
+        return remoteFiles;
+    }
+
+    @Benchmark
+    public List<CvsFile> filterExcludedChanges(final RepositoryState state) {
+        return AbstractCvs.filterExcludedChanges(state.changedFiles, state.excludePatterns, TaskListener.NULL);
+    }
+
+}
@@ -0,0 +1,140 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevisionBlobCacheTest {
+
+    private static final String NAMESPACE = RevisionBlobCache.getNamespace(":pserver:host:/cvsroot",
+            CvsRepositoryLocationType.HEAD, null);
+
+    @TempDir
+    private File directory;
+
+    @Test
+    void testRestoredFilesAreRecordedAsCheckedOut() throws IOException {
+        File cache = new File(directory, "cache");
+        RevisionBlobCache.Target target = new RevisionBlobCache.Target(cache.getAbsolutePath(), NAMESPACE, Long.MAX_VALUE);
+
+        File checkout = new File(directory, "checkout");
+        File file = checkedOutFile(checkout, "Main.java", "class Main {}", "/Main.java/1.4/%s//");
+        RevisionBlobCache.store(target, "apps/core/src/Main.java", file,
+                RevisionBlobCache.readEntries(file.getParentFile()).get("Main.java"));
+
+        Map<String, String> files = new HashMap<String, String>();
+        files.put("src/Main.java", "1.4");
+        files.put("src/Other.java", "1.1");
+        File module = new File(directory, "module");
+        int restored = new RevisionBlobCache.Materialize(cache.getAbsolutePath(), NAMESPACE, ":pserver:host:/cvsroot",
+                "apps/core", "", files).invoke(module, null);
+
+        assertEquals(1, restored);
+        File restoredFile = new File(module, "src/Main.java");
+        assertEquals("class Main {}", new String(Files.readAllBytes(restoredFile.toPath()), StandardCharsets.UTF_8));
+        assertEquals(file.lastModified(), restoredFile.lastModified());
+        assertEquals("D/src////\n", read(new File(module, "CVS/Entries")));
+        assertEquals("apps/core/src\n", read(new File(module, "src/CVS/Repository")));
+        assertEquals(":pserver:host:/cvsroot\n", read(new File(module, "src/CVS/Root")));
+        assertTrue(read(new File(module, "src/CVS/Entries")).startsWith("/Main.java/1.4/"));
+        assertFalse(new File(module, "src/Other.java").exists());
+    }
+
+    @Test
+    void testNothingRestoredLeavesNoModule() throws IOException {
+        Map<String, String> files = new HashMap<String, String>();
+        files.put("src/Main.java", "1.4");
+        File module = new File(directory, "module");
+
+        assertEquals(0, (int) new RevisionBlobCache.Materialize(new File(directory, "cache").getAbsolutePath(),
+                NAMESPACE, ":pserver:host:/cvsroot", "apps/core", "", files).invoke(module, null));
+        assertFalse(module.exists());
+    }
+
+    @Test
+    void testModifiedFilesAreNotCached() throws IOException {
+        File cache = new File(directory, "cache");
+        RevisionBlobCache.Target target = new RevisionBlobCache.Target(cache.getAbsolutePath(), NAMESPACE, Long.MAX_VALUE);
+        File file = checkedOutFile(new File(directory, "checkout"), "Main.java", "class Main {}",
+                "/Main.java/1.4/Result of merge//");
+
+        RevisionBlobCache.store(target, "apps/core/src/Main.java", file,
+                RevisionBlobCache.readEntries(file.getParentFile()).get("Main.java"));
+
+        assertFalse(cache.exists());
+    }
+
+    @Test
+    void testStoringMarksTheNamespace() throws IOException {
+        File cache = new File(directory, "cache");
+        RevisionBlobCache.Target target = new RevisionBlobCache.Target(cache.getAbsolutePath(), NAMESPACE, Long.MAX_VALUE);
+        File file = checkedOutFile(new File(directory, "checkout"), "Main.java", "class Main {}", "/Main.java/1.4/%s//");
+
+        RevisionBlobCache.store(target, "apps/core/src/Main.java", file,
+                RevisionBlobCache.readEntries(file.getParentFile()).get("Main.java"));
+
+        assertTrue(new File(cache, RevisionBlobCache.getNamespaceMarker(NAMESPACE)).isFile());
+        assertFalse(new File(cache, RevisionBlobCache.getNamespaceMarker(RevisionBlobCache.getNamespace(
+                ":pserver:host:/cvsroot", CvsRepositoryLocationType.BRANCH, "b1"))).exists());
+    }
+
+    @Test
+    void testSizeIsTrackedAsRevisionsAreAdded() throws IOException {
+        File cache = new File(directory, "cache");
+        RevisionBlobCache.Target target = new RevisionBlobCache.Target(cache.getAbsolutePath(), NAMESPACE, 20);
+        File main = checkedOutFile(new File(directory, "main"), "Main.java", "class Main {}", "/Main.java/1.4/%s//");
+        RevisionBlobCache.store(target, "apps/core/src/Main.java", main,
+                RevisionBlobCache.readEntries(main.getParentFile()).get("Main.java"));
+        File other = checkedOutFile(new File(directory, "other"), "Other.java", "class Other {}", "/Other.java/1.1/%s//");
+        RevisionBlobCache.store(target, "apps/core/src/Other.java", other,
+                RevisionBlobCache.readEntries(other.getParentFile()).get("Other.java"));
+
+        assertEquals(27, RevisionBlobCache.getSize(cache).get());
+
+        RevisionBlobCache.evict(target);
+
+        assertTrue(RevisionBlobCache.getSize(cache).get() <= 20);
+    }
+
+    @Test
+    void testOnlyCommittedEntriesAreParsed() {
+        assertNull(RevisionBlobCache.EntryLine.parse("D/src////"));
+        assertNull(RevisionBlobCache.EntryLine.parse("/Added.java/0/dummy timestamp//"));
+        assertNull(RevisionBlobCache.EntryLine.parse("/Removed.java/-1.2/dummy timestamp//"));
+    }
+
+    private static File checkedOutFile(final File checkout, final String name, final String contents,
+                                       final String entryFormat) throws IOException {
+        File src = new File(checkout, "src");
+        assertTrue(new File(src, "CVS").mkdirs());
+        File file = new File(src, name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(1234567000L));
+
+        SimpleDateFormat format = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Files.write(new File(src, "CVS/Entries").toPath(),
+                (String.format(entryFormat, format.format(new Date(1234567000L))) + "\n").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,213 @@
+package hudson.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Generates repeatable <tt>cvs rlog</tt> output and changelog files of any size for benchmarks. Each file gets the
+ * same number of trunk revisions, one revision on each branch and a set of tags; trunk revisions are grouped into
+ * commits of {@link #getFilesPerCommit()} files so the parser has changes to merge, as it would with real history.
+ */
+final class RlogGenerator {
+
+    static final String REPOSITORY = "/cvs/repo";
+    static final String CVS_ROOT = ":pserver:user@localhost:" + REPOSITORY;
+    static final String MODULE = "module";
+
+    private static final String CHANGE_DIVIDER = "----------------------------";
+    private static final String FILE_DIVIDER = "=============================================================================";
+    private static final long START = 1325376000000L;
+    private static final int FILES_PER_DIRECTORY = 50;
+    private static final int AUTHORS = 7;
+
+    private final int files;
+    private final int revisions;
+    private final int branches;
+    private final int tags;
+    private final int filesPerCommit;
+
+    RlogGenerator(final int files, final int revisions, final int branches, final int tags, final int filesPerCommit) {
+        this.files = files;
+        this.revisions = revisions;
+        this.branches = branches;
+        this.tags = tags;
+        this.filesPerCommit = filesPerCommit;
+    }
+
+    /**
+     * A generator with as many files as it takes to produce roughly the given number of lines of rlog output.
+     */
+    static RlogGenerator ofLines(final int lines, final int revisions, final int branches, final int tags,
+                                 final int filesPerCommit) {
+        final int linesPerFile = new RlogGenerator(1, revisions, branches, tags, filesPerCommit).getLinesPerFile();
+        return new RlogGenerator(Math.max(1, lines / linesPerFile), revisions, branches, tags, filesPerCommit);
+    }
+
+    int getFiles() {
+        return files;
+    }
+
+    int getRevisions() {
+        return revisions;
+    }
+
+    int getFilesPerCommit() {
+        return filesPerCommit;
+    }
+
+    int getLinesPerFile() {
+        // blank line, 9 header lines, symbolic names, 4 lines per revision and the closing divider
+        return 1 + 9 + branches + tags + 4 * (revisions + branches) + 1;
+    }
+
+    int getLines() {
+        return 1 + files * getLinesPerFile();
+    }
+
+    /**
+     * @return the number of distinct trunk commits in the output
+     */
+    int getCommits() {
+        return (files + filesPerCommit - 1) / filesPerCommit * revisions;
+    }
+
+    static String getFileName(final int file) {
+        return MODULE + "/dir" + (file / FILES_PER_DIRECTORY) + "/file" + file + ".txt";
+    }
+
+    /**
+     * @return the rlog output, generated as it's read so it never has to be held in memory
+     */
+    Reader read() {
+        return new Reader() {
+            private final StringBuilder buffer = new StringBuilder("cvs rlog: Logging " + MODULE + "\n");
+            private final SimpleDateFormat format = newDateFormat("yyyy-MM-dd HH:mm:ss Z");
+            private int position;
+            private int file;
+
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) {
+                if (position == buffer.length()) {
+                    if (file == files) {
+                        return -1;
+                    }
+                    buffer.setLength(0);
+                    position = 0;
+                    appendFile(buffer, file++, format);
+                }
+                final int count = Math.min(len, buffer.length() - position);
+                buffer.getChars(position, position + count, cbuf, off);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+                file = files;
+                position = buffer.length();
+            }
+        };
+    }
+
+    private void appendFile(final StringBuilder out, final int file, final SimpleDateFormat format) {
+        final int totalRevisions = revisions + branches;
+        out.append('\n');
+        out.append("RCS file: ").append(REPOSITORY).append('/').append(getFileName(file)).append(",v\n");
+        out.append("head: 1.").append(revisions).append('\n');
+        out.append("branch:\n");
+        out.append("locks: strict\n");
+        out.append("access list:\n");
+        out.append("symbolic names:\n");
+        for (int tag = tags; tag > 0; tag--) {
+            out.append("\tTAG_").append(tag).append(": 1.").append(1 + (tag - 1) % revisions).append('\n');
+        }
+        for (int branch = branches; branch > 0; branch--) {
+            out.append("\tBRANCH_").append(branch).append(": 1.1.0.").append(2 * branch).append('\n');
+        }
+        out.append("keyword substitution: kv\n");
+        out.append("total revisions: ").append(totalRevisions).append(";\tselected revisions: ")
+                .append(totalRevisions).append('\n');
+        out.append("description:\n");
+        for (int revision = revisions; revision > 0; revision--) {
+            final int commit = getCommit(file, revision);
+            appendRevision(out, "1." + revision, commit, "Change " + commit, format);
+        }
+        for (int branch = 1; branch <= branches; branch++) {
+            final int commit = getCommits() + file / filesPerCommit * branches + branch;
+            appendRevision(out, "1.1." + 2 * branch + ".1", commit, "Change " + commit + " on BRANCH_" + branch,
+                    format);
+        }
+        out.append(FILE_DIVIDER).append('\n');
+    }
+
+    private static void appendRevision(final StringBuilder out, final String revision, final int commit,
+                                       final String message, final SimpleDateFormat format) {
+        out.append(CHANGE_DIVIDER).append('\n');
+        out.append("revision ").append(revision).append('\n');
+        out.append("date: ").append(format.format(getDate(commit))).append(";  author: ").append(getAuthor(commit))
+                .append(";  state: Exp;  lines: +1 -1;  commitid: c").append(commit).append(";\n");
+        out.append(message).append('\n');
+    }
+
+    private int getCommit(final int file, final int revision) {
+        return file / filesPerCommit * revisions + revision - 1;
+    }
+
+    private static Date getDate(final int commit) {
+        return new Date(START + commit * 60000L);
+    }
+
+    private static String getAuthor(final int commit) {
+        return "user" + commit % AUTHORS;
+    }
+
+    /**
+     * Writes a changelog with one entry per trunk commit in the generated history, in the format
+     * {@link CVSChangeLogSet#toFile(File)} writes.
+     */
+    void writeChangeLog(final File changelogFile) throws IOException {
+        final SimpleDateFormat format = newDateFormat("yyyy-MM-dd HH:mm:ss");
+        final PrintStream output = new PrintStream(changelogFile, StandardCharsets.UTF_8.name());
+        try {
+            output.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            output.println("<changelog>");
+            for (int first = 0; first < files; first += filesPerCommit) {
+                for (int revision = revisions; revision > 0; revision--) {
+                    final int commit = getCommit(first, revision);
+                    output.println("\t<entry>");
+                    output.println("\t\t<changeDate>" + format.format(getDate(commit)) + "</changeDate>");
+                    output.println("\t\t<author><![CDATA[" + getAuthor(commit) + "]]></author>");
+                    for (int file = first; file < Math.min(files, first + filesPerCommit); file++) {
+                        output.println("\t\t<file>");
+                        output.println("\t\t\t<name><![CDATA[" + getFileName(file) + "]]></name>");
+                        output.println("\t\t\t<fullName><![CDATA[" + REPOSITORY + "/" + getFileName(file) + "]]></fullName>");
+                        output.println("\t\t\t<revision>1." + revision + "</revision>");
+                        if (revision > 1) {
+                            output.println("\t\t\t<prevrevision>1." + (revision - 1) + "</prevrevision>");
+                        }
+                        output.println("\t\t</file>");
+                    }
+                    output.println("\t\t<msg><![CDATA[Change " + commit + "]]></msg>");
+                    output.println("\t</entry>");
+                }
+            }
+            output.println("</changelog>");
+        } finally {
+            output.close();
+        }
+    }
+
+    private static SimpleDateFormat newDateFormat(final String pattern) {
+        final SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+}
@@ -0,0 +1,58 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RlogGeneratorTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testGeneratedLogParses() throws Exception {
+        RlogGenerator generator = RlogGenerator.ofLines(10000, 5, 2, 3, 10);
+        CvsChangeSet changeSet = CvsLogBenchmark.map(generator, new CvsRepositoryLocation.HeadRepositoryLocation());
+
+        assertEquals(generator.getLines(), changeSet.getLineCount());
+        assertEquals(generator.getFiles(), changeSet.getFiles().size());
+        assertEquals(generator.getCommits(), changeSet.getChanges().size());
+        assertEquals(generator.getFilesPerCommit(), changeSet.getChanges().get(0).getFiles().size());
+        assertEquals(new TreeSet<String>(Arrays.asList("TAG_1", "TAG_2", "TAG_3")), changeSet.getTagNames());
+        assertEquals(new TreeSet<String>(Arrays.asList("BRANCH_1", "BRANCH_2")), changeSet.getBranchNames());
+        for (CvsFile file : changeSet.getFiles()) {
+            assertEquals("1.5", file.getRevision());
+        }
+    }
+
+    @Test
+    void testGeneratedBranchLogParses() throws Exception {
+        RlogGenerator generator = new RlogGenerator(20, 5, 2, 0, 10);
+        CvsChangeSet changeSet = CvsLogBenchmark.map(generator,
+                new CvsRepositoryLocation.BranchRepositoryLocation("BRANCH_2", false));
+
+        assertEquals(20, changeSet.getFiles().size());
+        assertEquals(2, changeSet.getChanges().size());
+        for (CvsFile file : changeSet.getFiles()) {
+            assertEquals("1.1.4.1", file.getRevision());
+        }
+    }
+
+    @Test
+    void testGeneratedChangeLogParses() throws Exception {
+        RlogGenerator generator = new RlogGenerator(25, 3, 0, 0, 10);
+        File changelog = new File(tmp, "changelog.xml");
+        generator.writeChangeLog(changelog);
+
+        CVSChangeLogSet changeLogSet = CVSChangeLogSet.parse(null, null, changelog);
+        assertEquals(generator.getCommits(), changeLogSet.getLogs().size());
+        assertEquals(10, changeLogSet.getLogs().get(0).getFiles().size());
+        assertEquals(5, changeLogSet.getLogs().get(changeLogSet.getLogs().size() - 1).getFiles().size());
+    }
+
+}
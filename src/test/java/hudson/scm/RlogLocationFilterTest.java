@@ -0,0 +1,81 @@
+package hudson.scm;
+
+import hudson.EnvVars;
+import hudson.scm.CVSChangeLogSet.CVSChangeLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the changes parsed from rlog run with the options chosen for each location are the same as those
+ * parsed from unfiltered rlog output. The fixtures are the output for the same repository and date range:
+ * unfiltered, with <tt>-b -N</tt> for head and with <tt>-rbranch1</tt> for the branch.
+ */
+class RlogLocationFilterTest {
+
+    private static final String CVS_ROOT = ":pserver:user@host:/cvs/repo";
+
+    @Test
+    void testHeadListsTheSameChangesWithoutSymbolicNames() throws IOException {
+        CvsRepositoryLocation location = new CvsRepositoryLocation.HeadRepositoryLocation();
+        CvsChangeSet full = parse("rlogLocationsFull.txt", location);
+        CvsChangeSet filtered = parse("rlogLocationsHead.txt", location);
+
+        assertEquals(4, full.getChanges().size());
+        assertEquals(describe(full), describe(filtered));
+        assertEquals(new HashSet<CvsFile>(full.getFiles()), new HashSet<CvsFile>(filtered.getFiles()));
+        assertTrue(filtered.getTagNames().isEmpty());
+    }
+
+    @Test
+    void testBranchListsTheSameChanges() throws IOException {
+        CvsRepositoryLocation location = new CvsRepositoryLocation.BranchRepositoryLocation("branch1", false);
+        CvsChangeSet full = parse("rlogLocationsFull.txt", location);
+        CvsChangeSet filtered = parse("rlogLocationsBranch.txt", location);
+
+        assertEquals(2, full.getChanges().size());
+        assertEquals(describe(full), describe(filtered));
+        assertEquals(new HashSet<CvsFile>(full.getFiles()), new HashSet<CvsFile>(filtered.getFiles()));
+    }
+
+    private static CvsChangeSet parse(final String fixture, final CvsRepositoryLocation location) throws IOException {
+        return new CvsLog() {
+            @Override
+            protected Reader read() {
+                return new InputStreamReader(RlogLocationFilterTest.class.getResourceAsStream(fixture),
+                        StandardCharsets.UTF_8);
+            }
+
+            @Override
+            protected void dispose() {
+            }
+        }.mapCvsLog(CVS_ROOT, location, null, new EnvVars());
+    }
+
+    /**
+     * The previous revision isn't compared since it's taken from whichever revision rlog happens to list next,
+     * which filtering changes.
+     */
+    private static List<String> describe(final CvsChangeSet changeSet) {
+        List<String> changes = new ArrayList<String>();
+        for (CVSChangeLog change : changeSet.getChanges()) {
+            Set<String> files = new HashSet<String>();
+            for (CVSChangeLogSet.File file : change.getFiles()) {
+                files.add(file.getFullName() + ":" + file.getRevision() + (file.isDead() ? ":dead" : ""));
+            }
+            changes.add(change.getChangeDate().getTime() + " " + change.getUser() + " " + change.getMsg() + " " + files);
+        }
+        return changes;
+    }
+
+}
@@ -0,0 +1,124 @@
+package hudson.scm;
+
+import hudson.scm.CVSChangeLogSet.CVSChangeLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RlogSegmentCacheTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long BASE = 1700000000000L / HOUR * HOUR;
+    private static final long NOW = BASE + 10 * HOUR + 45 * 60 * 1000;
+
+    @TempDir
+    private File root;
+
+    private final CvsRepository repository = new CvsRepository(":local:/cvs", false, null,
+            new ArrayList<CvsRepositoryItem>(), new ArrayList<ExcludedRegion>(), 3, null);
+
+    @Test
+    void testClosedBucketsAreOnlyFetchedOnce() throws Exception {
+        FakeFetcher fetcher = new FakeFetcher(change(BASE + HOUR + 1000, "a", "1.2"),
+                change(BASE + 3 * HOUR, "b", "1.3"), change(BASE + 10 * HOUR + 20 * 60 * 1000, "a", "1.3"));
+
+        CvsChangeSet first = newCache().getChanges("key", new Date(BASE), new Date(NOW), repository, fetcher, NOW);
+        assertEquals(Arrays.asList("[" + BASE + "," + (BASE + 10 * HOUR - 1000) + "]",
+                "(" + (BASE + 10 * HOUR - 1000) + "," + NOW + ")"), fetcher.calls);
+        assertEquals(3, first.getChanges().size());
+        assertEquals(new HashSet<CvsFile>(Arrays.asList(CvsFile.make("/cvs/a", "1.3", false),
+                CvsFile.make("/cvs/b", "1.3", false))), new HashSet<CvsFile>(first.getFiles()));
+
+        // a new cache only has the segments on disk to go on
+        fetcher.calls.clear();
+        CvsChangeSet second = newCache().getChanges("key", new Date(BASE), new Date(NOW), repository, fetcher, NOW);
+        assertEquals(Arrays.asList("(" + (BASE + 10 * HOUR - 1000) + "," + NOW + ")"), fetcher.calls);
+        assertEquals(messages(first), messages(second));
+        assertEquals(first.getChanges().get(0).getChangeDate(), second.getChanges().get(0).getChangeDate());
+        assertEquals(repository, second.getChanges().get(0).getRepository());
+    }
+
+    @Test
+    void testChangesAtEitherEndAreExcluded() throws Exception {
+        FakeFetcher fetcher = new FakeFetcher(change(BASE + HOUR, "a", "1.2"),
+                change(BASE + 2 * HOUR + 1000, "b", "1.2"), change(BASE + 4 * HOUR, "c", "1.2"));
+
+        CvsChangeSet changeSet = newCache().getChanges("key", new Date(BASE + HOUR), new Date(BASE + 4 * HOUR),
+                repository, fetcher, NOW);
+
+        assertEquals(1, changeSet.getChanges().size());
+        assertEquals("/cvs/b", changeSet.getChanges().get(0).getFiles().get(0).getFullName());
+        assertEquals(Arrays.asList("[" + (BASE + HOUR) + "," + (BASE + 4 * HOUR - 1000) + "]"), fetcher.calls);
+    }
+
+    @Test
+    void testRecentRangesAreNotCached() throws Exception {
+        FakeFetcher fetcher = new FakeFetcher(change(NOW - 60 * 1000, "a", "1.2"));
+
+        CvsChangeSet changeSet = newCache().getChanges("key", new Date(NOW - 10 * 60 * 1000), new Date(NOW),
+                repository, fetcher, NOW);
+
+        assertEquals(1, changeSet.getChanges().size());
+        assertEquals(Arrays.asList("(" + (NOW - 10 * 60 * 1000) + "," + NOW + ")"), fetcher.calls);
+        assertEquals(0, root.list().length);
+    }
+
+    private RlogSegmentCache newCache() {
+        return new RlogSegmentCache(root, HOUR, 30 * 60 * 1000, Long.MAX_VALUE, 0);
+    }
+
+    private static List<String> messages(final CvsChangeSet changeSet) {
+        List<String> messages = new ArrayList<String>();
+        for (CVSChangeLog change : changeSet.getChanges()) {
+            messages.add(change.getMsg());
+        }
+        return messages;
+    }
+
+    private static CVSChangeLog change(final long date, final String name, final String revision) {
+        CVSChangeLog change = new CVSChangeLog();
+        change.setChangeDate(new Date(date));
+        change.setUser("user");
+        change.setMsg("change to " + name);
+        CVSChangeLogSet.File file = new CVSChangeLogSet.File();
+        file.setName(name);
+        file.setFullName("/cvs/" + name);
+        file.setRevision(revision);
+        change.addFile(file);
+        return change;
+    }
+
+    private static final class FakeFetcher implements RlogSegmentCache.Fetcher {
+
+        private final List<CVSChangeLog> changes;
+        private final List<String> calls = new ArrayList<String>();
+
+        private FakeFetcher(final CVSChangeLog... changes) {
+            this.changes = Arrays.asList(changes);
+        }
+
+        @Override
+        public CvsChangeSet fetch(final Date start, final Date end, final boolean inclusive) {
+            calls.add((inclusive ? "[" : "(") + start.getTime() + "," + end.getTime() + (inclusive ? "]" : ")"));
+            List<CVSChangeLog> matched = new ArrayList<CVSChangeLog>();
+            for (CVSChangeLog change : changes) {
+                long date = change.getChangeDate().getTime();
+                if (inclusive ? date >= start.getTime() && date <= end.getTime()
+                        : date > start.getTime() && date < end.getTime()) {
+                    matched.add(change);
+                }
+            }
+            return new CvsChangeSet(new ArrayList<CvsFile>(), matched, new TreeSet<String>(), new TreeSet<String>(), 0);
+        }
+    }
+
+}
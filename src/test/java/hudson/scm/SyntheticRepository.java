@@ -0,0 +1,177 @@
+package hudson.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes a CVS repository of any size straight to disk as RCS files, which is far quicker than committing the
+ * same history through CVS. Each module holds the same number of files, each with the same number of trunk
+ * revisions, a revision on every branch and a set of tags, so every job built from it does the same work.
+ */
+final class SyntheticRepository {
+
+    private static final long START = 1325376000000L;
+    private static final int FILES_PER_DIRECTORY = 50;
+    private static final int AUTHORS = 7;
+
+    private final int modules;
+    private final int files;
+    private final int revisions;
+    private final int branches;
+    private final int tags;
+    private final int lines;
+
+    /**
+     * @param modules the number of top level modules
+     * @param files the number of files in each module
+     * @param revisions the number of trunk revisions of each file
+     * @param branches the number of branches, each with one revision of every file
+     * @param tags the number of tags, spread over the trunk revisions
+     * @param lines the number of lines in each file
+     */
+    SyntheticRepository(final int modules, final int files, final int revisions, final int branches, final int tags,
+                        final int lines) {
+        this.modules = modules;
+        this.files = files;
+        this.revisions = Math.max(1, revisions);
+        this.branches = branches;
+        this.tags = tags;
+        this.lines = Math.max(1, lines);
+    }
+
+    static String getModuleName(final int module) {
+        return "module" + module;
+    }
+
+    static String getBranchName(final int branch) {
+        return "BRANCH_" + branch;
+    }
+
+    static String getFileName(final int file) {
+        return "dir" + (file / FILES_PER_DIRECTORY) + "/file" + file + ".txt";
+    }
+
+    int getModules() {
+        return modules;
+    }
+
+    int getFiles() {
+        return files;
+    }
+
+    int getBranches() {
+        return branches;
+    }
+
+    /**
+     * Writes the modules into an existing repository, such as one set up by {@link LocalCvsServer}.
+     */
+    void create(final File repository) throws IOException {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (int module = 0; module < modules; module++) {
+            for (int file = 0; file < files; file++) {
+                final File rcsFile = new File(repository, getModuleName(module) + "/" + getFileName(file) + ",v");
+                if (!rcsFile.getParentFile().isDirectory() && !rcsFile.getParentFile().mkdirs()) {
+                    throw new IOException("Could not create " + rcsFile.getParentFile());
+                }
+                final PrintStream out = new PrintStream(rcsFile, StandardCharsets.ISO_8859_1.name());
+                try {
+                    writeRcsFile(out, module, file, format);
+                } finally {
+                    out.close();
+                }
+                if (out.checkError()) {
+                    throw new IOException("Could not write " + rcsFile);
+                }
+            }
+        }
+    }
+
+    private void writeRcsFile(final PrintStream out, final int module, final int file, final SimpleDateFormat format) {
+        out.print("head\t1." + revisions + ";\n");
+        out.print("access;\n");
+        out.print("symbols");
+        for (int branch = branches; branch > 0; branch--) {
+            out.print("\n\t" + getBranchName(branch) + ":1.1.0." + 2 * branch);
+        }
+        for (int tag = tags; tag > 0; tag--) {
+            out.print("\n\tTAG_" + tag + ":1." + (1 + (tag - 1) % revisions));
+        }
+        out.print(";\n");
+        out.print("locks; strict;\n");
+        out.print("comment\t@# @;\n\n\n");
+
+        for (int revision = revisions; revision > 0; revision--) {
+            out.print("1." + revision + "\n");
+            writeDelta(out, format, getCommit(module, revision));
+            out.print("branches");
+            if (revision == 1) {
+                for (int branch = 1; branch <= branches; branch++) {
+                    out.print("\n\t1.1." + 2 * branch + ".1");
+                }
+            }
+            out.print(";\n");
+            out.print("next\t" + (revision > 1 ? "1." + (revision - 1) : "") + ";\n\n");
+        }
+        for (int branch = 1; branch <= branches; branch++) {
+            out.print("1.1." + 2 * branch + ".1\n");
+            writeDelta(out, format, getBranchCommit(module, branch));
+            out.print("branches;\n");
+            out.print("next\t;\n\n");
+        }
+
+        out.print("\ndesc\n@@\n\n");
+
+        // the head revision holds the full text, earlier trunk revisions are reverse deltas from the one after
+        // them and branch revisions are forward deltas from their branch point
+        out.print("\n1." + revisions + "\nlog\n@Change " + getCommit(module, revisions) + "\n@\ntext\n@");
+        out.print(getFirstLine(module, file, "1." + revisions));
+        for (int line = 1; line < lines; line++) {
+            out.print("line " + line + " of " + getFileName(file) + "\n");
+        }
+        out.print("@\n\n");
+        for (int revision = revisions - 1; revision > 0; revision--) {
+            writeDeltaText(out, "1." + revision, "Change " + getCommit(module, revision), module, file);
+        }
+        for (int branch = 1; branch <= branches; branch++) {
+            writeDeltaText(out, "1.1." + 2 * branch + ".1",
+                    "Change " + getBranchCommit(module, branch) + " on " + getBranchName(branch), module, file);
+        }
+    }
+
+    private static void writeDelta(final PrintStream out, final SimpleDateFormat format, final int commit) {
+        out.print("date\t" + format.format(new Date(START + commit * 60000L)) + ";\tauthor user" + commit % AUTHORS
+                + ";\tstate Exp;\n");
+    }
+
+    private static void writeDeltaText(final PrintStream out, final String revision, final String message,
+                                       final int module, final int file) {
+        out.print("\n" + revision + "\nlog\n@" + message + "\n@\ntext\n@d1 1\na1 1\n");
+        out.print(getFirstLine(module, file, revision));
+        out.print("@\n\n");
+    }
+
+    private static String getFirstLine(final int module, final int file, final String revision) {
+        return getModuleName(module) + "/" + getFileName(file) + " revision " + revision + "\n";
+    }
+
+    /**
+     * Trunk commits take in every file at the same revision across a module, so there's one commit per revision
+     * per module, with modules interleaved.
+     */
+    private int getCommit(final int module, final int revision) {
+        return (revision - 1) * modules + module;
+    }
+
+    private int getBranchCommit(final int module, final int branch) {
+        return revisions * modules + (branch - 1) * modules + module;
+    }
+
+}
@@ -0,0 +1,69 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagPollingTest {
+
+    private final List<CvsFile> checkedOut = Arrays.asList(CvsFile.make("module/a.txt", "1.2", false),
+            CvsFile.make("module/b.txt", "1.1", false), CvsFile.make("other/c.txt", "1.4", false));
+
+    @Test
+    void testUnmovedTagHasNoChanges() {
+        List<CvsFile> tagFiles = Arrays.asList(CvsFile.make("module/b.txt", "1.1", false),
+                CvsFile.make("module/a.txt", "1.2", false));
+
+        assertTrue(AbstractCvs.compareTagRevisions("module", tagFiles, checkedOut).isEmpty());
+    }
+
+    @Test
+    void testMovedTagListsTheNewRevisions() {
+        List<CvsFile> tagFiles = Arrays.asList(CvsFile.make("module/a.txt", "1.3", false),
+                CvsFile.make("module/b.txt", "1.1", false), CvsFile.make("module/d.txt", "1.1", false));
+
+        assertEquals(new HashSet<CvsFile>(Arrays.asList(CvsFile.make("module/a.txt", "1.3", false),
+                CvsFile.make("module/d.txt", "1.1", false))),
+                new HashSet<CvsFile>(AbstractCvs.compareTagRevisions("module", tagFiles, checkedOut)));
+    }
+
+    @Test
+    void testFilesNoLongerTaggedAreDead() {
+        List<CvsFile> tagFiles = Arrays.asList(CvsFile.make("module/a.txt", "1.2", false),
+                CvsFile.make("module/b.txt", "1.2", true));
+
+        assertEquals(Arrays.asList(CvsFile.make("module/b.txt", "1.1", true)),
+                AbstractCvs.compareTagRevisions("module", tagFiles, checkedOut));
+    }
+
+    @Test
+    void testAliasModuleCantBeCompared() {
+        // the alias is checked out under its own name, but rlog lists the files under the path it points to
+        List<CvsFile> aliasCheckedOut = Arrays.asList(CvsFile.make("myalias/a.txt", "1.2", false));
+        List<CvsFile> tagFiles = Arrays.asList(CvsFile.make("realdir/a.txt", "1.2", false));
+
+        assertNull(AbstractCvs.compareTagRevisions("myalias", tagFiles, aliasCheckedOut));
+    }
+
+    @Test
+    void testSingleFileModuleCantBeCompared() {
+        List<CvsFile> fileCheckedOut = Arrays.asList(CvsFile.make("file.c", "1.4", false));
+        List<CvsFile> tagFiles = Arrays.asList(CvsFile.make("dir/file.c", "1.4", false));
+
+        assertNull(AbstractCvs.compareTagRevisions("dir/file.c", tagFiles, fileCheckedOut));
+    }
+
+    @Test
+    void testModuleWithNothingCheckedOutCantBeCompared() {
+        List<CvsFile> tagFiles = Arrays.asList(CvsFile.make("module/a.txt", "1.2", false));
+
+        assertNull(AbstractCvs.compareTagRevisions("module", tagFiles, Arrays.<CvsFile>asList()));
+    }
+
+}
@@ -0,0 +1,49 @@
+package hudson.scm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TargetedUpdateTest {
+
+    @TempDir
+    private File module;
+
+    @Test
+    void testChangedFilesAreRelativeToTheModule() {
+        String[] files = TargetedUpdate.getModuleFiles(Arrays.asList(
+                CvsFile.make("/cvsroot/apps/core/src/Main.java", "1.4"),
+                CvsFile.make("/cvsroot/apps/core/Attic/Removed.java", "1.2", true),
+                CvsFile.make("/cvsroot/apps/core/src/Main.java", "1.5"),
+                CvsFile.make("/cvsroot/apps/core/build.xml", "1.2")), "/cvsroot", "apps/core/");
+
+        assertArrayEquals(new String[]{"Removed.java", "build.xml", "src/Main.java"}, files);
+    }
+
+    @Test
+    void testChangeOutsideModuleNeedsFullUpdate() {
+        assertNull(TargetedUpdate.getModuleFiles(Arrays.asList(
+                CvsFile.make("/cvsroot/apps/core/build.xml", "1.2"),
+                CvsFile.make("/cvsroot/apps/core-extras/build.xml", "1.1")), "/cvsroot", "apps/core"));
+    }
+
+    @Test
+    void testDirectoriesMustBeCheckedOut() throws IOException {
+        assertTrue(new File(module, "CVS").mkdir());
+        assertTrue(new File(module, "CVS/Entries").createNewFile());
+        assertTrue(new File(module, "src/CVS").mkdirs());
+        assertTrue(new File(module, "src/CVS/Entries").createNewFile());
+
+        assertTrue(new TargetedUpdate.DirectoriesPresent(new String[]{"build.xml", "src/Main.java"}).invoke(module, null));
+        assertFalse(new TargetedUpdate.DirectoriesPresent(new String[]{"build.xml", "test/MainTest.java"}).invoke(module, null));
+    }
+
+}
@@ -0,0 +1,93 @@
+package hudson.scm.cvstagging;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.User;
+import hudson.scm.CVSSCM;
+import hudson.scm.CvsFile;
+import hudson.scm.CvsRepository;
+import hudson.scm.CvsRevisionState;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithJenkins
+class CvsTagActionTest {
+
+    private JenkinsRule jenkinsRule;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        jenkinsRule = rule;
+    }
+
+    @Test
+    void testTaggingKeepsBuildOnSecuredInstance() throws Exception {
+        jenkinsRule.jenkins.setSecurityRealm(jenkinsRule.createDummySecurityRealm());
+        jenkinsRule.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ, Item.READ, SCM.TAG, Run.UPDATE).everywhere().to("tagger"));
+
+        CvsTagAction action = createTaggableBuild();
+        try (ACLContext ctx = ACL.as(User.getById("tagger", true))) {
+            action.perform("TAG_1", false, false);
+        }
+        waitForTagging(action);
+
+        assertEquals(Arrays.asList("TAG_1"), Arrays.asList(action.getTagNames()));
+        assertTrue(action.getBuild().isKeepLog());
+    }
+
+    @Test
+    void testBuildIsOnlyTaggedOnceAtATime() throws Exception {
+        CvsTagAction action = createTaggableBuild();
+        CvsTagActionWorker first = new CvsTagActionWorker(action.getBuild().getAction(CvsRevisionState.class),
+                "TAG_1", false, (FreeStyleBuild) action.getBuild(), action, false);
+        CvsTagActionWorker second = new CvsTagActionWorker(action.getBuild().getAction(CvsRevisionState.class),
+                "TAG_2", false, (FreeStyleBuild) action.getBuild(), action, false);
+
+        boolean started;
+        synchronized (action) {
+            // holding the action's lock keeps the first worker from recording its tag and completing
+            assertTrue(action.startIfIdle(first));
+            started = action.startIfIdle(second);
+        }
+        waitForTagging(action);
+
+        assertFalse(started);
+        assertEquals(Arrays.asList("TAG_1"), Arrays.asList(action.getTagNames()));
+    }
+
+    @SuppressWarnings("deprecation")
+    private CvsTagAction createTaggableBuild() throws Exception {
+        FreeStyleProject project = jenkinsRule.createFreeStyleProject();
+        FreeStyleBuild build = jenkinsRule.buildAndAssertSuccess(project);
+        build.addAction(new CvsRevisionState(new HashMap<CvsRepository, List<CvsFile>>()));
+        CvsTagAction action = new CvsTagAction(build, new CVSSCM("cvsroot", "module", "", "", true, false, true,
+                false, ""));
+        build.addAction(action);
+        return action;
+    }
+
+    private static void waitForTagging(final CvsTagAction action) throws InterruptedException {
+        while (action.isTagging()) {
+            Thread.sleep(10);
+        }
+    }
+
+}
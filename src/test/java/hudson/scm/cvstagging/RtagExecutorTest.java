@@ -0,0 +1,175 @@
+package hudson.scm.cvstagging;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.Test;
+import org.netbeans.lib.cvsclient.command.CommandAbortedException;
+import org.netbeans.lib.cvsclient.command.CommandException;
+import org.netbeans.lib.cvsclient.command.tag.RtagCommand;
+import org.netbeans.lib.cvsclient.connection.AuthenticationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RtagExecutorTest {
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+    private final Map<String, Integer> failures = Collections.synchronizedMap(new HashMap<String, Integer>());
+    private final List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    @Test
+    void testCommandIsBuiltFromBatch() {
+        RtagCommand command = executor("REL_1", false, true).createCommand(
+                new RtagBatch("1.5", "19 Oct 2026 10:00:00 -0000", false, Arrays.asList("module", "module/src")));
+
+        assertEquals("REL_1", command.getTag());
+        assertEquals("1.5", command.getTagByRevision());
+        assertEquals("19 Oct 2026 10:00:00 -0000", command.getTagByDate());
+        assertFalse(command.isRecursive());
+        assertTrue(command.isOverrideExistingTag());
+        assertFalse(command.isMakeBranchTag());
+        assertArrayEquals(new String[]{"module", "module/src"}, command.getModules());
+    }
+
+    @Test
+    void testBranchIsTaggedRecursivelyFromHeadByDefault() {
+        RtagCommand command = executor("BRANCH_1", true, false).createCommand(
+                new RtagBatch(null, Collections.singletonList("module")));
+
+        assertNull(command.getTagByRevision());
+        assertNull(command.getTagByDate());
+        assertTrue(command.isRecursive());
+        assertTrue(command.isMakeBranchTag());
+        assertFalse(command.isOverrideExistingTag());
+    }
+
+    @Test
+    void testFilesAreSplitIntoBatchesByRevision() {
+        Map<String, List<String>> filesByRevision = new LinkedHashMap<String, List<String>>();
+        filesByRevision.put("1.1", Arrays.asList("a", "b", "c", "d", "e"));
+        filesByRevision.put("1.2", Collections.singletonList("f"));
+
+        List<RtagBatch> batches = RtagBatch.split(filesByRevision, 2);
+
+        assertEquals(4, batches.size());
+        assertEquals(Arrays.asList("a", "b"), batches.get(0).getModules());
+        assertEquals(Arrays.asList("c", "d"), batches.get(1).getModules());
+        assertEquals(Collections.singletonList("e"), batches.get(2).getModules());
+        assertEquals("1.1", batches.get(2).getRevision());
+        assertEquals(Collections.singletonList("f"), batches.get(3).getModules());
+        assertEquals("1.2", batches.get(3).getRevision());
+    }
+
+    @Test
+    void testBatchesShareFewConnections() throws Exception {
+        RtagExecutor executor = executor("REL_1", false, false);
+
+        assertTrue(executor.execute(batches(10)));
+
+        assertEquals(10, executed.size());
+        assertEquals(10, executor.getCompletedModules());
+        assertEquals(10, executor.getTotalModules());
+        assertTrue(opened.get() <= RtagExecutor.PARALLELISM);
+        assertEquals(opened.get(), closed.get());
+    }
+
+    @Test
+    void testBatchIsRetriedOnANewConnection() throws Exception {
+        failures.put("module0", 1);
+
+        assertTrue(executor("REL_1", false, false).execute(batches(1)));
+
+        assertEquals(Arrays.asList("module0", "module0"), executed);
+        assertEquals(2, opened.get());
+        assertEquals(2, closed.get());
+    }
+
+    @Test
+    void testServerFailureDoesNotStopOtherBatches() throws Exception {
+        rejected.add("module3");
+
+        assertFalse(executor("REL_1", false, false).execute(batches(6)));
+
+        assertEquals(6, executed.size());
+    }
+
+    @Test
+    void testErrorIsRethrownOnceRetriesAreUsedUp() {
+        failures.put("module2", Integer.MAX_VALUE);
+
+        assertThrows(CommandException.class, () -> executor("REL_1", false, false).execute(batches(6)));
+
+        assertEquals(RtagExecutor.RETRIES + 1, Collections.frequency(executed, "module2"));
+    }
+
+    @Test
+    void testAbortIsNotRetried() {
+        failures.put("module0", -1);
+
+        assertThrows(CommandAbortedException.class, () -> executor("REL_1", false, false).execute(batches(1)));
+
+        assertEquals(Collections.singletonList("module0"), executed);
+    }
+
+    private static List<RtagBatch> batches(final int count) {
+        List<RtagBatch> batches = new ArrayList<RtagBatch>();
+        for (int i = 0; i < count; i++) {
+            batches.add(new RtagBatch("1." + (i + 1), Collections.singletonList("module" + i)));
+        }
+        return batches;
+    }
+
+    /**
+     * Creates an executor that runs its commands against fake connections. A module in {@link #failures} fails
+     * with a communication error that many times, or is aborted if the count is negative, and a module in
+     * {@link #rejected} is reported as failed by the server.
+     */
+    private RtagExecutor executor(final String tagName, final boolean createBranch, final boolean moveTag) {
+        return new RtagExecutor(null, null, new EnvVars(), TaskListener.NULL, tagName, createBranch, moveTag) {
+            @Override
+            RtagConnection connect(final boolean showAuthenticationInfo) {
+                opened.incrementAndGet();
+                return new RtagConnection() {
+                    @Override
+                    public boolean execute(final RtagCommand command) throws CommandException, AuthenticationException {
+                        final String module = command.getModules()[0];
+                        executed.add(module);
+                        synchronized (failures) {
+                            final Integer remaining = failures.get(module);
+                            if (remaining != null && remaining < 0) {
+                                throw new CommandAbortedException("aborted", "aborted");
+                            }
+                            if (remaining != null && remaining > 0) {
+                                failures.put(module, remaining - 1);
+                                throw new CommandException("connection reset", "connection reset");
+                            }
+                        }
+                        return !rejected.contains(module);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        closed.incrementAndGet();
+                    }
+                };
+            }
+        };
+    }
+
+}
@@ -0,0 +1,96 @@
+package hudson.scm.cvstagging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RtagPlannerTest {
+
+    private static final List<String> NO_MODULES = Collections.emptyList();
+
+    private final List<String> recursive = new ArrayList<String>();
+    private final List<String> local = new ArrayList<String>();
+    private final Map<String, List<String>> perFile = new LinkedHashMap<String, List<String>>();
+
+    @Test
+    void testMatchingModuleIsTaggedInOneCommand() {
+        Map<String, String> files = files("a.txt", "1.2", "src/Main.java", "1.5", "src/util/Helper.java", "1.1");
+
+        RtagPlanner.planModule("module", files, new HashMap<String, String>(files), NO_MODULES, recursive, local, perFile);
+
+        assertEquals(Collections.singletonList("module"), recursive);
+        assertEquals(Collections.emptyList(), local);
+        assertEquals(Collections.emptyMap(), perFile);
+    }
+
+    @Test
+    void testDivergentFileOnlyAffectsItsOwnDirectory() {
+        Map<String, String> workspace = files("a.txt", "1.2", "src/Main.java", "1.5", "src/Other.java", "1.3",
+                "src/util/Helper.java", "1.1", "doc/readme", "1.1");
+        Map<String, String> remote = new HashMap<String, String>(workspace);
+        remote.put("src/Main.java", "1.6");
+
+        RtagPlanner.planModule("module", workspace, remote, NO_MODULES, recursive, local, perFile);
+
+        assertEquals(Arrays.asList("module/doc", "module/src/util"), recursive);
+        assertEquals(Collections.singletonList("module"), local);
+        Map<String, List<String>> expected = new HashMap<String, List<String>>();
+        expected.put("1.5", Collections.singletonList("module/src/Main.java"));
+        expected.put("1.3", Collections.singletonList("module/src/Other.java"));
+        assertEquals(expected, perFile);
+    }
+
+    @Test
+    void testFileMissingFromWorkspacePreventsCollapsing() {
+        Map<String, String> workspace = files("src/Main.java", "1.5");
+        Map<String, String> remote = files("src/Main.java", "1.5", "src/New.java", "1.1");
+
+        RtagPlanner.planModule("module", workspace, remote, NO_MODULES, recursive, local, perFile);
+
+        assertEquals(Collections.emptyList(), recursive);
+        assertEquals(Collections.emptyList(), local);
+        assertEquals(Collections.singletonMap("1.5", Collections.singletonList("module/src/Main.java")), perFile);
+    }
+
+    @Test
+    void testDirectoryOnlyOnServerIsNotTagged() {
+        Map<String, String> workspace = files("a.txt", "1.1");
+        Map<String, String> remote = files("a.txt", "1.1", "extra/b.txt", "1.1");
+
+        RtagPlanner.planModule("module", workspace, remote, NO_MODULES, recursive, local, perFile);
+
+        assertEquals(Collections.emptyList(), recursive);
+        assertEquals(Collections.singletonList("module"), local);
+        assertEquals(Collections.emptyMap(), perFile);
+    }
+
+    @Test
+    void testDirectoryHoldingAnotherModuleIsNotTaggedRecursively() {
+        Map<String, String> files = files("a.txt", "1.2", "src/Main.java", "1.5", "lib/x/util/Helper.java", "1.1",
+                "lib/y.txt", "1.1");
+
+        RtagPlanner.planModule("module", files, new HashMap<String, String>(files), Arrays.asList("lib/x/nested"),
+                recursive, local, perFile);
+
+        assertEquals(Arrays.asList("module/lib/x/util", "module/src"), recursive);
+        assertEquals(Arrays.asList("module", "module/lib"), local);
+        assertEquals(Collections.emptyMap(), perFile);
+    }
+
+    private static Map<String, String> files(final String... namesAndRevisions) {
+        Map<String, String> files = new HashMap<String, String>();
+        for (int i = 0; i < namesAndRevisions.length; i += 2) {
+            files.put(namesAndRevisions[i], namesAndRevisions[i + 1]);
+        }
+        return files;
+    }
+
+}
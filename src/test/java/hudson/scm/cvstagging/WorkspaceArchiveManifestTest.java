@@ -0,0 +1,124 @@
+package hudson.scm.cvstagging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkspaceArchiveManifestTest {
+
+    private static final String ROOT = ":pserver:anonymous@cvs.example.org:/cvsroot";
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    void testRevisionsAreReadFromControlFiles() throws IOException {
+        File archive = createArchive(
+                "module/CVS/Root", ROOT + "\n",
+                "module/CVS/Repository", "module\n",
+                "module/CVS/Entries", "/build.xml/1.4/Mon Jan  2 10:00:00 2012//\n"
+                        + "/README/1.1/Mon Jan  2 10:00:00 2012//\n"
+                        + "/added.txt/0/dummy timestamp//\n"
+                        + "/removed.txt/-1.2/dummy timestamp//\n"
+                        + "D/src////\n",
+                "module/src/CVS/Root", ROOT + "\n",
+                "module/src/CVS/Repository", "/cvsroot/module/src\n",
+                "module/src/CVS/Entries", "/Main.java/1.4/Mon Jan  2 10:00:00 2012//\nD\n",
+                "module/src/Main.java", "class Main {}\n");
+
+        WorkspaceArchiveManifest manifest = WorkspaceArchiveManifest.read(archive);
+
+        assertEquals(Collections.singletonList(ROOT), toList(manifest.getRoots()));
+        Map<String, List<String>> files = manifest.getFilesByRevision(ROOT);
+        Map<String, List<String>> expected = new HashMap<String, List<String>>();
+        expected.put("1.1", Collections.singletonList("module/README"));
+        expected.put("1.4", Arrays.asList("module/build.xml", "module/src/Main.java"));
+        assertEquals(expected.keySet(), files.keySet());
+        assertEquals(expected.get("1.1"), files.get("1.1"));
+        assertEquals(expected.get("1.4").size(), files.get("1.4").size());
+        assertTrue(files.get("1.4").containsAll(expected.get("1.4")));
+    }
+
+    @Test
+    void testArchiveWithoutControlFilesIsEmpty() throws IOException {
+        File archive = createArchive("module/build.xml", "<project/>\n");
+
+        assertTrue(WorkspaceArchiveManifest.read(archive).isEmpty());
+    }
+
+    @Test
+    void testRelativeRepositoryPath() {
+        assertEquals("module/src", WorkspaceArchiveManifest.getRelativeRepositoryPath(ROOT, "/cvsroot/module/src"));
+        assertEquals("module/src", WorkspaceArchiveManifest.getRelativeRepositoryPath(ROOT, "module/src"));
+        assertEquals("", WorkspaceArchiveManifest.getRelativeRepositoryPath(ROOT, "."));
+        assertEquals("", WorkspaceArchiveManifest.getRelativeRepositoryPath(ROOT, "/cvsroot"));
+        assertEquals("cvsroot2/module", WorkspaceArchiveManifest.getRelativeRepositoryPath(ROOT, "/cvsroot2/module"));
+    }
+
+    @Test
+    void testDirectoriesWithoutRootAreRecordedSeparately() throws IOException {
+        File archive = createArchive(
+                "module/CVS/Repository", "module\n",
+                "module/CVS/Entries", "/build.xml/1.4/Mon Jan  2 10:00:00 2012//\n",
+                "other/CVS/Repository", "/cvsroot/other\n",
+                "other/CVS/Entries", "/README/1.1/Mon Jan  2 10:00:00 2012//\n");
+
+        WorkspaceArchiveManifest manifest = WorkspaceArchiveManifest.read(archive);
+
+        assertEquals(Collections.singletonList(WorkspaceArchiveManifest.NO_ROOT), toList(manifest.getRoots()));
+        assertEquals(Collections.singletonMap("1.4", Collections.singletonList("module/build.xml")),
+                manifest.getFilesByRevision(WorkspaceArchiveManifest.NO_ROOT));
+    }
+
+    @Test
+    void testControlFilesAreReadAsLatin1() throws IOException {
+        File archive = createArchive(
+                "module/CVS/Root", ROOT + "\n",
+                "module/CVS/Repository", "module\n",
+                "module/CVS/Entries", "/r\u00e9sum\u00e9.txt/1.2/Mon Jan  2 10:00:00 2012//\n");
+
+        WorkspaceArchiveManifest manifest = WorkspaceArchiveManifest.read(archive);
+
+        assertEquals(Collections.singletonMap("1.2", Collections.singletonList("module/r\u00e9sum\u00e9.txt")),
+                manifest.getFilesByRevision(ROOT));
+    }
+
+    private File createArchive(final String... namesAndContents) throws IOException {
+        File archive = new File(tempDir, "workspace.zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        try {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+                zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.ISO_8859_1));
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+        return archive;
+    }
+
+    private static List<String> toList(final Iterable<String> values) {
+        List<String> list = new ArrayList<String>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+}